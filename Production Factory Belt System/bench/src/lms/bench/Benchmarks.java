@@ -0,0 +1,51 @@
+package lms.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the lms hot paths with the GC profiler, so that every
+ * benchmark reports its allocation rate alongside its throughput.
+ * <p>
+ * The benchmarks are generated by the JMH annotation processor, which has to be
+ * enabled for the bench module. Arguments are passed on to JMH, for example:
+ * <pre>
+ * java lms.bench.Benchmarks                       (every benchmark)
+ * java lms.bench.Benchmarks LoaderBenchmark -p range=50
+ * java lms.bench.Benchmarks TickBenchmark -f 1 -wi 2 -i 3
+ * </pre>
+ *
+ * @see LoaderBenchmark
+ * @see GridBenchmark
+ * @see CoordinateBenchmark
+ * @see PathBenchmark
+ * @see TickBenchmark
+ */
+public class Benchmarks {
+
+    /**
+     * Main method for the benchmarks.
+     *
+     * @param args the JMH command line, such as a pattern of benchmarks to run
+     */
+    public static void main(String[] args) {
+        try {
+            Options options = new OptionsBuilder()
+                    .parent(new CommandLineOptions(args))
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        } catch (CommandLineOptionException e) {
+            System.err.println("Bad arguments: " + e.getMessage());
+            System.exit(1);
+        } catch (RunnerException e) {
+            System.err.println("Benchmarks could not be run:" + e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package lms.bench;
+
+import lms.grid.Coordinate;
+import lms.grid.Orientation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures stepping to the neighbours of a Coordinate, both as objects and packed, and
+ * hashing Coordinates
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CoordinateBenchmark {
+
+    /**
+     * The directions to step in
+     */
+    private static final Orientation[] DIRECTIONS = Orientation.values();
+
+    /**
+     * The coordinates to step from, spread over a range-50 grid
+     */
+    private Coordinate[] coordinates;
+
+    /**
+     * The coordinates to step from, packed
+     */
+    private long[] packed;
+
+    /**
+     * Picks the coordinates
+     */
+    @Setup
+    public void setUp() {
+        coordinates = new Coordinate[1024];
+        packed = new long[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            int q = (i * 37) % 101 - 50;
+            int r = Math.max(-50 - q, Math.min(50 - q, (i * 53) % 101 - 50));
+            coordinates[i] = new Coordinate(q, r);
+            packed[i] = coordinates[i].pack();
+        }
+    }
+
+    /**
+     * Steps to every neighbour of every coordinate with getNeighbour()
+     *
+     * @param blackhole consumes the neighbours
+     */
+    @Benchmark
+    public void neighbour(Blackhole blackhole) {
+        for (Coordinate coordinate : coordinates) {
+            for (Orientation direction : DIRECTIONS) {
+                blackhole.consume(coordinate.getNeighbour(direction));
+            }
+        }
+    }
+
+    /**
+     * Steps to every neighbour of every packed coordinate
+     *
+     * @param blackhole consumes the neighbours
+     */
+    @Benchmark
+    public void packedNeighbour(Blackhole blackhole) {
+        for (long coordinate : packed) {
+            for (Orientation direction : DIRECTIONS) {
+                blackhole.consume(Coordinate.neighbour(coordinate, direction));
+            }
+        }
+    }
+
+    /**
+     * Hashes every coordinate
+     *
+     * @return the sum of the hash codes
+     */
+    @Benchmark
+    public int hashCodes() {
+        int sum = 0;
+        for (Coordinate coordinate : coordinates) {
+            sum += coordinate.hashCode();
+        }
+        return sum;
+    }
+}
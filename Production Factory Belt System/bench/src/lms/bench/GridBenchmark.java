@@ -0,0 +1,84 @@
+package lms.bench;
+
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building an empty GameGrid, copying the cells of a full one out with
+ * getGrid(), and visiting its set cells with getPlacedView()
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GridBenchmark {
+
+    /**
+     * The range of the grid
+     */
+    @Param({"10", "50", "200"})
+    public int range;
+
+    /**
+     * A grid with every cell filled
+     */
+    private GameGrid grid;
+
+    /**
+     * Loads the full grid
+     */
+    @Setup
+    public void setUp() {
+        grid = SaveText.load(range);
+    }
+
+    /**
+     * Builds an empty grid
+     *
+     * @return the grid
+     */
+    @Benchmark
+    public GameGrid construct() {
+        return new GameGrid(range);
+    }
+
+    /**
+     * Copies the cells of the full grid and visits every component
+     *
+     * @param blackhole consumes the components
+     */
+    @Benchmark
+    public void getGrid(Blackhole blackhole) {
+        for (GridComponent component : grid.getGrid().values()) {
+            blackhole.consume(component);
+        }
+    }
+
+    /**
+     * Visits every set cell of the full grid through the placed view
+     *
+     * @param blackhole consumes the components
+     */
+    @Benchmark
+    public void placedView(Blackhole blackhole) {
+        for (GridComponent component : grid.getPlacedView().values()) {
+            blackhole.consume(component);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package lms.bench;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.io.GameLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures GameLoader.load() on generated save files of increasing range
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoaderBenchmark {
+
+    /**
+     * The range of the generated grid
+     */
+    @Param({"10", "50", "200"})
+    public int range;
+
+    /**
+     * The text of the save file
+     */
+    private String text;
+
+    /**
+     * Writes the save file to load
+     */
+    @Setup
+    public void setUp() {
+        text = SaveText.generate(range);
+    }
+
+    /**
+     * Loads the save file
+     *
+     * @return the loaded grid
+     * @throws IOException if the reader fails
+     * @throws FileFormatException if the save file is invalid
+     */
+    @Benchmark
+    public GameGrid load() throws IOException, FileFormatException {
+        return GameLoader.load(new StringReader(text));
+    }
+}
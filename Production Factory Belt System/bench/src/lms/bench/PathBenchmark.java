@@ -0,0 +1,112 @@
+package lms.bench;
+
+import lms.logistics.Item;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the ends of a long line with Path.head() and Path.tail(), both when
+ * the ends are remembered and when a link has just changed, and visiting the line with
+ * Path.applyAll()
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PathBenchmark {
+
+    /**
+     * The number of belts on the line
+     */
+    @Param({"100", "10000", "1000000"})
+    public int length;
+
+    /**
+     * The Path of the belt in the middle of the line
+     */
+    private Path middle;
+
+    /**
+     * The Path of the Producer at the head of the line
+     */
+    private Path head;
+
+    /**
+     * Builds the line
+     */
+    @Setup
+    public void setUp() {
+        Item item = new Item("ab");
+        Transport previous = new Producer(1, item);
+        head = previous.getPath();
+        for (int id = 2; id <= length + 2; id++) {
+            Transport next = id == length + 2 ? new Receiver(id, item) : new Belt(id);
+            next.setInput(previous.getPath());
+            previous = next;
+            if (id == length / 2 + 1) {
+                middle = next.getPath();
+            }
+        }
+    }
+
+    /**
+     * Finds the head of the line from its middle, where it is remembered
+     *
+     * @return the head
+     */
+    @Benchmark
+    public Path head() {
+        return middle.head();
+    }
+
+    /**
+     * Finds the tail of the line from its middle, where it is remembered
+     *
+     * @return the tail
+     */
+    @Benchmark
+    public Path tail() {
+        return middle.tail();
+    }
+
+    /**
+     * Finds both ends of the line from its middle after a link has changed
+     *
+     * @param blackhole consumes the ends
+     */
+    @Benchmark
+    public void endsAfterLinkChange(Blackhole blackhole) {
+        head.restoreLinks(head.getPrevious(), head.getNext());
+        blackhole.consume(middle.head());
+        blackhole.consume(middle.tail());
+    }
+
+    /**
+     * Visits every transport of the line
+     *
+     * @param blackhole consumes the transports
+     */
+    @Benchmark
+    public void applyAll(Blackhole blackhole) {
+        middle.applyAll(blackhole::consume);
+    }
+}
@@ -0,0 +1,61 @@
+package lms.bench;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.io.GameLoader;
+import lms.io.SaveGenerator;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes GameLoader save files for the benchmarks with a SaveGenerator, from a fixed seed
+ * so that every run measures the same layout.
+ */
+final class SaveText {
+
+    /**
+     * The seed of every layout
+     */
+    private static final long SEED = 2002;
+
+    /**
+     * There are no instances of SaveText
+     */
+    private SaveText() {}
+
+    /**
+     * Writes a save file of the given range, with paths that wind across several rows
+     *
+     * @param range the range of the grid, at least 1
+     * @return the text of the save file
+     */
+    static String generate(int range) {
+        SaveGenerator generator = new SaveGenerator(range, SEED);
+        generator.setPathLengths(2, 4 * range + 2);
+        StringWriter text = new StringWriter();
+        try {
+            generator.writeText(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Loads the save file written by generate()
+     *
+     * @param range the range of the grid, at least 1
+     * @return the loaded grid
+     * @throws IllegalStateException if the generated file does not load
+     */
+    static GameGrid load(int range) throws IllegalStateException {
+        try {
+            return GameLoader.load(new StringReader(generate(range)));
+        } catch (IOException | FileFormatException e) {
+            throw new IllegalStateException("Generated save did not load", e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package lms.bench;
+
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Path;
+import lms.logistics.container.Receiver;
+import lms.simulation.Simulation;
+import lms.simulation.TickMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full tick of a grid, as the Controller runs it, in each TickMode, both
+ * while items flow and once every path has jammed
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickBenchmark {
+
+    /**
+     * The range of the grid
+     */
+    @Param({"10", "50", "200"})
+    public int range;
+
+    /**
+     * How each tick is run, SEQUENTIAL being what the Controller uses
+     */
+    @Param({"SEQUENTIAL", "PARALLEL", "ACTIVE", "PARTITIONED"})
+    public TickMode mode;
+
+    /**
+     * The state of the paths while they are ticked
+     */
+    @Param({"FLOWING", "JAMMED"})
+    public Layout layout;
+
+    /**
+     * The states the paths of the grid can be ticked in
+     */
+    public enum Layout {
+        /**
+         * Every path delivers to its Receiver
+         */
+        FLOWING,
+
+        /**
+         * Every Receiver is cut off from its path, and the paths have filled up, so that
+         * nothing moves apart from the producers trying to
+         */
+        JAMMED
+    }
+
+    /**
+     * The simulation being ticked
+     */
+    private Simulation simulation;
+
+    /**
+     * Loads the grid and compiles its plan with a first tick, after running it until
+     * every path has filled up for the jammed layout
+     */
+    @Setup
+    public void setUp() {
+        GameGrid grid = SaveText.load(range);
+        if (layout == Layout.JAMMED) {
+            for (GridComponent component : grid.getGrid().values()) {
+                if (component instanceof Receiver receiver
+                        && receiver.getPath().getPrevious() != null) {
+                    Path last = receiver.getPath().getPrevious();
+                    last.restoreLinks(last.getPrevious(), null);
+                    receiver.getPath().restoreLinks(null, null);
+                }
+            }
+        }
+        simulation = new Simulation(grid);
+        simulation.setMode(mode);
+        simulation.tick();
+        if (layout == Layout.JAMMED) {
+            // a producer fills one belt every other tick, on paths of up to 4 * range + 2
+            for (int tick = 0; tick < 8 * range + 8; tick++) {
+                simulation.tick();
+            }
+        }
+    }
+
+    /**
+     * Ticks the simulation once
+     *
+     * @return the simulation, so the tick is not dropped
+     */
+    @Benchmark
+    public Simulation tick() {
+        simulation.tick();
+        return simulation;
+    }
+}
@@ -31,6 +31,17 @@ public class FileFormatException extends Exception {
         super(message + " (line: " + lineNum + ")");
     }
 
+    /**
+     * Constructs FileFormatException with specified message, line number and column
+     *
+     * @param message a String detailing the message for exception
+     * @param lineNum the line number where it occurred
+     * @param column the column (starting from 1) where it occurred
+     */
+    public FileFormatException(String message, int lineNum, int column) {
+        super(message + " (line: " + lineNum + ", column: " + column + ")");
+    }
+
     /**
      * Constructs FileFormatException with specified message, line number and cause
      *
@@ -1,8 +1,6 @@
 package lms.grid;
 
 
-import java.util.*;
-
 /**
  * This is the Coordinate class, which is used to represent coordinates on a hexagonal grid.
  * (If you have read the GameLoader class,
@@ -24,6 +22,9 @@ import java.util.*;
  * the implementation approach "doesn't matter". </p>
  * <p>When loading a grid, you will elect a point as the origin,
  * and then use the methods provided to navigate around and generate new Coordinates.</p>
+ * <p>A Coordinate on a grid (where q + r + s == 0) can also be packed into a single long
+ * with pack(). The static methods that take packed coordinates step to neighbours and
+ * work out directions using lookup tables, without allocating, for use in inner loops.</p>
  *
  * @version 1.1
  * @provided
@@ -46,16 +47,54 @@ public class Coordinate {
     private final int cordS;
 
     /**
-     * A Map that tracks how to calculate each of the cardinal directions of the coordinate system.
+     * The change in q for a step in each direction, indexed by Orientation#ordinal()
+     */
+    private static final int[] DIRECTION_Q = new int[Orientation.values().length];
+
+    /**
+     * The change in r for a step in each direction, indexed by Orientation#ordinal()
+     */
+    private static final int[] DIRECTION_R = new int[Orientation.values().length];
+
+    /**
+     * The direction for each normalised vector, indexed by vectorIndex(), or null if
+     * the vector is not a direction
+     */
+    private static final Orientation[] VECTOR_DIRECTIONS = new Orientation[27];
+
+    static {
+        direction(Orientation.TOP_LEFT, 0, -1);
+        direction(Orientation.TOP_RIGHT, +1, -1);
+        direction(Orientation.RIGHT, +1, 0);
+        direction(Orientation.BOTTOM_RIGHT, 0, +1);
+        direction(Orientation.BOTTOM_LEFT, -1, +1);
+        direction(Orientation.LEFT, -1, 0);
+    }
+
+    /**
+     * Fills in the lookup tables for one of the cardinal directions of the coordinate system.
+     *
+     * @param orientation the direction
+     * @param q the change in q for one step in the direction
+     * @param r the change in r for one step in the direction
      */
-    private static final Map<Orientation, Coordinate> directions = Map.ofEntries(
-            Map.entry(Orientation.TOP_LEFT, new Coordinate(0, -1, +1)),
-            Map.entry(Orientation.TOP_RIGHT, new Coordinate(+1, -1, 0)),
-            Map.entry(Orientation.RIGHT, new Coordinate(+1, 0, -1)),
-            Map.entry(Orientation.BOTTOM_RIGHT, new Coordinate(0, +1, -1)),
-            Map.entry(Orientation.BOTTOM_LEFT, new Coordinate(-1, +1, 0)),
-            Map.entry(Orientation.LEFT, new Coordinate(-1, 0, +1))
-    );
+    private static void direction(Orientation orientation, int q, int r) {
+        DIRECTION_Q[orientation.ordinal()] = q;
+        DIRECTION_R[orientation.ordinal()] = r;
+        VECTOR_DIRECTIONS[vectorIndex(q, r, -q - r)] = orientation;
+    }
+
+    /**
+     * Returns the index of a normalised vector in VECTOR_DIRECTIONS
+     *
+     * @param q the q component, between -1 and 1
+     * @param r the r component, between -1 and 1
+     * @param s the s component, between -1 and 1
+     * @return the index of the vector
+     */
+    private static int vectorIndex(int q, int r, int s) {
+        return (q + 1) * 9 + (r + 1) * 3 + (s + 1);
+    }
 
     /**
      * This should be the origin Coordinate,
@@ -89,13 +128,41 @@ public class Coordinate {
     }
 
 
+    /**
+     * Returns the q (first) component of this Coordinate
+     *
+     * @return the q component
+     */
+    public int getQ() {
+        return cordQ;
+    }
+
+    /**
+     * Returns the r (second) component of this Coordinate
+     *
+     * @return the r component
+     */
+    public int getR() {
+        return cordR;
+    }
+
+    /**
+     * Returns the s (third) component of this Coordinate
+     *
+     * @return the s component
+     */
+    public int getS() {
+        return cordS;
+    }
+
     /**
      * Returns the hash code for this Coordinate object.
      *
      * @return the hash code for this Coordinate object.
      */
     public int hashCode() {
-        return Objects.hash(cordQ, cordR, cordS);
+        // the same value as Objects.hash(cordQ, cordR, cordS), without boxing
+        return 31 * (31 * (31 + cordQ) + cordR) + cordS;
     }
 
     /**
@@ -125,7 +192,7 @@ public class Coordinate {
      * to the left of the current coordinate.
      */
     public Coordinate getLeft() {
-        return add(directions.get(Orientation.LEFT));
+        return getNeighbour(Orientation.LEFT);
     }
 
     /**
@@ -136,7 +203,7 @@ public class Coordinate {
      * to the right of the current coordinate.
      */
     public Coordinate getRight() {
-        return add(directions.get(Orientation.RIGHT));
+        return getNeighbour(Orientation.RIGHT);
     }
 
     /**
@@ -147,7 +214,7 @@ public class Coordinate {
      * to the top-left of the current coordinate.
      */
     public Coordinate getTopLeft() {
-        return add(directions.get(Orientation.TOP_LEFT));
+        return getNeighbour(Orientation.TOP_LEFT);
     }
 
     /**
@@ -158,7 +225,7 @@ public class Coordinate {
      * to the top-right of the current coordinate.
      */
     public Coordinate getTopRight() {
-        return add(directions.get(Orientation.TOP_RIGHT));
+        return getNeighbour(Orientation.TOP_RIGHT);
     }
 
     /**
@@ -169,7 +236,7 @@ public class Coordinate {
      * to the bottom-left of the current coordinate.
      */
     public Coordinate getBottomLeft() {
-        return add(directions.get(Orientation.BOTTOM_LEFT));
+        return getNeighbour(Orientation.BOTTOM_LEFT);
     }
 
     /**
@@ -180,35 +247,22 @@ public class Coordinate {
      * to the bottom-right of the current coordinate.
      */
     public Coordinate getBottomRight() {
-        return add(directions.get(Orientation.BOTTOM_RIGHT));
+        return getNeighbour(Orientation.BOTTOM_RIGHT);
     }
 
     /**
-     * Returns a new Coordinate object that is the result of
-     * adding the given vector to this Coordinate object.
+     * Returns the coordinate that is one step from the current coordinate
+     * in the given direction.
      *
-     * @param vector the vector to add to this Coordinate object.
-     * @return a new Coordinate object that is the result of
-     * adding the given vector to this Coordinate object.
+     * @param orientation the direction to step in
+     * @return The coordinate that is one step in the given direction.
      */
-    private Coordinate add(Coordinate vector) {
-        return new Coordinate(cordQ + vector.cordQ, cordR + vector.cordR, cordS + vector.cordS);
-
-    }
-
-    /**
-     * Returns a new Coordinate object that is the result of
-     * subtracting the given vector from this Coordinate object.
-     *
-     * @param vector the vector to subtract from this Coordinate object.
-     * @return a new Coordinate object that is the result of
-     * subtracting the given vector from this Coordinate object.
-     */
-    private Coordinate subtract(Coordinate vector) {
-        return new Coordinate(cordQ - vector.cordQ, cordR - vector.cordR, cordS - vector.cordS);
+    public Coordinate getNeighbour(Orientation orientation) {
+        int q = DIRECTION_Q[orientation.ordinal()];
+        int r = DIRECTION_R[orientation.ordinal()];
+        return new Coordinate(cordQ + q, cordR + r, cordS - q - r);
     }
 
-
     /**
      * Returns true if the given Coordinate object is a
      * neighbour of this Coordinate object, false otherwise.
@@ -219,8 +273,8 @@ public class Coordinate {
      * neighbour of this Coordinate object, false otherwise.
      */
     public boolean isNeighbour(Coordinate coordinate) {
-        Coordinate vector = subtract(coordinate);
-        return directions.containsValue(vector);
+        return isUnitVector(cordQ - coordinate.cordQ, cordR - coordinate.cordR,
+                cordS - coordinate.cordS);
     }
 
     /**
@@ -233,38 +287,130 @@ public class Coordinate {
      * @ensures Orientation returns is correct as a direct relation
      */
     public Orientation getDirection(Coordinate coordinate) {
+        return direction(coordinate.cordQ - cordQ, coordinate.cordR - cordR,
+                coordinate.cordS - cordS);
+    }
 
-        /*
-         * vector is the direction you would need to travel to get
-         * from this coordinate to the next
-         */
-        Coordinate vector = normalise(coordinate.subtract(this));
-
-        List<Orientation> ors = directions.entrySet().stream()
-                .filter(entry -> entry.getValue().equals(vector))
-                .map(Map.Entry::getKey)
-                .toList();
-        if (ors.size() != 1) {
-            throw new RuntimeException("Got incorrect directions from one coordinate");
-        }
-        return ors.get(0);
+    /**
+     * Packs this Coordinate into a single long, with q in the high 32 bits and r in the
+     * low 32 bits. s is not stored, since it is always -q - r on a grid.
+     *
+     * @return the packed coordinate
+     * @requires getQ() + getR() + getS() == 0
+     */
+    public long pack() {
+        return pack(cordQ, cordR);
     }
 
     /**
-     * Returns the normalised coordinate
+     * Packs an axial coordinate into a single long
      *
-     * @param vector Coordinate (a) q r s
-     * @return Coordinate normalised (for getDirection)
-     */
-    private Coordinate normalise(Coordinate vector) {
-        return new Coordinate(
-                vector.cordQ / Math.max(Math.abs(vector.cordQ), 1),
-                vector.cordR / Math.max(Math.abs(vector.cordR), 1),
-                vector.cordS / Math.max(Math.abs(vector.cordS), 1)
-        );
+     * @param q the q component
+     * @param r the r component
+     * @return the packed coordinate
+     */
+    public static long pack(int q, int r) {
+        return ((long) q << 32) | (r & 0xFFFFFFFFL);
     }
 
+    /**
+     * Creates the Coordinate for a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @return the Coordinate it represents
+     */
+    public static Coordinate unpack(long packed) {
+        return new Coordinate(packedQ(packed), packedR(packed));
+    }
+
+    /**
+     * Returns the q component of a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @return the q component
+     */
+    public static int packedQ(long packed) {
+        return (int) (packed >> 32);
+    }
 
+    /**
+     * Returns the r component of a packed coordinate
+     *
+     * @param packed the packed coordinate
+     * @return the r component
+     */
+    public static int packedR(long packed) {
+        return (int) packed;
+    }
 
+    /**
+     * Returns the packed coordinate one step from a packed coordinate in the given direction
+     *
+     * @param packed the packed coordinate to step from
+     * @param orientation the direction to step in
+     * @return the packed neighbour
+     */
+    public static long neighbour(long packed, Orientation orientation) {
+        return pack(packedQ(packed) + DIRECTION_Q[orientation.ordinal()],
+                packedR(packed) + DIRECTION_R[orientation.ordinal()]);
+    }
 
-}
\ No newline at end of file
+    /**
+     * Checks whether two packed coordinates are neighbours
+     *
+     * @param first the first packed coordinate
+     * @param second the second packed coordinate
+     * @return true if they are one step apart, false otherwise
+     */
+    public static boolean isNeighbour(long first, long second) {
+        int q = packedQ(first) - packedQ(second);
+        int r = packedR(first) - packedR(second);
+        return isUnitVector(q, r, -q - r);
+    }
+
+    /**
+     * Gets the direction required to travel from one packed coordinate to another
+     *
+     * @param from the packed coordinate to travel from
+     * @param to the packed coordinate to travel to
+     * @return Orientation direction of travel
+     * @requires the coordinates are neighbours or lie on a straight line
+     */
+    public static Orientation getDirection(long from, long to) {
+        int q = packedQ(to) - packedQ(from);
+        int r = packedR(to) - packedR(from);
+        return direction(q, r, -q - r);
+    }
+
+    /**
+     * Checks whether a vector is one step in one of the cardinal directions
+     *
+     * @param q the q component of the vector
+     * @param r the r component of the vector
+     * @param s the s component of the vector
+     * @return true if the vector is a single step, false otherwise
+     */
+    private static boolean isUnitVector(int q, int r, int s) {
+        return q + r + s == 0 && Math.max(Math.abs(q), Math.max(Math.abs(r), Math.abs(s))) == 1;
+    }
+
+    /**
+     * Returns the direction of a vector, by normalising each component to -1, 0 or 1
+     * and looking it up
+     *
+     * @param q the q component of the vector
+     * @param r the r component of the vector
+     * @param s the s component of the vector
+     * @return the direction of the vector
+     * @throws RuntimeException if the vector is not along one of the directions
+     */
+    private static Orientation direction(int q, int r, int s) {
+        Orientation orientation =
+                VECTOR_DIRECTIONS[vectorIndex(Integer.signum(q), Integer.signum(r),
+                        Integer.signum(s))];
+        if (orientation == null) {
+            throw new RuntimeException("Got incorrect directions from one coordinate");
+        }
+        return orientation;
+    }
+}
@@ -1,13 +1,29 @@
 package lms.grid;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * The GameGrid is responsible for managing the state and initialisation of the game's grid.
  * It provides the Map structure to hold the coordinates of each node in the grid. It also
  * maintains the size of the grid using a range variable. The range value donates how many
  * nodes each hexagonal grid node extends to.
+ * <p>
+ * The cells are stored sparsely, in square chunks of axial (q, r) offsets within the
+ * range. A chunk is only allocated when something is placed in it, and a cell that has
+ * never been set holds the shared "ERROR" component without being stored, so building a
+ * GameGrid costs almost nothing whatever its range, and a mostly empty grid takes memory
+ * in proportion to what has been placed on it. Looking up a cell is still a constant
+ * time operation.
+ * <p>
+ * getGridView() gives a read-only Map over every cell without copying it, and
+ * getPlacedView() gives one over only the cells that have been set, which visits just
+ * the allocated chunks.
  *
  * @ass2
  * @version 1.1
@@ -18,9 +34,41 @@ import java.util.Map;
 public class GameGrid {
 
     /**
-     * The map for the GameGrid
+     * The component of every cell that has not been set
+     */
+    private static final GridComponent EMPTY = () -> "ERROR";
+
+    /**
+     * The number of bits of a cell offset that select the cell within its chunk
+     */
+    private static final int CHUNK_BITS = 4;
+
+    /**
+     * The width and height of a chunk, in cells
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * The bits of a cell offset that select the cell within its chunk
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The chunks of the GameGrid, indexed by chunk row, chunk column and chunkIndex(),
+     * where a row of chunks or a chunk is null until something is placed in it, and a
+     * cell is null until it is set
+     */
+    private final GridComponent[][][] chunks;
+
+    /**
+     * A read-only Map view of the cells
+     */
+    private final Map<Coordinate, GridComponent> view;
+
+    /**
+     * A read-only Map view of the cells that have been set
      */
-    private Map<Coordinate, GridComponent> map;
+    private final Map<Coordinate, GridComponent> placedView;
 
     /**
      * The range of the GameGrid
@@ -28,38 +76,144 @@ public class GameGrid {
     private int range;
 
     /**
-     * Generate a new GameGrid with the specified range, store in a Map.
+     * The number of times a GridComponent has been set on the GameGrid
+     */
+    private int modifications;
+
+    /**
+     * The number of cells that have been set
+     */
+    private int placed;
+
+    /**
+     * Generate a new GameGrid with the specified range. Every cell within the range
+     * starts out holding an "ERROR" component, without any of them being stored.
      *
      * @param range the range of the grid
      * @requires range > 0
      */
     public GameGrid(int range) {
-        this.map = generate(range);
         this.range = range;
+        this.chunks = new GridComponent[((2 * range) >> CHUNK_BITS) + 1][][];
+        this.view = new GridView();
+        this.placedView = new PlacedView();
     }
 
     /**
-     * Helper method:
-     * Generates a grid with the given range, starting from the origin (the centre) and
-     * maintaining a balanced shape for the entire mapping structure.
-     * This has been provided to support you with the hexagonal coordinate logic.
-     * @param range The range of the map.
-     * @provided
+     * Returns the component stored at the given axial coordinate
+     *
+     * @param q the q component of the cell
+     * @param r the r component of the cell
+     * @return the component, or EMPTY if the cell has not been set
+     * @requires the cell is within the range
      */
+    private GridComponent get(int q, int r) {
+        int x = q + range;
+        int y = r + range;
+        GridComponent[][] chunkRow = chunks[y >> CHUNK_BITS];
+        if (chunkRow == null) {
+            return EMPTY;
+        }
+        GridComponent[] chunk = chunkRow[x >> CHUNK_BITS];
+        if (chunk == null) {
+            return EMPTY;
+        }
+        GridComponent component = chunk[chunkIndex(x, y)];
+        return component == null ? EMPTY : component;
+    }
 
-    private Map<Coordinate, GridComponent> generate(int range) {
-        Map<Coordinate, GridComponent> tempGrid = new HashMap<>();
-        for (int q = -range; q <= range; q++) { // From negative to positive (inclusive)
-            for (int r = -range; r <= range; r++) { // From negative to positive (inclusive)
-                for (int s = -range; s <= range; s++) { // From negative to positive (inclusive)
-                    if (q + r + s == 0) {
-                        // Useful to default to error
-                        tempGrid.put(new Coordinate(q, r, s), () -> "ERROR");
-                    }
-                }
-            }
+    /**
+     * Stores a component at the given axial coordinate, allocating its chunk if needed
+     *
+     * @param q the q component of the cell
+     * @param r the r component of the cell
+     * @param component the component to store, or null to leave the cell unset
+     * @requires the cell is within the range
+     */
+    private void set(int q, int r, GridComponent component) {
+        int x = q + range;
+        int y = r + range;
+        GridComponent[][] chunkRow = chunks[y >> CHUNK_BITS];
+        if (chunkRow == null) {
+            chunkRow = new GridComponent[chunks.length][];
+            chunks[y >> CHUNK_BITS] = chunkRow;
+        }
+        GridComponent[] chunk = chunkRow[x >> CHUNK_BITS];
+        if (chunk == null) {
+            chunk = new GridComponent[CHUNK_SIZE * CHUNK_SIZE];
+            chunkRow[x >> CHUNK_BITS] = chunk;
+        }
+        int index = chunkIndex(x, y);
+        if (chunk[index] == null && component != null) {
+            placed++;
+        } else if (chunk[index] != null && component == null) {
+            placed--;
+        }
+        chunk[index] = component;
+        this.modifications++;
+    }
+
+    /**
+     * Returns the index of a cell within its chunk
+     *
+     * @param x the q offset of the cell from the left of the range
+     * @param y the r offset of the cell from the top of the range
+     * @return the index of the cell in its chunk
+     */
+    private static int chunkIndex(int x, int y) {
+        return ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+    }
+
+    /**
+     * Checks whether a coordinate is a cell of the GameGrid
+     *
+     * @param coordinate the coordinate to check
+     * @return true if the coordinate lies within the range, false otherwise
+     */
+    public boolean contains(Coordinate coordinate) {
+        int q = coordinate.getQ();
+        int r = coordinate.getR();
+        return q + r + coordinate.getS() == 0 && contains(q, r);
+    }
+
+    /**
+     * Returns the GridComponent at the given coordinate
+     *
+     * @param coordinate the coordinate to look up
+     * @return the GridComponent at the coordinate, or null if it is not within the range
+     */
+    public GridComponent getComponent(Coordinate coordinate) {
+        if (!contains(coordinate)) {
+            return null;
         }
-        return tempGrid;
+        return get(coordinate.getQ(), coordinate.getR());
+    }
+
+    /**
+     * Returns the GridComponent at the given packed coordinate
+     *
+     * @param packed the packed coordinate to look up
+     * @return the GridComponent at the coordinate, or null if it is not within the range
+     * @see Coordinate#pack()
+     */
+    public GridComponent getComponent(long packed) {
+        int q = Coordinate.packedQ(packed);
+        int r = Coordinate.packedR(packed);
+        if (!contains(q, r)) {
+            return null;
+        }
+        return get(q, r);
+    }
+
+    /**
+     * Checks whether an axial coordinate is a cell of the GameGrid
+     *
+     * @param q the q component of the cell
+     * @param r the r component of the cell
+     * @return true if the cell lies within the range, false otherwise
+     */
+    private boolean contains(int q, int r) {
+        return Math.abs(q) <= range && Math.abs(r) <= range && Math.abs(q + r) <= range;
     }
 
     /**
@@ -68,11 +222,28 @@ public class GameGrid {
      * @return the GameGrid map
      */
     public Map<Coordinate, GridComponent> getGrid() {
-        Map<Coordinate, GridComponent> gridCopy = new HashMap<>();
-        for (Map.Entry<Coordinate, GridComponent> entry : this.map.entrySet()) {
-            gridCopy.put(entry.getKey(), entry.getValue());
-        }
-        return gridCopy;
+        return new HashMap<>(view);
+    }
+
+    /**
+     * Returns a read-only view of the GameGrid map. Unlike getGrid(), nothing is copied,
+     * and later changes to the GameGrid show through the view.
+     *
+     * @return an unmodifiable view of the GameGrid map
+     */
+    public Map<Coordinate, GridComponent> getGridView() {
+        return view;
+    }
+
+    /**
+     * Returns a read-only view of the cells of the GameGrid that have been set, in the
+     * same order as getGridView(). Iterating over it only visits the chunks that hold
+     * something, so it is much faster than getGridView() for a sparse grid.
+     *
+     * @return an unmodifiable view of the set cells of the GameGrid map
+     */
+    public Map<Coordinate, GridComponent> getPlacedView() {
+        return placedView;
     }
 
     /**
@@ -89,8 +260,239 @@ public class GameGrid {
      *
      * @param coordinate the coordinate to set the GridComponent to
      * @param component the GridComponent to be set
+     * @throws IllegalArgumentException if the coordinate is not within the range
      */
-    public void setCoordinate(Coordinate coordinate, GridComponent component) {
-        this.map.put(coordinate, component);
+    public void setCoordinate(Coordinate coordinate, GridComponent component)
+            throws IllegalArgumentException {
+        if (!contains(coordinate)) {
+            throw new IllegalArgumentException("Coordinate is outside the grid");
+        }
+        set(coordinate.getQ(), coordinate.getR(), component);
+    }
+
+    /**
+     * Set's the GridComponent at the specified packed coordinate
+     *
+     * @param packed the packed coordinate to set the GridComponent to
+     * @param component the GridComponent to be set
+     * @throws IllegalArgumentException if the coordinate is not within the range
+     * @see Coordinate#pack()
+     */
+    public void setCoordinate(long packed, GridComponent component)
+            throws IllegalArgumentException {
+        int q = Coordinate.packedQ(packed);
+        int r = Coordinate.packedR(packed);
+        if (!contains(q, r)) {
+            throw new IllegalArgumentException("Coordinate is outside the grid");
+        }
+        set(q, r, component);
+    }
+
+    /**
+     * Returns the number of times a GridComponent has been set on the map, which
+     * can be used to tell whether the contents of the map have changed
+     *
+     * @return the modification count of the map
+     */
+    public int getModificationCount() {
+        return this.modifications;
+    }
+
+    /**
+     * A read-only Map backed by the cells of the GameGrid
+     */
+    private class GridView extends AbstractMap<Coordinate, GridComponent> {
+
+        /**
+         * The entries of the map
+         */
+        private final Set<Map.Entry<Coordinate, GridComponent>> entries = new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Coordinate, GridComponent>> iterator() {
+                return new CellIterator();
+            }
+
+            @Override
+            public int size() {
+                return GridView.this.size();
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<Coordinate, GridComponent>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return 3 * range * (range + 1) + 1;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Coordinate coordinate && contains(coordinate);
+        }
+
+        @Override
+        public GridComponent get(Object key) {
+            if (!(key instanceof Coordinate coordinate)) {
+                return null;
+            }
+            return getComponent(coordinate);
+        }
+    }
+
+    /**
+     * Iterates over the cells of the GameGrid, row by row from the top
+     */
+    private class CellIterator implements Iterator<Map.Entry<Coordinate, GridComponent>> {
+
+        /**
+         * The row of the next cell
+         */
+        private int r = -range;
+
+        /**
+         * The q component of the next cell
+         */
+        private int q = 0;
+
+        @Override
+        public boolean hasNext() {
+            return r <= range;
+        }
+
+        @Override
+        public Map.Entry<Coordinate, GridComponent> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Coordinate, GridComponent> entry = new AbstractMap.SimpleImmutableEntry<>(
+                    new Coordinate(q, r), get(q, r));
+            if (++q > Math.min(range, range - r)) {
+                r++;
+                q = Math.max(-range, -range - r);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * A read-only Map backed by the cells of the GameGrid that have been set
+     */
+    private class PlacedView extends AbstractMap<Coordinate, GridComponent> {
+
+        /**
+         * The entries of the map
+         */
+        private final Set<Map.Entry<Coordinate, GridComponent>> entries = new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Coordinate, GridComponent>> iterator() {
+                return new PlacedIterator();
+            }
+
+            @Override
+            public int size() {
+                return placed;
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<Coordinate, GridComponent>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return placed;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public GridComponent get(Object key) {
+            if (!(key instanceof Coordinate coordinate) || !contains(coordinate)) {
+                return null;
+            }
+            GridComponent component = getComponent(coordinate);
+            return component == EMPTY ? null : component;
+        }
+    }
+
+    /**
+     * Iterates over the cells of the GameGrid that have been set, row by row from the
+     * top, skipping the chunks that have not been allocated
+     */
+    private class PlacedIterator implements Iterator<Map.Entry<Coordinate, GridComponent>> {
+
+        /**
+         * The r offset from the top of the range of the row being searched
+         */
+        private int y = 0;
+
+        /**
+         * The q offset from the left of the range of the next cell to search
+         */
+        private int x = 0;
+
+        /**
+         * The next entry, or null if it has not been found yet
+         */
+        private Map.Entry<Coordinate, GridComponent> next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = find();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<Coordinate, GridComponent> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Coordinate, GridComponent> entry = next;
+            next = null;
+            return entry;
+        }
+
+        /**
+         * Searches onwards from (x, y) for the next cell that has been set
+         *
+         * @return the entry of the cell, or null if there are no more
+         */
+        private Map.Entry<Coordinate, GridComponent> find() {
+            int width = 2 * range + 1;
+            while (y < width) {
+                GridComponent[][] chunkRow = chunks[y >> CHUNK_BITS];
+                if (chunkRow == null) {
+                    // skip every row of the unallocated chunk row
+                    y = (y | CHUNK_MASK) + 1;
+                    x = 0;
+                    continue;
+                }
+                while (x < width) {
+                    GridComponent[] chunk = chunkRow[x >> CHUNK_BITS];
+                    if (chunk == null) {
+                        x = (x | CHUNK_MASK) + 1;
+                        continue;
+                    }
+                    GridComponent component = chunk[chunkIndex(x, y)];
+                    x++;
+                    if (component != null) {
+                        return new AbstractMap.SimpleImmutableEntry<>(
+                                new Coordinate(x - 1 - range, y - range), component);
+                    }
+                }
+                y++;
+                x = 0;
+            }
+            return null;
+        }
     }
 }
@@ -1,16 +1,11 @@
 package lms.gui;
 
-import lms.exceptions.BadStateException;
-import lms.logistics.Path;
-import lms.logistics.Transport;
-import lms.grid.GameGrid;
-import lms.grid.GridComponent;
+import lms.metrics.FactoryMetrics;
+import lms.simulation.Simulation;
+import lms.simulation.SimulationRunner;
 
+import javax.management.JMException;
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Controller class for the GUI.
@@ -21,11 +16,27 @@ import java.util.Map;
  */
 public class Controller {
 
+    /**
+     * The default number of ticks per second
+     */
+    private static final double DEFAULT_TICKS_PER_SECOND = 1;
+
     /**
      * View for the canvas application.
      */
     private final ViewModel viewModel;
 
+    /**
+     * The number of ticks per second, or a number that is not positive to run
+     * unthrottled
+     */
+    private final double ticksPerSecond;
+
+    /**
+     * Runs the simulation on its own thread
+     */
+    private SimulationRunner runner;
+
     /**
      * Create a new Controller for the given view, adding ActionListener to
      * the view.
@@ -33,79 +44,41 @@ public class Controller {
      * @param viewModel The view to be managed by this controller.
      */
     public Controller(ViewModel viewModel) {
+        this(viewModel, DEFAULT_TICKS_PER_SECOND);
+    }
+
+    /**
+     * Create a new Controller for the given view, which ticks at the given rate.
+     *
+     * @param viewModel The view to be managed by this controller.
+     * @param ticksPerSecond The tick rate, or a number that is not positive to run as
+     *                       fast as possible.
+     */
+    public Controller(ViewModel viewModel, double ticksPerSecond) {
         this.viewModel = viewModel;
+        this.ticksPerSecond = ticksPerSecond;
     }
 
     /**
-     * JavaDoc not provided since this is a given piece of code
+     * Starts ticking the simulation of the view's map on its own thread, unless the
+     * view is paused. After each snapshot of the inventories is drawn on the event
+     * dispatch thread, the next one is asked for, so the canvas never falls behind and
+     * the simulation never waits for the canvas. The simulation's counters are
+     * published over JMX.
      */
     public void run() {
-        Timer timer = new Timer(1000, e -> {
-            if (viewModel.isPaused()) {
-                return;
-            }
-
-            GameGrid map = viewModel.getMap();
-            List<Path> paths = new ArrayList<>();
-            Map<Transport, Path> pathLog = new HashMap<>();
-
-            for (GridComponent component : map.getGrid().values()) {
-
-                if (!(component instanceof Transport transport)) {
-                    continue;
-                }
-                if (pathLog.containsKey(transport)) {
-                    continue;
-                }
-
-                List<Path> search = new ArrayList<>();
-                List<Path> x = List.of(transport.getPath(), transport.getPath());
-                search.add(x.get(0));
-
-                for (Path path : search) {
-                    if (!path.tail().equals(path)) {
-                        continue;
-                    }
-                    Transport t = path.getNode();
-                    while (true) {
-                        pathLog.put(t, path);
-                        if (path.getPrevious() == null) {
-                            break;
-                        }
-                        Transport previousNode = path.getPrevious().getNode();
-                        List<Path> x1 = List.of(
-                                new Path(previousNode.getPath()),
-                                new Path(previousNode.getPath())
-                        );
-
-                        t = previousNode;
-                        x = x1;
-                       // x.get(0).next(x.get(1).next()) ;//= path;
-
-                        x.get(0).setNext(path);
-                        x.get(1).setNext(path);
-
-
-                        path = x.get(0);
-                    }
-                    paths.add(path.tail());
-                }
-            }
-
-            System.out.println(paths.size());
-            for (Path p : paths) {
-                System.out.println(p);
-                try {
-                    p.applyAll(Transport::tick);
-                } catch (BadStateException bse) {
-                    System.err.println("Tick could not be processed:" + bse);
-                }
-            }
-            viewModel.getCanvas().repaint();
-        });
-        timer.setInitialDelay(0);
-        timer.setRepeats(true);
-        timer.start();
+        Simulation simulation = new Simulation(viewModel.getMap());
+        try {
+            FactoryMetrics.register(simulation);
+        } catch (JMException e) {
+            System.err.println("Metrics could not be registered:" + e);
+        }
+        runner = new SimulationRunner(simulation, ticksPerSecond, viewModel::isPaused,
+                snapshot -> SwingUtilities.invokeLater(() -> {
+                    viewModel.getCanvas().showSnapshot(snapshot);
+                    runner.requestSnapshot();
+                }));
+        runner.start();
     }
 
 }
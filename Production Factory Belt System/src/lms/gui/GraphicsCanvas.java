@@ -1,6 +1,5 @@
 package lms.gui;
 
-import lms.logistics.Item;
 import lms.logistics.Path;
 import lms.logistics.Transport;
 import lms.logistics.container.Receiver;
@@ -9,6 +8,7 @@ import lms.grid.Coordinate;
 import lms.grid.GameGrid;
 import lms.grid.GridComponent;
 import lms.grid.Orientation;
+import lms.simulation.InventorySnapshot;
 
 import javax.swing.*;
 import java.awt.*;
@@ -16,6 +16,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.*;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A JPanel that provides a graphics context for drawing the grid
@@ -35,17 +36,44 @@ class GraphicsCanvas extends JPanel {
      */
     private final List<DrawnElement> hexagons;
 
+    /**
+     * Stores the DrawnElement at each Coordinate, for hit-testing
+     */
+    private final Map<Coordinate, DrawnElement> coordinateElements;
+
+    /**
+     * Stores the DrawnElement of each Transport by id, to find the other end of a link
+     * and the area to repaint when an inventory changes
+     */
+    private final Map<Integer, DrawnElement> transportElements;
+
+    /**
+     * The pixel position of the origin hexagon's centre
+     */
+    private int originX;
+
+    /**
+     * The pixel position of the origin hexagon's centre
+     */
+    private int originY;
+
     /**
      * Stores the hover polygon
      */
     private Polygon hoverPolygon;
 
+    /**
+     * The latest inventories published by the simulation, or null to read the
+     * inventories straight from the transports
+     */
+    private InventorySnapshot snapshot;
+
 
     /**
      * Hidden Class
      * @provided
      */
-    private static class DrawnElement {
+    static class DrawnElement {
 
         /**
          * Stores the coordinate
@@ -83,6 +111,15 @@ class GraphicsCanvas extends JPanel {
             this.cordY = y;
             this.component = component;
         }
+
+        /**
+         * Returns the coordinate of the hexagon
+         *
+         * @return the coordinate
+         */
+        Coordinate getCoordinate() {
+            return coordinate;
+        }
     }
 
     /**
@@ -95,41 +132,24 @@ class GraphicsCanvas extends JPanel {
         super();
         this.setPreferredSize(new Dimension(prefWidth, prefHeight));
         hexagons = new ArrayList<>();
+        coordinateElements = new HashMap<>();
+        transportElements = new HashMap<>();
         hoverPolygon = null;
         addMouseMotionListener(new MouseAdapter() {
 
             /**
-             * This is a method implementation for the mouseMoved method,
-             * which is part of a MouseAdapter object being used in a
-             * GraphicsCanvas class. The mouseMoved method is called when
-             * the user moves the mouse within the canvas.
-             * <p>
-             * The purpose of this method is to determine whether the mouse
-             * is currently hovering over any of the hexagons that have been
-             * added to the GraphicsCanvas. Here's how it works:
-             * <p>
-             * hexagons.stream() - creates a stream of Hexagon objects that
-             * have been added to the GraphicsCanvas.
-             * .map(el -> el.polygon) - maps each Hexagon object to its corresponding
-             * Polygon object. .filter(p -> p.contains(e.getPoint())) - filters the
-             * stream to include only Polygon objects that contain the current mouse
-             * point (e.getPoint()). .findFirst() returns an Optional containing the
-             * first Polygon that was filtered, if one exists.
-             * .ifPresentOrElse(p -> hoverPolygon = p, () -> hoverPolygon = null) -
-             * sets the hoverPolygon variable to the first Polygon if it exists, or
-             * null if it doesn't. The code is checking whether the mouse is currently
-             * hovering over any of the hexagons on the canvas, and if so, it sets the
-             * hoverPolygon variable to the corresponding Polygon. Finally, it calls
-             * repaint() to update the canvas and display the hover state of the hexagon.
+             * Finds the hexagon under the mouse with elementAt(), and repaints the
+             * old and the new hover polygon if it has changed.
              */
             @Override
             public void mouseMoved(MouseEvent e) {
-                hexagons.stream()
-                        .map(el -> el.polygon)
-                        .filter(p -> p.contains(e.getPoint()))
-                        .findFirst()
-                        .ifPresentOrElse(p -> hoverPolygon = p, () -> hoverPolygon = null);
-                repaint();
+                DrawnElement element = elementAt(e.getX(), e.getY());
+                Polygon polygon = element == null ? null : element.polygon;
+                if (polygon != hoverPolygon) {
+                    repaintPolygon(hoverPolygon);
+                    hoverPolygon = polygon;
+                    repaintPolygon(hoverPolygon);
+                }
             }
         });
     }
@@ -138,10 +158,10 @@ class GraphicsCanvas extends JPanel {
      * Draws a game map by generating a hexagonal grid based on the MapComponents
      * of the provided GameGrid. The generated grid is centered on the JPanel that
      * this method is called from, unless its dimensions are (0,0), in which case
-     * the grid is centered on the preferred size of the JPanel. The hexagonal
-     * grid is generated using a slow algorithm that iterates over all the
-     * MapComponents and their connections, drawing the hexagons on a canvas as it
-     * goes.
+     * the grid is centered on the preferred size of the JPanel.
+     * <p>
+     * The centre of each hexagon is worked out directly from its axial coordinate,
+     * so the grid is laid out in a single pass over its cells.
      *
      * @param map the GameGrid to draw
      */
@@ -154,76 +174,185 @@ class GraphicsCanvas extends JPanel {
             x = dimensions.width / 2;
             y = dimensions.height / 2;
         }
-
-        Map<Coordinate, GridComponent> grid = map.getGrid();
+        originX = x;
+        originY = y;
         setLayout(null);
 
-        List<Coordinate> tasklist = new ArrayList<>();
+        for (Map.Entry<Coordinate, GridComponent> cell : map.getGridView().entrySet()) {
+            Coordinate coordinate = cell.getKey();
+            int cellX = centreX(coordinate.getQ(), coordinate.getR());
+            int cellY = centreY(coordinate.getR());
+            addElement(new DrawnElement(coordinate, drawHexagon(cellX, cellY), cellX, cellY,
+                    cell.getValue()));
+        }
+    }
 
-        Coordinate origin = new Coordinate();
+    /**
+     * Returns the x pixel position of the centre of a hexagon. A step right moves a whole
+     * hexagon across, and a step down moves half a hexagon across.
+     *
+     * @param q the q component of the hexagon's coordinate
+     * @param r the r component of the hexagon's coordinate
+     * @return the x position of the hexagon's centre
+     */
+    int centreX(int q, int r) {
+        int size = getHexagonSize();
+        return originX + q * size + r * (size / 2);
+    }
 
-        hexagons.add(new DrawnElement(origin, drawHexagon(x, y), x, y, grid.get(origin)));
-        tasklist.add(origin);
+    /**
+     * Returns the y pixel position of the centre of a hexagon. Each row is three
+     * quarters of a hexagon below the last.
+     *
+     * @param r the r component of the hexagon's coordinate
+     * @return the y position of the hexagon's centre
+     */
+    int centreY(int r) {
+        return originY + r * (getHexagonSize() * 3 / 4);
+    }
 
+    /**
+     * Finds the hexagon containing a point.
+     * <p>
+     * The point is turned back into a fractional axial coordinate and rounded to the
+     * nearest hexagon, so no search is needed. The neighbours of that hexagon are
+     * checked too, in case the integer pixel positions moved an edge by a pixel.
+     *
+     * @param x the x position of the point
+     * @param y the y position of the point
+     * @return the hexagon containing the point, or null if there is none
+     */
+    DrawnElement elementAt(int x, int y) {
         int size = getHexagonSize();
-        int half = size / 2;
-        int threeQuart = size * 3 / 4;
-
-
-        // Incredibly slow algorithm
-        // Improve if you want
-        // Hard because generic Coordinate system and working off connections
-        while (!tasklist.isEmpty()) {
-            Coordinate target = tasklist.remove(0);
-            grid.remove(target);
-            // if item != null do something (drawing)
-
-            DrawnElement element =
-                    hexagons.stream()
-                            .filter(e -> e.coordinate.equals(target))
-                            .findFirst().orElseThrow(IllegalArgumentException::new);
-            for (Coordinate c : grid.keySet()) {
-                if (tasklist.contains(c)) {
-                    continue;
-                }
-                if (target.isNeighbour(c)) {
-                    Orientation direction = target.getDirection(c);
-                    x = element.cordX;
-                    y = element.cordY;
-                    switch (direction) {
-                        case TOP_LEFT -> {
-                            x -= half;
-                            y -= threeQuart;
-                        }
-                        case TOP_RIGHT -> {
-                            x += half;
-                            y -= threeQuart;
-                        }
-                        case RIGHT -> {
-                            x += size;
-                        }
-                        case BOTTOM_RIGHT -> {
-                            x += half;
-                            y += threeQuart;
-                        }
-                        case BOTTOM_LEFT -> {
-                            x -= half;
-                            y += threeQuart;
-                        }
-                        case LEFT -> {
-                            x -= size;
-                        }
-                    }
-                    hexagons.add(new DrawnElement(c, drawHexagon(x, y), x, y,
-                            grid.getOrDefault(c, () -> "ERROR")));
-                    System.out.println("Drew " + c + " as " + grid.getOrDefault(c, () -> "ERROR")
-                            .getEncoding() + " : from - " + target + " - as " + direction);
-                    tasklist.add(c);
+        double r = (double) (y - originY) / (size * 3 / 4);
+        double q = (x - originX - r * (size / 2)) / size;
+        double s = -q - r;
+        long roundQ = Math.round(q);
+        long roundR = Math.round(r);
+        long roundS = Math.round(s);
+        double errorQ = Math.abs(roundQ - q);
+        double errorR = Math.abs(roundR - r);
+        double errorS = Math.abs(roundS - s);
+        // the component with the largest rounding error is the one to fix
+        if (errorQ > errorR && errorQ > errorS) {
+            roundQ = -roundR - roundS;
+        } else if (errorR > errorS) {
+            roundR = -roundQ - roundS;
+        }
+        if (Math.abs(roundQ) > Integer.MAX_VALUE / 2 || Math.abs(roundR) > Integer.MAX_VALUE / 2) {
+            return null;
+        }
+        Coordinate nearest = new Coordinate((int) roundQ, (int) roundR);
+        DrawnElement element = coordinateElements.get(nearest);
+        if (element != null && element.polygon.contains(x, y)) {
+            return element;
+        }
+        for (Orientation orientation : Orientation.values()) {
+            element = coordinateElements.get(nearest.getNeighbour(orientation));
+            if (element != null && element.polygon.contains(x, y)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits the hexagons that overlap an area, row by row.
+     * <p>
+     * The rows and the hexagons within each row that can overlap the area are worked out
+     * from the layout, so only those cells are looked up, and the cost is in proportion
+     * to the size of the area rather than the size of the grid.
+     *
+     * @param area the area, such as the clip of a repaint
+     * @param visitor called with each hexagon that overlaps the area
+     */
+    void visitElements(Rectangle area, Consumer<DrawnElement> visitor) {
+        int size = getHexagonSize();
+        // a hexagon reaches half its size from its centre, and its outline a pixel more
+        int reach = size / 2 + 1;
+        int rowHeight = size * 3 / 4;
+        int top = ceilDiv(area.y - reach - originY, rowHeight);
+        int bottom = Math.floorDiv(area.y + area.height + reach - originY, rowHeight);
+        for (int r = top; r <= bottom; r++) {
+            int rowX = originX + r * (size / 2);
+            int left = ceilDiv(area.x - reach - rowX, size);
+            int right = Math.floorDiv(area.x + area.width + reach - rowX, size);
+            for (int q = left; q <= right; q++) {
+                DrawnElement element = coordinateElements.get(new Coordinate(q, r));
+                if (element != null) {
+                    visitor.accept(element);
                 }
             }
         }
     }
 
+    /**
+     * Divides, rounding up
+     *
+     * @param dividend the number to divide
+     * @param divisor the positive number to divide by
+     * @return the quotient rounded towards positive infinity
+     */
+    private static int ceilDiv(int dividend, int divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    /**
+     * Repaints the area of a polygon
+     *
+     * @param polygon the polygon to repaint, or null for none
+     */
+    private void repaintPolygon(Polygon polygon) {
+        if (polygon != null) {
+            Rectangle bounds = polygon.getBounds();
+            // allow for the outline drawn around the hexagon
+            bounds.grow(1, 1);
+            repaint(bounds);
+        }
+    }
+
+    /**
+     * Adds an element to draw, remembering it by its Transport if it has one
+     *
+     * @param element the element to add
+     */
+    private void addElement(DrawnElement element) {
+        hexagons.add(element);
+        coordinateElements.put(element.coordinate, element);
+        if (element.component instanceof Transport transport) {
+            transportElements.put(transport.getId(), element);
+        }
+    }
+
+    /**
+     * Shows the inventories of a snapshot, repainting the hexagons that changed since
+     * the last one. Must be called on the event dispatch thread.
+     *
+     * @param snapshot the snapshot to show
+     */
+    public void showSnapshot(InventorySnapshot snapshot) {
+        this.snapshot = snapshot;
+        if (snapshot.getChanged() == null) {
+            repaint();
+        } else {
+            repaintChanged(snapshot.getChanged());
+        }
+    }
+
+    /**
+     * Repaints only the hexagons of the given transports, leaving the rest of the
+     * canvas as it is. Transports that are not drawn are ignored.
+     *
+     * @param changed the transports whose inventory has changed
+     */
+    public void repaintChanged(Collection<Transport> changed) {
+        for (Transport transport : changed) {
+            DrawnElement element = transportElements.get(transport.getId());
+            if (element != null && element.component == transport) {
+                repaintPolygon(element.polygon);
+            }
+        }
+    }
 
     /**
      * Draws a line between the specified coordinates and the middle of one of
@@ -292,11 +421,11 @@ class GraphicsCanvas extends JPanel {
      * @throws RuntimeException if no DrawnElement is found with the specified Transport ID
      */
     private DrawnElement getElementByTransportId(int id) {
-        return hexagons.stream()
-                .filter(el -> el.component instanceof Transport)
-                .filter(el -> ((Transport) el.component).getId() == id)
-                .findAny()
-                .orElseThrow(RuntimeException::new);
+        DrawnElement element = transportElements.get(id);
+        if (element == null) {
+            throw new RuntimeException();
+        }
+        return element;
     }
 
     /**
@@ -336,8 +465,9 @@ class GraphicsCanvas extends JPanel {
             graphics2D.fillRect(x - 5, y - 5, 11, 11);
             graphics2D.setPaint(Color.BLACK);
             // Draw item
-            Item item = transport.getInventory();
-            if (item != null) {
+            boolean holdsItem = snapshot == null
+                    ? transport.getInventory() != null : snapshot.isOccupied(transport.getId());
+            if (holdsItem) {
                 graphics2D.setPaint(Color.RED);
                 graphics2D.fillRect(x - 2, y - 2, 5, 5);
             }
@@ -372,12 +502,17 @@ class GraphicsCanvas extends JPanel {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D graphics2D = (Graphics2D) g.create();
+        Rectangle clip = graphics2D.getClipBounds();
 
-        for (DrawnElement shape : hexagons) {
+        Consumer<DrawnElement> painter = shape -> {
             graphics2D.setPaint(Color.BLACK);
             graphics2D.drawPolygon(shape.polygon);
             drawShape(graphics2D, shape);
-
+        };
+        if (clip == null) {
+            hexagons.forEach(painter);
+        } else {
+            visitElements(clip, painter);
         }
 
         if (hoverPolygon != null) {
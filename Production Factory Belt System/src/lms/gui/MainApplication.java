@@ -38,6 +38,20 @@ public class MainApplication {
      */
     public MainApplication(String title, int width, int height, String save)
             throws FileFormatException {
+        this(title, width, height, save, 1);
+    }
+
+    /**
+     * Instantiates the view and controller for this application, ticking at the given rate.
+     *
+     * @param title  String setting the title for the panel
+     * @param width  int setting the width for the panel
+     * @param height int setting the height for the panel
+     * @param save   String setting the save file to load
+     * @param ticksPerSecond double setting the tick rate, not positive to run unthrottled
+     */
+    public MainApplication(String title, int width, int height, String save,
+                           double ticksPerSecond) throws FileFormatException {
         this.SCREEN_WIDTH = width;
         this.SCREEN_HEIGHT = height;
 
@@ -65,7 +79,7 @@ public class MainApplication {
          * Created the view and controller for this application
          */
         ViewModel viewModel = new ViewModel(mainFrame, gameGrid);
-        final Controller controller = new Controller(viewModel); // Thread
+        final Controller controller = new Controller(viewModel, ticksPerSecond); // Thread
 
         /* add frame prepared by the view to the mainFrame JFrame */
         mainFrame.add(viewModel.getPanel());
@@ -90,8 +104,16 @@ public class MainApplication {
          * Debug Configurations to set the path as a command line argument. */
         //args = new String[]{"saves/grid1.txt"};
 
-        if (args.length != 1) {
-            System.err.println("Usage: save_file\n");
+        double ticksPerSecond = 1;
+        if (args.length == 2) {
+            try {
+                ticksPerSecond = Double.parseDouble(args[1]);
+            } catch (NumberFormatException e) {
+                args = new String[0];
+            }
+        }
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("Usage: save_file [ticks_per_second]\n");
             System.err.println("You did not specify the names of the required save file"
                     + " from which to load.");
             System.err.println("To do this, you need to add the command line "
@@ -103,10 +125,11 @@ public class MainApplication {
                     + "setting MainApplication as the Main class.)\n"
                     + "Add the path to your file to the program arguments text box.\n");
             System.err.println("Example: saves/grid1.txt");
+            System.err.println("A tick rate of 0 runs the simulation as fast as possible.");
             System.exit(1);
         }
         try {
-            new MainApplication("Logistics Puzzle", 800, 700, args[0]);
+            new MainApplication("Logistics Puzzle", 800, 700, args[0], ticksPerSecond);
             // Width and height chosen with sufficient size to fit all example saves
         } catch (FileFormatException e) {
             System.err.println("File was incorrectly formatted");
@@ -19,9 +19,9 @@ import java.awt.event.KeyEvent;
 public class ViewModel {
 
     /**
-     * isPaused is used to pause the game loop.
+     * isPaused is used to pause the game loop. It is read by the simulation thread.
      */
-    private boolean isPaused;
+    private volatile boolean isPaused;
 
     /**
      * The map to draw
@@ -158,7 +158,7 @@ public class ViewModel {
         GraphicsCanvas canvas = new GraphicsCanvas(600, 600);
 
         Coordinate origin = new Coordinate();
-        if (map.getGrid().containsKey(origin)) {
+        if (map.getGridView().containsKey(origin)) {
             canvas.drawMap(map);
         } else {
             System.out.println("Coordinate map did not have an Origin Coordinate, nothing was "
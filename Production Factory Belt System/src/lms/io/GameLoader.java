@@ -4,23 +4,45 @@ import lms.exceptions.FileFormatException;
 import lms.exceptions.UnsupportedActionException;
 import lms.grid.Coordinate;
 import lms.grid.GameGrid;
-import lms.grid.GridComponent;
+import lms.grid.Orientation;
 import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
 import lms.logistics.Path;
 import lms.logistics.Transport;
 import lms.logistics.belts.Belt;
 import lms.logistics.container.Producer;
 import lms.logistics.container.Receiver;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.LineNumberReader;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * A class responsible for loading and parsing a text file into a GameGrid
+ * <p>
+ * The file is read in a single pass. Every Transport is recorded by its id as the grid
+ * is constructed, so resolving the ids in the link section does not search the grid, and
+ * loading takes time linear in the size of the file. Errors are reported with the line
+ * (and, in the link section, the column) they were found at.
+ * <p>
+ * The links are checked in time linear in the number of nodes as well: cycles, belts that are
+ * not linked at both ends and Producers whose item doesn't match the key of the Receiver they
+ * feed are all rejected, so a loaded grid never delivers the wrong item to a Receiver.
+ * <p>
+ * A belt cell is written as <code>b</code>, or as <code>b</code> followed by a capacity,
+ * such as <code>b4</code>, for a belt that holds more than one item.
  */
 public class GameLoader {
 
+    /**
+     * The smallest range whose hexagon rows are parsed in parallel
+     */
+    private static final int PARALLEL_RANGE = 32;
+
     /**
      * Parses through and reads a text file to construct a GameGrid of the grid represented in the
      * text file.
@@ -31,25 +53,14 @@ public class GameLoader {
      * @throws FileFormatException if the file is not in the correct format
      */
     public static GameGrid load(Reader reader) throws IOException, FileFormatException {
-        BufferedReader buffer = new BufferedReader(reader);
+        LineNumberReader buffer = new LineNumberReader(reader);
         //Check if first line is integer and set range and gridSize
-        int range;
-        try {
-            range = Integer.parseInt(buffer.readLine());
-        } catch (NumberFormatException e) {
-            throw new FileFormatException();
-        }
+        int range = readInteger(buffer);
         //Check to see if next line has 5 _
         checkUnderscores(buffer);
         //Check if next two lines are integers and set number of producers and receivers
-        int numProducers;
-        int numReceivers;
-        try {
-            numProducers = Integer.parseInt(buffer.readLine());
-            numReceivers = Integer.parseInt(buffer.readLine());
-        } catch (NumberFormatException e) {
-            throw new FileFormatException();
-        }
+        int numProducers = readInteger(buffer);
+        int numReceivers = readInteger(buffer);
         //Check to see if next line has 5 _
         checkUnderscores(buffer);
         //Next two sections for items, create arrays of appropriate lengths
@@ -59,12 +70,13 @@ public class GameLoader {
         checkUnderscores(buffer);
         GameGrid game = new GameGrid(range);
         //Read the Hexagon on the following lines (range of gridSize)
-        int numOfPaths = constructGrid(range, buffer, game, itemsReceiver, itemsProducer);
+        List<Transport> transports = new ArrayList<>();
+        constructGrid(range, buffer, game, itemsReceiver, itemsProducer, transports);
         checkUnderscores(buffer);
         //Construct all the paths
-        determinePaths(buffer, game);
+        determinePaths(buffer, transports);
         //Check that the paths are valid
-        checkValidPaths(numOfPaths, game);
+        checkValidPaths(transports);
         return game;
     }
 
@@ -72,267 +84,786 @@ public class GameLoader {
      * A helper method that retrieves the Node associated with the specified
      * id
      *
-     * @param idText the id for the node to find, as a String
-     * @param game the GameGrid to retrieve from
-     * @return the Transport node with the specified id, or null if it doesn't exist
-     * @throws FileFormatException if there is an error in file formatting
+     * @param id the id for the node to find
+     * @param transports the Transport nodes of the grid, in order of id
+     * @param lineNum the line the id was read from
+     * @param column the column the id was read from
+     * @return the Transport node with the specified id
+     * @throws FileFormatException if no node has the id
      */
-    private static Transport getNodeFromId(String idText, GameGrid game)
+    private static Transport getNodeFromId(int id, List<Transport> transports,
+                                           int lineNum, int column)
             throws FileFormatException {
-        Transport node;
-        int id = Integer.parseInt(idText);
-        for (GridComponent component : game.getGrid().values()) {
-            if (component instanceof Transport && ((Transport) component).getId() == id) {
-                node = (Transport) component;
-                return node;
-            }
-        }
         //If ID specified isn't on the grid, throw exception
-        throw new FileFormatException();
+        if (id < 1 || id > transports.size()) {
+            throw new FileFormatException("No node with id " + id, lineNum, column);
+        }
+        return transports.get(id - 1);
+    }
+
+    /**
+     * A helper method to read a line holding a single integer
+     *
+     * @param buffer the LineNumberReader for the file
+     * @return the integer on the line
+     * @throws IOException if there is an error from the reader
+     * @throws FileFormatException if the line is missing or is not an integer
+     */
+    private static int readInteger(LineNumberReader buffer)
+            throws IOException, FileFormatException {
+        String line = readLine(buffer);
+        try {
+            return Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+            throw new FileFormatException("Expected an integer", buffer.getLineNumber(), e);
+        }
+    }
+
+    /**
+     * A helper method to read the next line, which has to exist
+     *
+     * @param buffer the LineNumberReader for the file
+     * @return the next line
+     * @throws IOException if there is an error from the reader
+     * @throws FileFormatException if the file has ended
+     */
+    private static String readLine(LineNumberReader buffer)
+            throws IOException, FileFormatException {
+        String line = buffer.readLine();
+        if (line == null) {
+            throw new FileFormatException("Unexpected end of file", buffer.getLineNumber() + 1);
+        }
+        return line;
     }
 
     /**
      * A helper method to check the underscore line to separate the sections
      *
-     * @param buffer the BufferedReader for the file
+     * @param buffer the LineNumberReader for the file
      * @throws IOException if there is an error from the reader
      * @throws FileFormatException if the file is not in the correct format
      */
-    private static void checkUnderscores(BufferedReader buffer)
+    private static void checkUnderscores(LineNumberReader buffer)
             throws IOException, FileFormatException {
-        String line = buffer.readLine();
-        if (!(line.substring(0, 5).equals("_____"))) {
-            throw new FileFormatException();
+        String line = readLine(buffer);
+        if (!line.startsWith("_____")) {
+            throw new FileFormatException("Expected a _____ separator", buffer.getLineNumber());
         }
     }
 
     /**
-     * A helper method to add items to a list from the file
+     * A helper method to add items to a list from the file, interning each one
      *
      * @param number the number of expected items
-     * @param buffer the BufferedReader for the file
+     * @param buffer the LineNumberReader for the file
      * @return the array of Items
+     * @throws IOException if there is an error from the reader
      * @throws FileFormatException if the file is not in the correct format
      */
-    private static Item[] addItemsToList(int number, BufferedReader buffer)
-            throws FileFormatException {
+    private static Item[] addItemsToList(int number, LineNumberReader buffer)
+            throws IOException, FileFormatException {
+        if (number < 0) {
+            throw new FileFormatException("Negative item count", buffer.getLineNumber());
+        }
         Item[] items = new Item[number];
         //Add items
         for (int i = 0; i < number; i++) {
             try {
-                items[i] = new Item(buffer.readLine());
-            } catch (Exception e) {
-                throw new FileFormatException();
+                items[i] = ItemRegistry.intern(readLine(buffer));
+            } catch (IllegalArgumentException e) {
+                throw new FileFormatException("Bad item name", buffer.getLineNumber(), e);
             }
         }
         return items;
     }
 
     /**
-     * Determines the starting coordinate for the row by using the origin and row
-     * number.
+     * Determines the starting coordinate for the row in closed form. Every row ends at
+     * the edge of the range, so the first cell is the leftmost one whose s component is
+     * still within the range.
      *
      * @param row the row currently on, middle row is 0, top is -range, bottom is range
      * @param range the range of the grid
-     * @return the Coordinate at the start of the row
+     * @return the packed Coordinate at the start of the row
      */
-    private static Coordinate determineStartCoordinate(int row, int range) {
-        Coordinate coord = new Coordinate(0, 0, 0);
-        int count = 0;
-        for (int j = 0; j < row; j++) {
-            coord = coord.getBottomLeft();
-            count++;
-        }
-        for (int j = 0; j > row; j--) {
-            coord = coord.getTopLeft();
-            count++;
-        }
-        while (count < range) {
-            coord = coord.getLeft();
-            count++;
-        }
-        return coord;
+    private static long determineStartCoordinate(int row, int range) {
+        return Coordinate.pack(Math.max(-range, -range - row), row);
     }
 
     /**
-     * A helper method to determine the paths between each node from the file
+     * A helper method to determine the paths between each node from the file.
+     * <p>
+     * Each line starts with the id of a node, followed by the links of that node:
+     * <ul>
+     *     <li>for a Belt, <code>ID-PREVIOUS</code>, <code>ID-PREVIOUS,NEXT</code>,
+     *     <code>ID-PREVIOUS,</code> or <code>ID-,NEXT</code>. A link is ignored if
+     *     an earlier line has already given the belt that input or output.</li>
+     *     <li>for a Producer, <code>ID-NEXT</code></li>
+     *     <li>for a Receiver, <code>ID-PREVIOUS</code></li>
+     * </ul>
+     * Blank lines are skipped.
      *
-     * @param buffer the BufferedReader for the file
-     * @param game the GameGrid being implemented
+     * @param buffer the LineNumberReader for the file
+     * @param transports the Transport nodes of the grid, in order of id
      * @throws IOException if there is an error from the reader
      * @throws FileFormatException if there is an error in the file formatting
      */
-    private static void determinePaths(BufferedReader buffer, GameGrid game)
+    private static void determinePaths(LineNumberReader buffer, List<Transport> transports)
             throws IOException, FileFormatException {
         String line = buffer.readLine();
-        Transport transportFirst;
-        Transport transportSecond;
-        try {
-            while (line != null) {
-                String[] ids = line.split("[-,]+");
-                transportFirst = getNodeFromId(ids[0], game);
-                if (transportFirst instanceof Belt) {
-                    for (int i = 1; i < line.length(); i++) {
-                        //If the form ID-,ID
-                        if (line.charAt(i) == '-' && line.charAt(i + 1) == ',') {
-                            transportSecond = getNodeFromId(ids[1], game);
-                            if (transportSecond instanceof Producer) {
-                                throw new FileFormatException();
-                            }
-                            transportSecond.setInput(transportFirst.getPath());
-                        } else if (line.charAt(i) == '-' && transportFirst.getInput() == null) {
-                            //If the form ID-ID
-                            transportSecond = getNodeFromId(ids[1], game);
-                            if (transportSecond instanceof Receiver) {
-                                throw new FileFormatException();
-                            }
-                            transportSecond.setOutput(transportFirst.getPath());
-                        } else if (line.charAt(i) == ',' && transportFirst.getOutput() == null
-                                && i != line.length() - 1) {
-                            //If the form ID,ID
-                            transportSecond = getNodeFromId(ids[2], game);
-                            if (transportSecond instanceof Producer) {
-                                throw new FileFormatException();
-                            }
-                            transportSecond.setInput(transportFirst.getPath());
-                        }
-                    }
+        while (line != null) {
+            int lineNum = buffer.getLineNumber();
+            if (!line.isBlank()) {
+                LinkLine link = new LinkLine(line, lineNum);
+                try {
+                    applyLinks(link, transports);
+                } catch (UnsupportedActionException e) {
+                    throw new FileFormatException("Link not supported by node", lineNum, e);
                 }
-                if (transportFirst instanceof Producer) {
-                    if (line.charAt(1) == '-') {
-                        transportSecond = getNodeFromId(ids[1], game);
-                        if (transportSecond instanceof Producer) {
-                            throw new FileFormatException();
-                        }
-                        transportSecond.setInput(transportFirst.getPath());
-                    }
-                    if (line.length() >= 3 && line.charAt(2) == ',') {
-                        throw new FileFormatException();
-                    }
-                    if (line.length() >= 4 && line.charAt(3) == ',') {
-                        throw new FileFormatException();
-                    }
+            }
+            line = buffer.readLine();
+        }
+    }
+
+    /**
+     * A helper method to make the links described by one line of the link section
+     *
+     * @param link the parsed line
+     * @param transports the Transport nodes of the grid, in order of id
+     * @throws FileFormatException if the links are not allowed for the nodes
+     */
+    private static void applyLinks(LinkLine link, List<Transport> transports)
+            throws FileFormatException {
+        Transport transportFirst =
+                getNodeFromId(link.first, transports, link.lineNum, link.firstColumn);
+        Transport transportSecond;
+        //A line holding only an id makes no links
+        if (!link.dash) {
+            if (link.comma) {
+                throw link.error("Expected - after id", link.firstColumn);
+            }
+            return;
+        }
+        if (transportFirst instanceof Belt) {
+            if (link.previous < 0 && link.next < 0) {
+                throw link.error("Expected an id", link.previousColumn);
+            }
+            //If the form ID-ID
+            if (link.previous >= 0 && transportFirst.getInput() == null) {
+                transportSecond = link.node(link.previous, transports, link.previousColumn);
+                if (transportSecond instanceof Receiver) {
+                    throw link.error("A Receiver cannot be an input", link.previousColumn);
                 }
-                if (transportFirst instanceof Receiver) {
-                    if (line.charAt(1) == '-') {
-                        transportSecond = getNodeFromId(ids[1], game);
-                        if (transportSecond instanceof Receiver) {
-                            throw new FileFormatException();
-                        }
-                        transportSecond.setOutput(transportFirst.getPath());
-                    }
-                    if (line.length() >= 3 && line.charAt(2) == ',') {
-                        throw new FileFormatException();
-                    }
-                    if (line.length() >= 4 && line.charAt(3) == ',') {
-                        throw new FileFormatException();
-                    }
+                transportSecond.setOutput(transportFirst.getPath());
+            }
+            //If the form ID-,ID or ID-ID,ID
+            if (link.next >= 0 && (link.previous < 0 || transportFirst.getOutput() == null)) {
+                transportSecond = link.node(link.next, transports, link.nextColumn);
+                if (transportSecond instanceof Producer) {
+                    throw link.error("A Producer cannot be an output", link.nextColumn);
                 }
-                line = buffer.readLine();
+                transportSecond.setInput(transportFirst.getPath());
+            }
+        } else if (transportFirst instanceof Producer) {
+            if (link.previous < 0 || link.comma) {
+                throw link.error("Expected ID-NEXT for a Producer", link.firstColumn);
+            }
+            transportSecond = link.node(link.previous, transports, link.previousColumn);
+            if (transportSecond instanceof Producer) {
+                throw link.error("A Producer cannot be an output", link.previousColumn);
+            }
+            transportSecond.setInput(transportFirst.getPath());
+        } else if (transportFirst instanceof Receiver) {
+            if (link.previous < 0 || link.comma) {
+                throw link.error("Expected ID-PREVIOUS for a Receiver", link.firstColumn);
+            }
+            transportSecond = link.node(link.previous, transports, link.previousColumn);
+            if (transportSecond instanceof Receiver) {
+                throw link.error("A Receiver cannot be an input", link.previousColumn);
             }
-        } catch (UnsupportedActionException e) {
-            throw new FileFormatException();
+            transportSecond.setOutput(transportFirst.getPath());
         }
-
     }
 
     /**
      * A helper method to check whether all paths are valid, i.e. the head of the path is a Producer
      * and the tail of the path is a Receiver. As well, check that Producers do not have a previous
-     * path, and Receivers do not have a following path.
+     * path, Receivers do not have a following path, and that every Producer makes the item that
+     * the Receiver at the tail of its path takes.
+     * <p>
+     * The ends of every node are found by walking its links iteratively and recording the end on
+     * every node passed, so each node is walked past once in each direction. A walk that comes
+     * back to a node it has already passed has found a cycle. Once every path is valid, each
+     * Receiver is told that it only ever receives its key.
      *
-     * @param numOfPaths the number of paths in the game
-     * @param game the GameGrid being implemented
-     * @throws FileFormatException if a path's head isn't a Producer or tail isn't a Receiver
+     * @param transports the Transport nodes of the grid, in order of id
+     * @throws FileFormatException if a path's head isn't a Producer or tail isn't a Receiver, the
+     *                             links form a cycle, or a Producer's item doesn't match the key
+     *                             of the Receiver it feeds
      */
-    private static void checkValidPaths(int numOfPaths, GameGrid game)
+    private static void checkValidPaths(List<Transport> transports)
             throws FileFormatException {
-        Path currentPath;
-        for (int i = 1; i < numOfPaths; i++) {
-            currentPath = getNodeFromId(Integer.toString(i), game).getPath();
-            if (!(currentPath.head().getNode() instanceof Producer)
-                    || !(currentPath.tail().getNode() instanceof Receiver)) {
-                throw new FileFormatException();
-            }
+        int[] heads = new int[transports.size()];
+        int[] tails = new int[transports.size()];
+        int[] walk = new int[transports.size()];
+        for (int i = 0; i < transports.size(); i++) {
+            Transport transport = transports.get(i);
+            Path currentPath = transport.getPath();
             if (currentPath.getNode() instanceof Producer && currentPath.getPrevious() != null) {
-                throw new FileFormatException();
+                throw new FileFormatException(transport + " has an input");
             }
             if (currentPath.getNode() instanceof Receiver && currentPath.getNext() != null) {
-                throw new FileFormatException();
+                throw new FileFormatException(transport + " has an output");
             }
             if (currentPath.getNode() instanceof Belt
                     && (currentPath.getNext() == null || currentPath.getPrevious() == null)) {
-                throw new FileFormatException();
+                throw new FileFormatException(transport + " is not linked at both ends");
+            }
+            Transport head = transports.get(findEnd(i, transports, heads, walk, false));
+            Transport tail = transports.get(findEnd(i, transports, tails, walk, true));
+            if (!(head instanceof Producer) || !(tail instanceof Receiver receiver)) {
+                throw new FileFormatException("Path of " + transport
+                        + " does not run from a Producer to a Receiver");
+            }
+            if (transport instanceof Producer producer
+                    && !producer.getKey().equals(receiver.getKey())) {
+                throw new FileFormatException(producer + " makes " + producer.getKey()
+                        + " but " + receiver + " takes " + receiver.getKey());
+            }
+        }
+        for (Transport transport : transports) {
+            if (transport instanceof Receiver receiver) {
+                receiver.setKeyMatched(true);
             }
         }
     }
 
+    /**
+     * A helper method to find the index of the node at one end of a node's path, by following
+     * its links iteratively. The end is recorded for every node passed, as one more than its
+     * index, so that later walks can stop as soon as they reach a node that has been passed.
+     *
+     * @param start the index of the node to start from
+     * @param transports the Transport nodes of the grid, in order of id
+     * @param ends the recorded end of each node, 0 if it is not known yet and -1 if it is on
+     *             the current walk
+     * @param walk space for the indices of the nodes on the walk
+     * @param forward true to follow outputs to the tail, false to follow inputs to the head
+     * @return the index of the node at the end
+     * @throws FileFormatException if the links form a cycle
+     */
+    private static int findEnd(int start, List<Transport> transports, int[] ends, int[] walk,
+                               boolean forward) throws FileFormatException {
+        int length = 0;
+        int index = start;
+        int end;
+        while (true) {
+            if (ends[index] > 0) {
+                end = ends[index] - 1;
+                break;
+            }
+            if (ends[index] < 0) {
+                throw new FileFormatException("Links of " + transports.get(index)
+                        + " form a cycle");
+            }
+            ends[index] = -1;
+            walk[length++] = index;
+            Path path = transports.get(index).getPath();
+            Path link = forward ? path.getNext() : path.getPrevious();
+            if (link == null) {
+                end = index;
+                break;
+            }
+            index = link.getNode().getId() - 1;
+        }
+        for (int i = 0; i < length; i++) {
+            ends[walk[i]] = end + 1;
+        }
+        return end;
+    }
+
     /**
      * A helper method to construct the grid from the text file
+     * <p>
+     * The rows of the hexagon are read first, then parsed in parallel, since each row is
+     * independent once its start coordinate is known. The ids of each row's transports,
+     * and the items of its Producers and Receivers, start where the rows above it left
+     * off, which is found from a prefix sum over the counts of each row. Ids and items are
+     * given out in the same order as reading the rows one at a time, and the error that
+     * is reported is the first one in the file.
      *
      * @param range the range of the grid
-     * @param buffer the BufferedReader for the file
+     * @param buffer the LineNumberReader for the file
      * @param game the GameGrid being implemented
      * @param itemsReceiver the list of Items for the Receiver
      * @param itemsProducer the list of Items for the Producer
-     * @return an integer of the number of paths created plus one
+     * @param transports the list to add every Transport node to, in order of id
      * @throws IOException if there is an error from the reader
      * @throws FileFormatException if there is an error with the file formatting
      */
-    private static int constructGrid(int range, BufferedReader buffer,
-                           GameGrid game, Item[] itemsReceiver,
-                                     Item[] itemsProducer) throws IOException, FileFormatException {
-        int id = 1;
-        int receiverCount = 0;
-        int producerCount = 0;
-        int maxCells;
-        int cellNumber;
-        Coordinate coord;
-        String hexLine;
-        for (int i = -range; i <= range; i++) {
-            hexLine = buffer.readLine();
-            maxCells = 2 * range + 1 - Math.abs(i);
-            cellNumber = 0;
-            String[] splitLine = hexLine.split(" ");
-            //Starting from origin, determine the starting coordinate for
-            //the hexagon on each row
-            coord = determineStartCoordinate(i, range);
-            for (String hex : splitLine) {
-                //If too many cells, throw exception
-                if (cellNumber >= maxCells) {
-                    throw new FileFormatException();
+    private static void constructGrid(int range, LineNumberReader buffer,
+                                      GameGrid game, Item[] itemsReceiver, Item[] itemsProducer,
+                                      List<Transport> transports)
+            throws IOException, FileFormatException {
+        HexRow[] rows = new HexRow[2 * range + 1];
+        int read = 0;
+        FileFormatException endOfFile = null;
+        for (; read < rows.length; read++) {
+            String line = buffer.readLine();
+            if (line == null) {
+                endOfFile = new FileFormatException("Unexpected end of file",
+                        buffer.getLineNumber() + 1);
+                break;
+            }
+            rows[read] = new HexRow(read - range, buffer.getLineNumber(), line, range);
+        }
+        IntStream parse = IntStream.range(0, read);
+        if (range >= PARALLEL_RANGE) {
+            parse = parse.parallel();
+        }
+        parse.forEach(i -> rows[i].parse());
+
+        int ids = 0;
+        int producers = 0;
+        int receivers = 0;
+        for (int i = 0; i < read; i++) {
+            HexRow row = rows[i];
+            row.checkItems(producers, itemsProducer.length, receivers, itemsReceiver.length);
+            row.firstId = ids + 1;
+            row.firstProducer = producers;
+            row.firstReceiver = receivers;
+            ids += row.transports;
+            producers += row.producers;
+            receivers += row.receivers;
+        }
+        if (endOfFile != null) {
+            throw endOfFile;
+        }
+
+        Transport[] created = new Transport[ids];
+        IntStream build = IntStream.range(0, rows.length);
+        if (range >= PARALLEL_RANGE) {
+            build = build.parallel();
+        }
+        build.forEach(i -> rows[i].create(created, itemsProducer, itemsReceiver));
+        // the grid is not thread safe, so the cells are set one at a time
+        for (HexRow row : rows) {
+            row.place(game, created);
+        }
+        transports.addAll(Arrays.asList(created));
+    }
+
+    /**
+     * Reads the capacity of a belt cell written as <code>bN</code>, such as
+     * <code>b4</code> for a belt that holds four items
+     *
+     * @param hex the cell
+     * @param lineNum the line the cell was read from
+     * @return the capacity of the belt
+     * @throws FileFormatException if the capacity is not a positive integer
+     */
+    private static int readCapacity(String hex, int lineNum) throws FileFormatException {
+        int capacity = 0;
+        for (int i = 1; i < hex.length(); i++) {
+            char c = hex.charAt(i);
+            if (c < '0' || c > '9' || capacity > (Integer.MAX_VALUE - 9) / 10) {
+                throw new FileFormatException("Unknown cell " + hex, lineNum);
+            }
+            capacity = capacity * 10 + (c - '0');
+        }
+        if (capacity < 1) {
+            throw new FileFormatException("Belt capacity must be positive: " + hex, lineNum);
+        }
+        return capacity;
+    }
+
+    /**
+     * One row of the hexagon section, parsed on its own.
+     * <p>
+     * parse() splits the row into cells and counts its transports, keeping the first
+     * error it finds rather than throwing it, so that rows can be parsed in any order.
+     * Once the rows above it have been counted, checkItems() reports the first error of
+     * the row, and create() builds the row's transports.
+     */
+    private static class HexRow {
+
+        /**
+         * The r component of the row
+         */
+        private final int row;
+
+        /**
+         * The line number of the row
+         */
+        private final int lineNum;
+
+        /**
+         * The line holding the row
+         */
+        private final String line;
+
+        /**
+         * The range of the grid
+         */
+        private final int range;
+
+        /**
+         * The encoding of each cell of the row, b for a belt of any capacity
+         */
+        private char[] cells;
+
+        /**
+         * The capacity of each belt cell of the row
+         */
+        private int[] capacities;
+
+        /**
+         * The number of cells on the row
+         */
+        private int cellCount;
+
+        /**
+         * The number of transports on the row
+         */
+        private int transports;
+
+        /**
+         * The number of Producers on the row
+         */
+        private int producers;
+
+        /**
+         * The number of Receivers on the row
+         */
+        private int receivers;
+
+        /**
+         * The first error on the row, or null if there is none
+         */
+        private FileFormatException error;
+
+        /**
+         * The id of the first transport on the row
+         */
+        private int firstId;
+
+        /**
+         * The index of the item of the first Producer on the row
+         */
+        private int firstProducer;
+
+        /**
+         * The index of the item of the first Receiver on the row
+         */
+        private int firstReceiver;
+
+        /**
+         * Creates a row to be parsed
+         *
+         * @param row the r component of the row
+         * @param lineNum the line number of the row
+         * @param line the line holding the row
+         * @param range the range of the grid
+         */
+        private HexRow(int row, int lineNum, String line, int range) {
+            this.row = row;
+            this.lineNum = lineNum;
+            this.line = line;
+            this.range = range;
+        }
+
+        /**
+         * Splits the row into cells on spaces and counts its transports, stopping at the
+         * first error
+         */
+        private void parse() {
+            int maxCells = 2 * range + 1 - Math.abs(row);
+            cells = new char[maxCells];
+            capacities = new int[maxCells];
+            int position = 0;
+            while (position < line.length()) {
+                int end = line.indexOf(' ', position);
+                if (end < 0) {
+                    end = line.length();
                 }
-                //If Receiver, Producer or Belt, assign integer and items
-                if (hex.equals("r")) {
-                    game.setCoordinate(coord, new Receiver(id, itemsReceiver[receiverCount]));
-                    id++;
-                    receiverCount++;
-                    coord = coord.getRight();
-                    cellNumber++;
-                } else if (hex.equals("p")) {
-                    game.setCoordinate(coord, new Producer(id, itemsProducer[producerCount]));
-                    id++;
-                    producerCount++;
-                    coord = coord.getRight();
-                    cellNumber++;
-                } else if (hex.equals("b")) {
-                    game.setCoordinate(coord, new Belt(id));
+                if (end > position) {
+                    String hex = line.substring(position, end);
+                    //If too many cells, stop at the error
+                    if (cellCount >= maxCells) {
+                        error = new FileFormatException("Too many cells in row", lineNum);
+                        return;
+                    }
+                    char cell = hex.length() == 1 ? hex.charAt(0) : 'b';
+                    switch (cell) {
+                        case 'r' -> receivers++;
+                        case 'p' -> producers++;
+                        case 'o', 'w' -> { }
+                        case 'b' -> {
+                            if (!hex.startsWith("b")) {
+                                error = new FileFormatException("Unknown cell " + hex, lineNum);
+                                return;
+                            }
+                            try {
+                                capacities[cellCount] =
+                                        hex.length() == 1 ? 1 : readCapacity(hex, lineNum);
+                            } catch (FileFormatException e) {
+                                error = e;
+                                return;
+                            }
+                        }
+                        default -> {
+                            error = new FileFormatException("Unknown cell " + hex, lineNum);
+                            return;
+                        }
+                    }
+                    if (cell != 'o' && cell != 'w') {
+                        transports++;
+                    }
+                    cells[cellCount++] = cell;
+                }
+                position = end + 1;
+            }
+        }
+
+        /**
+         * Reports the first error on the row, which is either the error found by parse(),
+         * or running out of items for the Producers or Receivers, whichever comes first
+         *
+         * @param producersBefore the number of Producers on the rows above
+         * @param producerItems the number of Producer items
+         * @param receiversBefore the number of Receivers on the rows above
+         * @param receiverItems the number of Receiver items
+         * @throws FileFormatException if the row has an error
+         */
+        private void checkItems(int producersBefore, int producerItems,
+                                int receiversBefore, int receiverItems)
+                throws FileFormatException {
+            int producerCount = producersBefore;
+            int receiverCount = receiversBefore;
+            for (int i = 0; i < cellCount; i++) {
+                if (cells[i] == 'r' && receiverCount++ >= receiverItems) {
+                    throw new FileFormatException("Not enough receiver items", lineNum);
+                }
+                if (cells[i] == 'p' && producerCount++ >= producerItems) {
+                    throw new FileFormatException("Not enough producer items", lineNum);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * Creates the transports of the row, with ids and items following on from the
+         * rows above
+         *
+         * @param created the transports of the grid, in order of id
+         * @param itemsProducer the list of Items for the Producer
+         * @param itemsReceiver the list of Items for the Receiver
+         */
+        private void create(Transport[] created, Item[] itemsProducer,
+                            Item[] itemsReceiver) {
+            int id = firstId;
+            int producerCount = firstProducer;
+            int receiverCount = firstReceiver;
+            for (int i = 0; i < cellCount; i++) {
+                Transport transport = switch (cells[i]) {
+                    case 'r' -> new Receiver(id, itemsReceiver[receiverCount++]);
+                    case 'p' -> new Producer(id, itemsProducer[producerCount++]);
+                    case 'b' -> new Belt(id, capacities[i]);
+                    default -> null;
+                };
+                if (transport != null) {
+                    created[id - 1] = transport;
                     id++;
-                    coord = coord.getRight();
-                    cellNumber++;
-                } else if (hex.equals("o")) {
-                    game.setCoordinate(coord, () -> "o");
-                    coord = coord.getRight();
-                    cellNumber++;
-                } else if (hex.equals("w")) {
-                    game.setCoordinate(coord, () -> "w");
-                    coord = coord.getRight();
-                    cellNumber++;
-                } else if (!(hex.equals(" ") || hex.equals(""))) {
-                    throw new FileFormatException();
                 }
             }
         }
-        return id;
+
+        /**
+         * Sets the cells of the row on the grid
+         *
+         * @param game the GameGrid being implemented
+         * @param created the transports of the grid, in order of id
+         */
+        private void place(GameGrid game, Transport[] created) {
+            //Starting from origin, determine the starting coordinate for the row
+            long cell = determineStartCoordinate(row, range);
+            int id = firstId;
+            for (int i = 0; i < cellCount; i++) {
+                switch (cells[i]) {
+                    case 'o' -> game.setCoordinate(cell, () -> "o");
+                    case 'w' -> game.setCoordinate(cell, () -> "w");
+                    default -> game.setCoordinate(cell, created[id++ - 1]);
+                }
+                cell = Coordinate.neighbour(cell, Orientation.RIGHT);
+            }
+        }
+    }
+
+    /**
+     * One line of the link section, split into its ids by hand.
+     * <p>
+     * A line has the form <code>FIRST[-[PREVIOUS][,[NEXT]]]</code>, where each part is a
+     * positive integer id. The columns of the parts are kept for error messages.
+     */
+    private static class LinkLine {
+
+        /**
+         * The line number of the line
+         */
+        private final int lineNum;
+
+        /**
+         * The line being parsed
+         */
+        private final String line;
+
+        /**
+         * The position of the next character to parse
+         */
+        private int position;
+
+        /**
+         * The id at the start of the line
+         */
+        private int first;
+
+        /**
+         * The column of the first id
+         */
+        private int firstColumn;
+
+        /**
+         * Whether the first id is followed by a -
+         */
+        private boolean dash;
+
+        /**
+         * The id after the -, or -1 if there is none
+         */
+        private int previous = -1;
+
+        /**
+         * The column of the id after the -, or where it was expected
+         */
+        private int previousColumn;
+
+        /**
+         * Whether there is a , after the -
+         */
+        private boolean comma;
+
+        /**
+         * The id after the ,, or -1 if there is none
+         */
+        private int next = -1;
+
+        /**
+         * The column of the id after the ,, or where it was expected
+         */
+        private int nextColumn;
+
+        /**
+         * Parses a line of the link section
+         *
+         * @param line the line to parse
+         * @param lineNum the line number of the line
+         * @throws FileFormatException if the line is not of the right form
+         */
+        private LinkLine(String line, int lineNum) throws FileFormatException {
+            this.line = line;
+            this.lineNum = lineNum;
+            this.position = 0;
+            firstColumn = column();
+            first = readId();
+            if (first < 0) {
+                throw error("Expected an id", firstColumn);
+            }
+            if (accept('-')) {
+                dash = true;
+                previousColumn = column();
+                previous = readId();
+            }
+            if (accept(',')) {
+                comma = true;
+                nextColumn = column();
+                next = readId();
+            }
+            if (position < line.length()) {
+                throw error("Unexpected character '" + line.charAt(position) + "'", column());
+            }
+        }
+
+        /**
+         * Returns the column (starting from 1) of the next character
+         *
+         * @return the column of the next character
+         */
+        private int column() {
+            return position + 1;
+        }
+
+        /**
+         * Consumes the next character if it is the one given
+         *
+         * @param character the character to look for
+         * @return true if the character was consumed, false otherwise
+         */
+        private boolean accept(char character) {
+            if (position < line.length() && line.charAt(position) == character) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Reads a run of digits as an id
+         *
+         * @return the id, or -1 if there are no digits at the position
+         * @throws FileFormatException if the id is too large
+         */
+        private int readId() throws FileFormatException {
+            int start = position;
+            long value = 0;
+            while (position < line.length()) {
+                char c = line.charAt(position);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw error("Id is too large", start + 1);
+                }
+                position++;
+            }
+            return position == start ? -1 : (int) value;
+        }
+
+        /**
+         * Retrieves the node with an id read from this line
+         *
+         * @param id the id of the node
+         * @param transports the Transport nodes of the grid, in order of id
+         * @param column the column the id was read from
+         * @return the node with the id
+         * @throws FileFormatException if no node has the id
+         */
+        private Transport node(int id, List<Transport> transports, int column)
+                throws FileFormatException {
+            return getNodeFromId(id, transports, lineNum, column);
+        }
+
+        /**
+         * Creates an exception for an error at a column of this line
+         *
+         * @param message the error message
+         * @param column the column of the error
+         * @return the exception to throw
+         */
+        private FileFormatException error(String message, int column) {
+            return new FileFormatException(message, lineNum, column);
+        }
     }
 }
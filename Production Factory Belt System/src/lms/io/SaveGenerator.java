@@ -0,0 +1,660 @@
+package lms.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Writes large, valid factory save files from a seed, as GameLoader text or as a binary
+ * snapshot, without building the grid in memory.
+ * <p>
+ * The cells are laid along a track that snakes through the hexagon, left to right along
+ * the top row, right to left along the next and so on, so that every cell on the track
+ * is a neighbour of the one before it. Paths are laid along the track, each a Producer,
+ * its belts and a Receiver, with runs of walls and empty cells between them. A path can
+ * turn from one row into the next. The Producer and Receiver of a path share an item, so
+ * the files pass GameLoader's key checks.
+ * <p>
+ * The layout is a function of the seed and the settings, so a file is written in several
+ * passes that each generate the layout again, one row at a time. Memory use grows with
+ * the range rather than the number of cells, and millions of cells can be written.
+ * <p>
+ * The main method writes a file:
+ * <pre>
+ * java lms.io.SaveGenerator 1000 42 saves/huge.txt --density 0.9 --lengths 10 500
+ * java lms.io.SaveGenerator 1000 42 saves/huge.lmsb --pairs 5000 --geometric
+ * </pre>
+ *
+ * @see GameLoader
+ * @see SnapshotWriter
+ */
+public class SaveGenerator {
+
+    /**
+     * How the lengths of paths are spread between the shortest and longest length
+     */
+    public enum LengthDistribution {
+        /**
+         * Every length is equally likely
+         */
+        UNIFORM,
+
+        /**
+         * Shorter paths are more likely, each extra cell being less likely than the last
+         */
+        GEOMETRIC
+    }
+
+    /**
+     * The cell of a Producer
+     */
+    private static final char PRODUCER = 'p';
+
+    /**
+     * The cell of a Belt
+     */
+    private static final char BELT = 'b';
+
+    /**
+     * The cell of a Receiver
+     */
+    private static final char RECEIVER = 'r';
+
+    /**
+     * The range of the grid
+     */
+    private final int range;
+
+    /**
+     * The seed of the layout
+     */
+    private final long seed;
+
+    /**
+     * The fraction of the cells to fill with transports, roughly
+     */
+    private double density = 0.8;
+
+    /**
+     * The greatest number of Producer and Receiver pairs
+     */
+    private int pairs = Integer.MAX_VALUE;
+
+    /**
+     * The fewest cells on a path, including its Producer and Receiver
+     */
+    private int minLength = 2;
+
+    /**
+     * The most cells on a path, including its Producer and Receiver
+     */
+    private int maxLength = 64;
+
+    /**
+     * How the lengths of paths are spread
+     */
+    private LengthDistribution distribution = LengthDistribution.UNIFORM;
+
+    /**
+     * The fraction of the cells between paths that are walls rather than empty
+     */
+    private double wallRatio = 0.5;
+
+    /**
+     * The number of different items made by the Producers
+     */
+    private int itemKinds = 4;
+
+    /**
+     * Creates a generator for grids of the given range
+     *
+     * @param range the range of the grid
+     * @param seed the seed of the layout
+     * @throws IllegalArgumentException if range is not positive
+     */
+    public SaveGenerator(int range, long seed) throws IllegalArgumentException {
+        if (range < 1) {
+            throw new IllegalArgumentException("Range must be positive");
+        }
+        this.range = range;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the fraction of the cells to fill with transports. The gaps between paths are
+     * chosen so that, on average, this fraction of the track is paths.
+     *
+     * @param density the fraction, greater than 0 and at most 1
+     * @throws IllegalArgumentException if density is out of range
+     */
+    public void setDensity(double density) throws IllegalArgumentException {
+        if (!(density > 0 && density <= 1)) {
+            throw new IllegalArgumentException("Density must be in (0, 1]");
+        }
+        this.density = density;
+    }
+
+    /**
+     * Sets the greatest number of Producer and Receiver pairs. Once this many paths have
+     * been laid, the rest of the track is walls and empty cells.
+     *
+     * @param pairs the number of pairs
+     * @throws IllegalArgumentException if pairs is negative
+     */
+    public void setPairs(int pairs) throws IllegalArgumentException {
+        if (pairs < 0) {
+            throw new IllegalArgumentException("Negative number of pairs");
+        }
+        this.pairs = pairs;
+    }
+
+    /**
+     * Sets the shortest and longest paths, counting their Producer and Receiver. A path
+     * that would run off the end of the track is cut short.
+     *
+     * @param minLength the fewest cells on a path
+     * @param maxLength the most cells on a path
+     * @throws IllegalArgumentException if minLength is less than 2, or maxLength is less
+     *                                  than minLength
+     */
+    public void setPathLengths(int minLength, int maxLength) throws IllegalArgumentException {
+        if (minLength < 2 || maxLength < minLength) {
+            throw new IllegalArgumentException("Path lengths must satisfy 2 <= min <= max");
+        }
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Sets how the lengths of paths are spread
+     *
+     * @param distribution the distribution of lengths
+     */
+    public void setDistribution(LengthDistribution distribution) {
+        this.distribution = distribution;
+    }
+
+    /**
+     * Sets the fraction of the cells between paths that are walls (w) rather than empty
+     * (o)
+     *
+     * @param wallRatio the fraction, from 0 to 1
+     * @throws IllegalArgumentException if wallRatio is out of range
+     */
+    public void setWallRatio(double wallRatio) throws IllegalArgumentException {
+        if (!(wallRatio >= 0 && wallRatio <= 1)) {
+            throw new IllegalArgumentException("Wall ratio must be in [0, 1]");
+        }
+        this.wallRatio = wallRatio;
+    }
+
+    /**
+     * Sets the number of different items made by the Producers
+     *
+     * @param itemKinds the number of items
+     * @throws IllegalArgumentException if itemKinds is not positive
+     */
+    public void setItemKinds(int itemKinds) throws IllegalArgumentException {
+        if (itemKinds < 1) {
+            throw new IllegalArgumentException("There must be at least one item");
+        }
+        this.itemKinds = itemKinds;
+    }
+
+    /**
+     * Writes the layout as a GameLoader save file
+     *
+     * @param output the Writer to write to, which is not closed
+     * @throws IOException if there is an error writing
+     */
+    public void writeText(Writer output) throws IOException {
+        int paths = countPaths();
+        BufferedWriter text = new BufferedWriter(output);
+        text.write(range + "\n_____\n" + paths + "\n" + paths + "\n_____\n");
+        writeItems(text, PRODUCER);
+        text.write("_____\n");
+        writeItems(text, RECEIVER);
+        text.write("_____\n");
+        Layout layout = new Layout();
+        for (Row row = layout.next(); row != null; row = layout.next()) {
+            text.write(" ".repeat(Math.abs(row.r)));
+            for (int i = 0; i < row.kinds.length; i++) {
+                if (i > 0) {
+                    text.write(' ');
+                }
+                text.write(row.kinds[i]);
+            }
+            text.write('\n');
+        }
+        text.write("_____\n");
+        layout = new Layout();
+        for (Row row = layout.next(); row != null; row = layout.next()) {
+            for (int i = 0; i < row.kinds.length; i++) {
+                if (row.kinds[i] == PRODUCER) {
+                    text.write(row.ids[i] + "-" + layout.nextId(i) + "\n");
+                } else if (row.kinds[i] == BELT) {
+                    text.write(row.ids[i] + "-," + layout.nextId(i) + "\n");
+                }
+            }
+        }
+        text.flush();
+    }
+
+    /**
+     * Writes the layout as a binary snapshot, in the format of SnapshotWriter
+     *
+     * @param output the stream to write to, which is not closed
+     * @throws IOException if there is an error writing
+     */
+    public void writeSnapshot(OutputStream output) throws IOException {
+        Layout counted = new Layout();
+        while (counted.next() != null) {
+            // count the transports and paths
+        }
+        int count = counted.transports;
+        int items = Math.min(itemKinds, counted.paths);
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(SnapshotWriter.MAGIC);
+        data.writeInt(SnapshotWriter.VERSION);
+        data.writeInt(range);
+        data.writeInt(count);
+        data.writeInt(items);
+        for (int kind = 0; kind < items; kind++) {
+            byte[] name = itemName(kind).getBytes(StandardCharsets.UTF_8);
+            data.writeInt(name.length);
+            data.write(name);
+        }
+        Layout layout = new Layout();
+        for (Row row = layout.next(); row != null; row = layout.next()) {
+            for (char kind : row.kinds) {
+                data.writeByte(kind);
+            }
+        }
+        for (int id = 1; id <= count; id++) {
+            data.writeInt(id);
+        }
+        layout = new Layout();
+        for (Row row = layout.next(); row != null; row = layout.next()) {
+            for (int i = 0; i < row.kinds.length; i++) {
+                if (row.kinds[i] == BELT) {
+                    data.writeInt(-1);
+                } else if (row.ids[i] > 0) {
+                    data.writeInt(row.paths[i] % itemKinds);
+                }
+            }
+        }
+        for (boolean forward : new boolean[] {true, false}) {
+            layout = new Layout();
+            for (Row row = layout.next(); row != null; row = layout.next()) {
+                for (int i = 0; i < row.kinds.length; i++) {
+                    if (row.ids[i] > 0) {
+                        // ids start from 1, transport indices from 0
+                        data.writeInt((forward ? layout.nextId(i) : layout.previousId(i)) - 1);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            data.writeInt(1);
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes the item of every Producer or every Receiver, in the order of their ids
+     *
+     * @param text the Writer to write to
+     * @param kind the cell of the containers to write the items of
+     * @throws IOException if there is an error writing
+     */
+    private void writeItems(Writer text, char kind) throws IOException {
+        Layout layout = new Layout();
+        for (Row row = layout.next(); row != null; row = layout.next()) {
+            for (int i = 0; i < row.kinds.length; i++) {
+                if (row.kinds[i] == kind) {
+                    text.write(itemName(row.paths[i] % itemKinds));
+                    text.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the paths of the layout
+     *
+     * @return the number of Producer and Receiver pairs
+     */
+    private int countPaths() {
+        Layout layout = new Layout();
+        while (layout.next() != null) {
+            // walk every row
+        }
+        return layout.paths;
+    }
+
+    /**
+     * Returns the name of an item
+     *
+     * @param kind the index of the item
+     * @return the name of the item
+     */
+    private static String itemName(int kind) {
+        return "item" + kind;
+    }
+
+    /**
+     * One row of the layout
+     */
+    private static class Row {
+
+        /**
+         * The r component of the row
+         */
+        private final int r;
+
+        /**
+         * Whether the track runs left to right along the row
+         */
+        private final boolean forward;
+
+        /**
+         * The cell encoding of each cell, from left to right
+         */
+        private final char[] kinds;
+
+        /**
+         * The path of each transport cell, or -1 for other cells
+         */
+        private final int[] paths;
+
+        /**
+         * The id of each transport cell, or 0 for other cells
+         */
+        private final int[] ids;
+
+        /**
+         * Creates an empty row
+         *
+         * @param r the r component of the row
+         * @param width the number of cells on the row
+         * @param forward whether the track runs left to right along the row
+         */
+        private Row(int r, int width, boolean forward) {
+            this.r = r;
+            this.forward = forward;
+            this.kinds = new char[width];
+            this.paths = new int[width];
+            this.ids = new int[width];
+        }
+
+        /**
+         * Returns the id of the first cell of the row along the track
+         *
+         * @return the id, or 0 if the cell is not a transport
+         */
+        private int firstId() {
+            return ids[forward ? 0 : ids.length - 1];
+        }
+
+        /**
+         * Returns the id of the last cell of the row along the track
+         *
+         * @return the id, or 0 if the cell is not a transport
+         */
+        private int lastId() {
+            return ids[forward ? ids.length - 1 : 0];
+        }
+    }
+
+    /**
+     * Generates the rows of the layout in order, from the seed.
+     * <p>
+     * The row after the current one is generated ahead of time, and the row before it
+     * is kept, so that links crossing from one row to the next can be resolved.
+     */
+    private class Layout {
+
+        /**
+         * The random numbers of the layout
+         */
+        private final SplittableRandom random = new SplittableRandom(seed);
+
+        /**
+         * The average number of cells between paths
+         */
+        private final double meanGap;
+
+        /**
+         * The number of cells on the track not yet generated
+         */
+        private long trackLeft = 3L * range * (range + 1) + 1;
+
+        /**
+         * The number of paths started so far
+         */
+        private int paths;
+
+        /**
+         * The number of transports generated so far
+         */
+        private int transports;
+
+        /**
+         * The number of cells of the current path, including its Producer
+         */
+        private int pathLength;
+
+        /**
+         * The number of cells of the current path still to generate
+         */
+        private int pathLeft;
+
+        /**
+         * The number of cells still to generate in the current gap
+         */
+        private long gapLeft;
+
+        /**
+         * The row before the current row, or null if there is none
+         */
+        private Row previous;
+
+        /**
+         * The current row, or null before the first call to next()
+         */
+        private Row current;
+
+        /**
+         * The row after the current row, or null if there is none
+         */
+        private Row ahead;
+
+        /**
+         * Starts generating the layout from the top row
+         */
+        private Layout() {
+            meanGap = (minLength + maxLength) / 2.0 * (1 - density) / density;
+            gapLeft = sampleGap();
+            ahead = generate(-range);
+        }
+
+        /**
+         * Moves on to the next row
+         *
+         * @return the next row, or null after the bottom row
+         */
+        private Row next() {
+            previous = current;
+            current = ahead;
+            ahead = current != null && current.r < range ? generate(current.r + 1) : null;
+            return current;
+        }
+
+        /**
+         * Returns the id of the transport after a cell of the current row on the track,
+         * or 0 if the cell is the last of its path
+         *
+         * @param i the index of the cell in the row
+         * @return the id of the next cell, or 0 if there is none
+         */
+        private int nextId(int i) {
+            if (current.kinds[i] == RECEIVER) {
+                return 0;
+            }
+            int next = current.forward ? i + 1 : i - 1;
+            if (next >= 0 && next < current.ids.length) {
+                return current.ids[next];
+            }
+            return ahead == null ? 0 : ahead.firstId();
+        }
+
+        /**
+         * Returns the id of the transport before a cell of the current row on the track,
+         * or 0 if the cell is the first of its path
+         *
+         * @param i the index of the cell in the row
+         * @return the id of the previous cell, or 0 if there is none
+         */
+        private int previousId(int i) {
+            if (current.kinds[i] == PRODUCER) {
+                return 0;
+            }
+            int before = current.forward ? i - 1 : i + 1;
+            if (before >= 0 && before < current.ids.length) {
+                return current.ids[before];
+            }
+            return previous == null ? 0 : previous.lastId();
+        }
+
+        /**
+         * Generates a row along the track
+         *
+         * @param r the r component of the row
+         * @return the row
+         */
+        private Row generate(int r) {
+            boolean forward = (r + range) % 2 == 0;
+            Row row = new Row(r, 2 * range + 1 - Math.abs(r), forward);
+            for (int step = 0; step < row.kinds.length; step++) {
+                int i = forward ? step : row.kinds.length - 1 - step;
+                if (pathLeft == 0 && gapLeft == 0 && paths < pairs && trackLeft >= 2) {
+                    pathLength = (int) Math.min(sampleLength(), trackLeft);
+                    pathLeft = pathLength;
+                    paths++;
+                    gapLeft = sampleGap();
+                }
+                if (pathLeft > 0) {
+                    row.kinds[i] = pathLeft == pathLength ? PRODUCER
+                            : pathLeft == 1 ? RECEIVER : BELT;
+                    row.paths[i] = paths - 1;
+                    pathLeft--;
+                } else {
+                    row.kinds[i] = random.nextDouble() < wallRatio ? 'w' : 'o';
+                    row.paths[i] = -1;
+                    gapLeft = Math.max(0, gapLeft - 1);
+                }
+                trackLeft--;
+            }
+            // ids run along the row from left to right, whichever way the track runs
+            for (int i = 0; i < row.kinds.length; i++) {
+                row.ids[i] = row.paths[i] < 0 ? 0 : ++transports;
+            }
+            return row;
+        }
+
+        /**
+         * Picks the number of cells on the next path
+         *
+         * @return the length of the path
+         */
+        private int sampleLength() {
+            int spread = maxLength - minLength;
+            if (distribution == LengthDistribution.UNIFORM) {
+                return minLength + random.nextInt(spread + 1);
+            }
+            return minLength + (int) Math.min(spread, sampleGeometric(spread / 2.0));
+        }
+
+        /**
+         * Picks the number of cells before the next path
+         *
+         * @return the length of the gap
+         */
+        private long sampleGap() {
+            return sampleGeometric(meanGap);
+        }
+
+        /**
+         * Picks a whole number from a geometric distribution
+         *
+         * @param mean the mean of the distribution
+         * @return a number that is 0 or more
+         */
+        private long sampleGeometric(double mean) {
+            if (mean <= 0) {
+                return 0;
+            }
+            double draw = Math.log(1 - random.nextDouble()) / Math.log(mean / (1 + mean));
+            return (long) Math.min(draw, Long.MAX_VALUE / 2);
+        }
+    }
+
+    /**
+     * Main method for the generator.
+     *
+     * @param args the range, the seed and the file to write, ending in .lmsb for a
+     *             snapshot, followed optionally by --density D, --pairs N,
+     *             --lengths MIN MAX, --geometric, --walls W and --items K
+     */
+    public static void main(String[] args) {
+        SaveGenerator generator = null;
+        try {
+            generator = new SaveGenerator(Integer.parseInt(args[0]), Long.parseLong(args[1]));
+            for (int i = 3; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--density" -> generator.setDensity(Double.parseDouble(args[++i]));
+                    case "--pairs" -> generator.setPairs(Integer.parseInt(args[++i]));
+                    case "--lengths" -> generator.setPathLengths(Integer.parseInt(args[++i]),
+                            Integer.parseInt(args[++i]));
+                    case "--geometric" -> generator.setDistribution(LengthDistribution.GEOMETRIC);
+                    case "--walls" -> generator.setWallRatio(Double.parseDouble(args[++i]));
+                    case "--items" -> generator.setItemKinds(Integer.parseInt(args[++i]));
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            generator = null;
+        }
+        if (generator == null || args.length < 3) {
+            System.err.println("Usage: range seed save_file [--density D] [--pairs N]"
+                    + " [--lengths MIN MAX] [--geometric] [--walls W] [--items K]\n");
+            System.err.println("A save_file ending in .lmsb is written as a binary snapshot.");
+            System.err.println("Example: 1000 42 saves/huge.txt --density 0.9");
+            System.exit(1);
+        }
+        Path file = Path.of(args[2]);
+        try {
+            if (args[2].endsWith(".lmsb")) {
+                try (OutputStream output = Files.newOutputStream(file)) {
+                    generator.writeSnapshot(output);
+                }
+            } else {
+                try (Writer output = Files.newBufferedWriter(file)) {
+                    generator.writeText(output);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("File could not be written");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package lms.io;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads a GameGrid from a binary snapshot written by SnapshotWriter.
+ * <p>
+ * The snapshot file is memory mapped and read in place. Each section has a fixed width
+ * worked out from the header, so the transport arrays are bulk copied out of the mapping
+ * and the grid is built in one pass over the cells. The links are checked over the
+ * index arrays before any of them are made, with the same rules as GameLoader, so a
+ * corrupt or edited snapshot is rejected rather than failing once it is ticked. Only the
+ * layout of the grid is stored, the items on the transports are not.
+ *
+ * @see SnapshotWriter
+ */
+public class SnapshotLoader {
+
+    /**
+     * There are no instances of the loader
+     */
+    private SnapshotLoader() {}
+
+    /**
+     * Loads the snapshot file at the given path
+     *
+     * @param snapshot the snapshot file
+     * @return the GameGrid stored in the snapshot
+     * @throws IOException if the file cannot be read
+     * @throws FileFormatException if the file is not a valid snapshot
+     */
+    public static GameGrid load(Path snapshot) throws IOException, FileFormatException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new FileFormatException("Snapshot is too large to map");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return load(buffer);
+        }
+    }
+
+    /**
+     * Loads a snapshot from a buffer, starting at the buffer's position
+     *
+     * @param buffer the buffer holding the snapshot
+     * @return the GameGrid stored in the snapshot
+     * @throws FileFormatException if the buffer does not hold a valid snapshot
+     */
+    public static GameGrid load(ByteBuffer buffer) throws FileFormatException {
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new FileFormatException("Snapshot is truncated", e);
+        }
+    }
+
+    /**
+     * Reads every section of a snapshot
+     *
+     * @param buffer the buffer holding the snapshot
+     * @return the GameGrid stored in the snapshot
+     * @throws FileFormatException if the buffer does not hold a valid snapshot
+     */
+    private static GameGrid read(ByteBuffer buffer) throws FileFormatException {
+        if (buffer.getInt() != SnapshotWriter.MAGIC) {
+            throw new FileFormatException("Not a snapshot file");
+        }
+        int version = buffer.getInt();
+        if (version != 1 && version != SnapshotWriter.VERSION) {
+            throw new FileFormatException("Unsupported snapshot version " + version);
+        }
+        int range = buffer.getInt();
+        int count = buffer.getInt();
+        int itemCount = buffer.getInt();
+        if (range < 0 || count < 0 || itemCount < 0) {
+            throw new FileFormatException("Negative size in snapshot header");
+        }
+
+        Item[] items = new Item[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new FileFormatException("Bad item name length " + length);
+            }
+            byte[] name = new byte[length];
+            buffer.get(name);
+            try {
+                items[i] = ItemRegistry.intern(new String(name, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new FileFormatException("Bad item name in snapshot", e);
+            }
+        }
+
+        long cells64 = 3L * range * (range + 1) + 1;
+        if (cells64 > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int cellCount = (int) cells64;
+        ByteBuffer cells = buffer.slice();
+        cells.limit(cellCount);
+        buffer.position(buffer.position() + cellCount);
+        int[] ids = readInts(buffer, count);
+        int[] keys = readInts(buffer, count);
+        int[] next = readInts(buffer, count);
+        int[] previous = readInts(buffer, count);
+        int[] capacities = version == 1 ? null : readInts(buffer, count);
+
+        GameGrid grid = new GameGrid(range);
+        Transport[] transports = new Transport[count];
+        int transport = 0;
+        int cell = 0;
+        for (int r = -range; r <= range; r++) {
+            int to = Math.min(range, range - r);
+            for (int q = Math.max(-range, -range - r); q <= to; q++) {
+                byte encoding = cells.get(cell++);
+                if (encoding == SnapshotWriter.UNSET) {
+                    continue;
+                }
+                long packed = Coordinate.pack(q, r);
+                if (encoding == 'o') {
+                    grid.setCoordinate(packed, () -> "o");
+                    continue;
+                } else if (encoding == 'w') {
+                    grid.setCoordinate(packed, () -> "w");
+                    continue;
+                }
+                if (transport == count) {
+                    throw new FileFormatException("More transport cells than transports");
+                }
+                Transport node = switch (encoding) {
+                    case 'p' -> new Producer(ids[transport], item(items, keys[transport]));
+                    case 'r' -> new Receiver(ids[transport], item(items, keys[transport]));
+                    case 'b' -> belt(ids[transport],
+                            capacities == null ? 1 : capacities[transport]);
+                    default -> throw new FileFormatException("Unknown cell " + encoding);
+                };
+                grid.setCoordinate(packed, node);
+                transports[transport++] = node;
+            }
+        }
+        if (transport != count) {
+            throw new FileFormatException("Fewer transport cells than transports");
+        }
+
+        checkLinks(transports, ids, next, previous);
+        for (int i = 0; i < count; i++) {
+            transports[i].getPath().restoreLinks(path(transports, previous[i]),
+                    path(transports, next[i]));
+        }
+        for (Transport node : transports) {
+            if (node instanceof Receiver receiver) {
+                receiver.setKeyMatched(true);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Checks the ids and links of a snapshot's transports, in one pass over the index
+     * arrays.
+     * <p>
+     * Merging and splitting belts leave links that do not point back, so a link only has
+     * to reach a transport that is linked on the side facing it.
+     *
+     * @param transports the transports of the snapshot
+     * @param ids the id of each transport
+     * @param next the index of each transport's next transport, or -1 for none
+     * @param previous the index of each transport's previous transport, or -1 for none
+     * @throws FileFormatException if an id is repeated, a link is out of range or not
+     *                             answered, a path's head isn't a Producer or tail isn't a
+     *                             Receiver, the links form a cycle, or a Producer's item
+     *                             doesn't match the key of the Receiver it feeds
+     */
+    private static void checkLinks(Transport[] transports, int[] ids, int[] next,
+                                   int[] previous) throws FileFormatException {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                throw new FileFormatException("Transport id " + sorted[i] + " is repeated");
+            }
+        }
+        for (int i = 0; i < transports.length; i++) {
+            path(transports, next[i]);
+            path(transports, previous[i]);
+            if (next[i] != -1 && previous[next[i]] == -1) {
+                throw new FileFormatException(transports[i] + " outputs to "
+                        + transports[next[i]] + ", which has no input");
+            }
+            if (previous[i] != -1 && next[previous[i]] == -1) {
+                throw new FileFormatException(transports[i] + " takes from "
+                        + transports[previous[i]] + ", which has no output");
+            }
+        }
+        int[] heads = new int[transports.length];
+        int[] tails = new int[transports.length];
+        int[] walk = new int[transports.length];
+        for (int i = 0; i < transports.length; i++) {
+            Transport transport = transports[i];
+            if (transport instanceof Producer && previous[i] != -1) {
+                throw new FileFormatException(transport + " has an input");
+            }
+            if (transport instanceof Receiver && next[i] != -1) {
+                throw new FileFormatException(transport + " has an output");
+            }
+            if (transport instanceof Belt && (next[i] == -1 || previous[i] == -1)) {
+                throw new FileFormatException(transport + " is not linked at both ends");
+            }
+            Transport head = transports[findEnd(i, transports, previous, heads, walk)];
+            Transport tail = transports[findEnd(i, transports, next, tails, walk)];
+            if (!(head instanceof Producer) || !(tail instanceof Receiver receiver)) {
+                throw new FileFormatException("Path of " + transport
+                        + " does not run from a Producer to a Receiver");
+            }
+            if (transport instanceof Producer producer
+                    && !producer.getKey().equals(receiver.getKey())) {
+                throw new FileFormatException(producer + " makes " + producer.getKey()
+                        + " but " + receiver + " takes " + receiver.getKey());
+            }
+        }
+    }
+
+    /**
+     * Finds the index of the transport at one end of a transport's path, by following
+     * one of the index arrays. The end is recorded for every transport passed, as one
+     * more than its index, so that later walks can stop as soon as they reach a
+     * transport that has been passed.
+     *
+     * @param start the index of the transport to start from
+     * @param transports the transports of the snapshot
+     * @param links the next or the previous index of each transport
+     * @param ends the recorded end of each transport, 0 if it is not known yet and -1 if
+     *             it is on the current walk
+     * @param walk space for the indices of the transports on the walk
+     * @return the index of the transport at the end
+     * @throws FileFormatException if the links form a cycle
+     */
+    private static int findEnd(int start, Transport[] transports, int[] links, int[] ends,
+                               int[] walk) throws FileFormatException {
+        int length = 0;
+        int index = start;
+        int end;
+        while (true) {
+            if (ends[index] > 0) {
+                end = ends[index] - 1;
+                break;
+            }
+            if (ends[index] < 0) {
+                throw new FileFormatException("Links of " + transports[index]
+                        + " form a cycle");
+            }
+            ends[index] = -1;
+            walk[length++] = index;
+            if (links[index] == -1) {
+                end = index;
+                break;
+            }
+            index = links[index];
+        }
+        for (int i = 0; i < length; i++) {
+            ends[walk[i]] = end + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Bulk reads an int array section
+     *
+     * @param buffer the buffer holding the section
+     * @param count the number of ints in the section
+     * @return the ints of the section
+     */
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        if (buffer.remaining() / Integer.BYTES < count) {
+            throw new BufferUnderflowException();
+        }
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Looks up a key in the item table
+     *
+     * @param items the item table
+     * @param index the index of the key
+     * @return the key Item
+     * @throws FileFormatException if the index is outside the table
+     */
+    private static Item item(Item[] items, int index) throws FileFormatException {
+        if (index < 0 || index >= items.length) {
+            throw new FileFormatException("No item with index " + index);
+        }
+        return items[index];
+    }
+
+    /**
+     * Creates a Belt with a capacity read from the snapshot
+     *
+     * @param id the id of the belt
+     * @param capacity the capacity of the belt
+     * @return the new Belt
+     * @throws FileFormatException if the capacity is not positive
+     */
+    private static Belt belt(int id, int capacity) throws FileFormatException {
+        if (capacity < 1) {
+            throw new FileFormatException("Bad belt capacity " + capacity);
+        }
+        return new Belt(id, capacity);
+    }
+
+    /**
+     * Looks up the Path of a linked transport
+     *
+     * @param transports the transports of the snapshot
+     * @param index the index of the linked transport, or -1 for none
+     * @return the Path of the transport, or null if there is none
+     * @throws FileFormatException if the index is outside the transports
+     */
+    private static lms.logistics.Path path(Transport[] transports, int index)
+            throws FileFormatException {
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= transports.length) {
+            throw new FileFormatException("No transport with index " + index);
+        }
+        return transports[index].getPath();
+    }
+}
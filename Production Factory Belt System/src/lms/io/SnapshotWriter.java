@@ -0,0 +1,219 @@
+package lms.io;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a GameGrid as a binary snapshot, which SnapshotLoader can load much faster than
+ * GameLoader can parse a text save file.
+ * <p>
+ * All values are big-endian. A snapshot has the sections:
+ * <ol>
+ *     <li>a header of ints: the magic number, the format version, the range, the
+ *     number of transports and the number of items</li>
+ *     <li>the item table, each item as an int byte length followed by its UTF-8 name</li>
+ *     <li>one byte for each cell, row by row from the top, holding the cell's encoding
+ *     character, or 0 for a cell that was never set</li>
+ *     <li>five int arrays with one entry per transport, in the order the transports
+ *     appear in the cells: the transport ids, the item table index of each key (-1 for
+ *     a Belt), the index of each transport's next and previous transport (-1 for
+ *     none), and the capacity of each Belt (1 for a Producer or Receiver)</li>
+ * </ol>
+ * Version 1 snapshots have no capacity section, and all of their belts hold one item.
+ * Links are stored exactly as they are, so merging and splitting belts survive the round
+ * trip.
+ * <p>
+ * The main method converts a text save file into a snapshot:
+ * <pre>
+ * java lms.io.SnapshotWriter saves/grid2.txt saves/grid2.lmsb
+ * </pre>
+ *
+ * @see SnapshotLoader
+ */
+public class SnapshotWriter {
+
+    /**
+     * The first int of every snapshot, "LMSB" in ASCII
+     */
+    static final int MAGIC = 0x4C4D5342;
+
+    /**
+     * The version of the snapshot format
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The encoding stored for a cell that was never set
+     */
+    static final byte UNSET = 0;
+
+    /**
+     * There are no instances of the writer
+     */
+    private SnapshotWriter() {}
+
+    /**
+     * Writes the given GameGrid to an OutputStream as a snapshot
+     *
+     * @param grid the GameGrid to write
+     * @param output the stream to write to, which is not closed
+     * @throws IOException if there is an error writing to the stream
+     * @throws IllegalArgumentException if a cell holds a component with an unknown encoding,
+     *                                  or a transport is linked to one off the grid
+     */
+    public static void write(GameGrid grid, OutputStream output)
+            throws IOException, IllegalArgumentException {
+        List<Transport> transports = new ArrayList<>();
+        Map<Transport, Integer> indices = new IdentityHashMap<>();
+        Map<Item, Integer> items = new IdentityHashMap<>();
+        List<Item> itemTable = new ArrayList<>();
+        byte[] cells = new byte[grid.getGridView().size()];
+        int cell = 0;
+        for (GridComponent component : grid.getGridView().values()) {
+            cells[cell++] = encode(component);
+            if (component instanceof Transport transport) {
+                indices.put(transport, transports.size());
+                transports.add(transport);
+                if (transport instanceof Container container
+                        && items.putIfAbsent(container.getKey(), itemTable.size()) == null) {
+                    itemTable.add(container.getKey());
+                }
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(grid.getRange());
+        data.writeInt(transports.size());
+        data.writeInt(itemTable.size());
+        for (Item item : itemTable) {
+            byte[] name = item.toString().getBytes(StandardCharsets.UTF_8);
+            data.writeInt(name.length);
+            data.write(name);
+        }
+        data.write(cells);
+        for (Transport transport : transports) {
+            data.writeInt(transport.getId());
+        }
+        for (Transport transport : transports) {
+            data.writeInt(transport instanceof Container container
+                    ? items.get(container.getKey()) : -1);
+        }
+        for (Transport transport : transports) {
+            data.writeInt(indexOf(transport.getPath().getNext(), indices));
+        }
+        for (Transport transport : transports) {
+            data.writeInt(indexOf(transport.getPath().getPrevious(), indices));
+        }
+        for (Transport transport : transports) {
+            data.writeInt(transport instanceof Belt belt ? belt.getCapacity() : 1);
+        }
+        data.flush();
+    }
+
+    /**
+     * Converts a text save file into a snapshot file
+     *
+     * @param reader the Reader for the text save file
+     * @param snapshot the snapshot file to create or replace
+     * @throws IOException if there is an error reading or writing
+     * @throws FileFormatException if the text save file is not in the correct format
+     */
+    public static void convert(Reader reader, java.nio.file.Path snapshot)
+            throws IOException, FileFormatException {
+        GameGrid grid = GameLoader.load(reader);
+        try (OutputStream output = Files.newOutputStream(snapshot)) {
+            write(grid, output);
+        }
+    }
+
+    /**
+     * Returns the byte stored for a component in the cell section
+     *
+     * @param component the component of the cell
+     * @return the encoding of the component
+     * @throws IllegalArgumentException if the encoding cannot be stored
+     */
+    private static byte encode(GridComponent component) throws IllegalArgumentException {
+        if (component instanceof Producer) {
+            return 'p';
+        } else if (component instanceof Receiver) {
+            return 'r';
+        } else if (component instanceof Belt) {
+            return 'b';
+        }
+        String encoding = component.getEncoding();
+        switch (encoding) {
+            case "o":
+                return 'o';
+            case "w":
+                return 'w';
+            case "ERROR":
+                return UNSET;
+            default:
+                throw new IllegalArgumentException("Cannot store cell " + encoding);
+        }
+    }
+
+    /**
+     * Returns the transport index of the node of a Path
+     *
+     * @param path the Path to look up, or null
+     * @param indices the index of every transport on the grid
+     * @return the index of the Path's node, or -1 if path is null
+     * @throws IllegalArgumentException if the node is not on the grid
+     */
+    private static int indexOf(lms.logistics.Path path, Map<Transport, Integer> indices)
+            throws IllegalArgumentException {
+        if (path == null) {
+            return -1;
+        }
+        Integer index = indices.get(path.getNode());
+        if (index == null) {
+            throw new IllegalArgumentException(path.getNode() + " is not on the grid");
+        }
+        return index;
+    }
+
+    /**
+     * Converts the text save file named by the first argument into the snapshot file
+     * named by the second
+     *
+     * @param args the text save file and the snapshot file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: save_file snapshot_file");
+            System.err.println("Example: saves/grid2.txt saves/grid2.lmsb");
+            System.exit(1);
+        }
+        try (Reader reader = new FileReader(args[0])) {
+            convert(reader, java.nio.file.Path.of(args[1]));
+        } catch (IOException | FileFormatException e) {
+            System.err.println("File was incorrectly formatted");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -3,12 +3,28 @@ package lms.logistics;
 /**
  * A class representing an item that can be produced by a Producer, carried along Belts and
  * sent into a Receiver.
+ * <p>
+ * Items loaded from a file are interned by the ItemRegistry, which gives every distinct
+ * name one Item with an integer id, so comparing them is an identity or id check.
+ * Items created with the constructor have no id and are compared by name.
+ *
+ * @see ItemRegistry
  */
 public class Item {
+    /**
+     * The id of an Item that has not been interned
+     */
+    public static final int NO_ID = -1;
+
     /**
      * The name of the Item
      */
-    private String name;
+    private final String name;
+
+    /**
+     * The id given by the ItemRegistry, or NO_ID
+     */
+    private final int id;
 
     /**
      * Initialise the item with a name, throws exception if name is null or empty
@@ -17,10 +33,31 @@ public class Item {
      * @throws IllegalArgumentException if name is null or empty
      */
     public Item(String name) throws IllegalArgumentException {
-        this.name = name;
-        if (this.name == "" || this.name == null) {
+        this(name, NO_ID);
+    }
+
+    /**
+     * Initialise the item with a name and the id given to it by the ItemRegistry
+     *
+     * @param name the name of the item
+     * @param id the id of the item
+     * @throws IllegalArgumentException if name is null or empty
+     */
+    Item(String name, int id) throws IllegalArgumentException {
+        if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException();
         }
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Returns the id given to the item by the ItemRegistry
+     *
+     * @return the id of the item, or NO_ID if it has not been interned
+     */
+    public int getId() {
+        return this.id;
     }
 
     /**
@@ -31,10 +68,16 @@ public class Item {
      */
     @Override
     public boolean equals(Object o) {
-        if (o instanceof Item && o.toString().equals(this.toString())) {
+        if (this == o) {
             return true;
         }
-        return false;
+        if (!(o instanceof Item other)) {
+            return false;
+        }
+        if (this.id != NO_ID && other.id != NO_ID) {
+            return this.id == other.id;
+        }
+        return this.name.equals(other.name);
     }
 
     /**
@@ -44,7 +87,7 @@ public class Item {
      */
     @Override
     public int hashCode() {
-        return this.toString().hashCode();
+        return this.name.hashCode();
     }
 
     /**
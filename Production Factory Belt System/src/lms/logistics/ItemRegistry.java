@@ -0,0 +1,85 @@
+package lms.logistics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns Items by name, so that there is only one Item for each distinct name.
+ * <p>
+ * Each interned Item is given a dense integer id, starting from 0 in the order the
+ * names were first seen. Interned Items can be compared by identity or by id, and
+ * an id can be turned back into its Item with get().
+ *
+ * @see Item#getId()
+ */
+public final class ItemRegistry {
+
+    /**
+     * The interned Items by name
+     */
+    private static final Map<String, Item> items = new HashMap<>();
+
+    /**
+     * The interned Items by id, grown as needed
+     */
+    private static volatile Item[] table = new Item[16];
+
+    /**
+     * The number of interned Items
+     */
+    private static volatile int size = 0;
+
+    /**
+     * There are no instances of the registry
+     */
+    private ItemRegistry() {}
+
+    /**
+     * Returns the interned Item with the given name, interning a new Item if the
+     * name has not been seen before
+     *
+     * @param name the name of the item
+     * @return the interned Item
+     * @throws IllegalArgumentException if name is null or empty
+     */
+    public static synchronized Item intern(String name) throws IllegalArgumentException {
+        Item item = items.get(name);
+        if (item != null) {
+            return item;
+        }
+        item = new Item(name, size);
+        if (size == table.length) {
+            Item[] grown = new Item[size * 2];
+            System.arraycopy(table, 0, grown, 0, size);
+            table = grown;
+        }
+        table[size] = item;
+        items.put(name, item);
+        size++;
+        return item;
+    }
+
+    /**
+     * Returns the interned Item with the given id
+     *
+     * @param id the id of the item
+     * @return the interned Item
+     * @throws IllegalArgumentException if no Item has the id
+     */
+    public static Item get(int id) throws IllegalArgumentException {
+        // size is written after table, so reading it first sees a table that fits
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown item id " + id);
+        }
+        return table[id];
+    }
+
+    /**
+     * Returns the number of interned Items, which is one more than the highest id
+     *
+     * @return the number of interned Items
+     */
+    public static int size() {
+        return size;
+    }
+}
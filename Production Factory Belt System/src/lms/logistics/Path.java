@@ -1,5 +1,8 @@
 package lms.logistics;
 
+import lms.exceptions.BadStateException;
+
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
@@ -7,11 +10,28 @@ import java.util.function.Consumer;
  * Has previous and next item.
  * The path can't have an empty node, as it will throw an illegal
  * argument exception.
+ * <p>
+ * Each Path remembers its head and tail, and how far away they are, until a link is
+ * changed anywhere. Finding the ends walks the list iteratively and records them on every
+ * Path it passes, so looking up the ends of every Path on a line costs O(length) in total,
+ * and very long lines don't overflow the stack. A walk that comes back to a Path it has
+ * already passed throws a BadStateException, since the links form a cycle.
  * @version 1.0
  * @ass2
  */
 public class Path {
 
+    /**
+     * Counts every link made between paths, so that anything derived from the
+     * link structure can tell when it has gone stale
+     */
+    private static final AtomicLong linkVersion = new AtomicLong();
+
+    /**
+     * Counts the walks made to find the ends of a path, to mark the Paths each walk visits
+     */
+    private static final AtomicLong walks = new AtomicLong();
+
     /**
      * The transport node for the path
      */
@@ -27,6 +47,41 @@ public class Path {
      */
     private Path next;
 
+    /**
+     * The last known head of this path
+     */
+    private Path head;
+
+    /**
+     * The number of steps back to the last known head
+     */
+    private int headDistance;
+
+    /**
+     * The link version the last known head was found at
+     */
+    private long headVersion = -1;
+
+    /**
+     * The last known tail of this path
+     */
+    private Path tail;
+
+    /**
+     * The number of steps forward to the last known tail
+     */
+    private int tailDistance;
+
+    /**
+     * The link version the last known tail was found at
+     */
+    private long tailVersion = -1;
+
+    /**
+     * The last walk that passed this path
+     */
+    private long walkStamp;
+
     /**
      * Constructs a new Path with the same transport node, previous path and
      * next path as the specified one
@@ -112,6 +167,7 @@ public class Path {
      */
     public void setPrevious(Path path) {
         this.previous = path;
+        linkVersion.incrementAndGet();
         if (path.getNext() == null || !(path.getNext().equals(this))) {
             path.setNext(this);
         }
@@ -125,23 +181,81 @@ public class Path {
      */
     public void setNext(Path path) {
         this.next = path;
+        linkVersion.incrementAndGet();
         if (path.getPrevious() == null || !(path.getPrevious().equals(this))) {
             path.setPrevious(this);
         }
     }
 
+    /**
+     * Sets both links of this Path exactly as given, without linking the other Paths back
+     * to this one.
+     * <p>
+     * This is for restoring links that were saved from an existing layout, where merging
+     * and splitting belts mean the links are not always symmetric, and the back links set
+     * by setPrevious() and setNext() would overwrite links that have already been restored.
+     *
+     * @param previous the Path to be set as the previous Path, or null for none
+     * @param next the Path to be set as the next Path, or null for none
+     */
+    public void restoreLinks(Path previous, Path next) {
+        this.previous = previous;
+        this.next = next;
+        linkVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns the current link version, which changes whenever setNext(),
+     * setPrevious() or restoreLinks() is called on any Path.
+     *
+     * @return the current link version
+     */
+    public static long getLinkVersion() {
+        return linkVersion.get();
+    }
+
     /**
      * Returns the head of the path, which is the first element.
      *
      * @return the head Path
      */
     public Path head() {
-        //Check if this path is the start
-        if (this.getPrevious() == null) {
-            return this;
+        long version = linkVersion.get();
+        if (headVersion == version) {
+            return head;
+        }
+        //Walk back until the start, or a path that already knows the start
+        long stamp = walks.incrementAndGet();
+        Path path = this;
+        Path start;
+        int distance = 0;
+        while (true) {
+            if (path.headVersion == version) {
+                start = path.head;
+                distance += path.headDistance;
+                break;
+            }
+            if (path.previous == null) {
+                start = path;
+                break;
+            }
+            if (path.walkStamp == stamp) {
+                throw new BadStateException("Path links form a cycle");
+            }
+            path.walkStamp = stamp;
+            path = path.previous;
+            distance++;
+        }
+        //Walk back again, recording the start on every path passed
+        for (path = this; path.headVersion != version; path = path.previous) {
+            path.head = start;
+            path.headDistance = distance--;
+            path.headVersion = version;
+            if (path.previous == null) {
+                break;
+            }
         }
-        //Look at the previous path and check again
-        return this.getPrevious().head();
+        return start;
     }
 
     /**
@@ -150,12 +264,53 @@ public class Path {
      * @return the tail Path
      */
     public Path tail() {
-        //Check if this path is the end
-        if (this.getNext() == null) {
-            return this;
+        long version = linkVersion.get();
+        if (tailVersion == version) {
+            return tail;
+        }
+        //Walk forward until the end, or a path that already knows the end
+        long stamp = walks.incrementAndGet();
+        Path path = this;
+        Path end;
+        int distance = 0;
+        while (true) {
+            if (path.tailVersion == version) {
+                end = path.tail;
+                distance += path.tailDistance;
+                break;
+            }
+            if (path.next == null) {
+                end = path;
+                break;
+            }
+            if (path.walkStamp == stamp) {
+                throw new BadStateException("Path links form a cycle");
+            }
+            path.walkStamp = stamp;
+            path = path.next;
+            distance++;
         }
-        //Look at the next path and check again
-        return this.getNext().tail();
+        //Walk forward again, recording the end on every path passed
+        for (path = this; path.tailVersion != version; path = path.next) {
+            path.tail = end;
+            path.tailDistance = distance--;
+            path.tailVersion = version;
+            if (path.next == null) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the number of nodes on the path, from its head to its tail
+     *
+     * @return the length of the path
+     */
+    public int length() {
+        head();
+        tail();
+        return headDistance + tailDistance + 1;
     }
 
     /**
@@ -33,6 +33,18 @@ public abstract class Transport implements Tickable, GridComponent {
      */
     private final int id;
 
+    /**
+     * The number of items this node has moved on to the next node. Only the thread
+     * ticking the node writes to it.
+     */
+    private long moved;
+
+    /**
+     * The number of ticks this node held an item but the next node was full. Only the
+     * thread ticking the node writes to it.
+     */
+    private long stalled;
+
     /**
      * Constructor providing unique ID
      * Provides details for each node and its connected nodes
@@ -105,6 +117,134 @@ public abstract class Transport implements Tickable, GridComponent {
         this.inventory = inventory;
     }
 
+    /**
+     * returns the number of items this node has moved on to the next node
+     * @return the number of items moved
+     */
+    public long getItemsMoved() {
+        return moved;
+    }
+
+    /**
+     * returns the number of ticks this node held an item but could not move it
+     * because the next node was full
+     * @return the number of stalled ticks
+     */
+    public long getTicksStalled() {
+        return stalled;
+    }
+
+    /**
+     * adds to the number of items this node has moved, for ticks that were worked
+     * out rather than ticked
+     * @param count the number of items to add
+     * @throws IllegalArgumentException if count is negative
+     */
+    public void addItemsMoved(long count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count");
+        }
+        moved += count;
+    }
+
+    /**
+     * adds to the number of ticks this node has stalled, for ticks that were worked
+     * out rather than ticked
+     * @param count the number of ticks to add
+     * @throws IllegalArgumentException if count is negative
+     */
+    public void addTicksStalled(long count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count");
+        }
+        stalled += count;
+    }
+
+    /**
+     * checks whether the node holds no item. Unlike getInventory(), this also
+     * sees an item that a Receiver is about to consume
+     * @return true if the node is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return inventory == null;
+    }
+
+    /**
+     * sets the node to hold only the given item, or nothing if it is null. Unlike
+     * setInventory(), this is allowed on every kind of node, and is for restoring
+     * a state that was worked out or saved elsewhere
+     * @param item the item to hold, or null to empty the node
+     */
+    public void restoreInventory(Item item) {
+        inventory = item;
+    }
+
+    /**
+     * checks whether the node has room for another item to be moved into it
+     * @return true if the node can take an item, false otherwise
+     */
+    public boolean canAccept() {
+        return inventory == null;
+    }
+
+    /**
+     * adds an item to the node, behind any items it already holds
+     * @param item the item moved into the node
+     * @requires canAccept()
+     */
+    protected void offer(Item item) {
+        inventory = item;
+    }
+
+    /**
+     * makes the move tick() would make, but takes the item out of the node rather
+     * than moving it into the next node, and counts it the same way. This is for a
+     * next node that is ticked on another thread, which puts the item in with
+     * receive() once it has ticked
+     * @param accepted whether the next node will have room for an item when this
+     *                 node ticks
+     * @return the item that left the node, or null if none did
+     */
+    public Item handOff(boolean accepted) {
+        if (peek() == null || path.getNext() == null) {
+            return null;
+        }
+        if (!accepted) {
+            stalled++;
+            return null;
+        }
+        moved++;
+        return poll();
+    }
+
+    /**
+     * adds an item given out by handOff() on the node before this one
+     * @param item the item moved into the node
+     * @requires canAccept()
+     */
+    public void receive(Item item) {
+        offer(item);
+    }
+
+    /**
+     * returns the item that will leave the node next, without removing it
+     * @return the item at the head of the node, or null if it is empty
+     */
+    protected Item peek() {
+        return inventory;
+    }
+
+    /**
+     * removes the item that will leave the node next
+     * @return the item that was at the head of the node
+     * @requires !isEmpty()
+     */
+    protected Item poll() {
+        Item item = inventory;
+        inventory = null;
+        return item;
+    }
+
     /**
      * get the Path object, containing node, next and previous pathways
      * @return Path
@@ -120,19 +260,22 @@ public abstract class Transport implements Tickable, GridComponent {
 
     /**
      * Propagate through the path and move inventory along where there are empty inventory spaces.
+     * Only the head item moves, so a node moves at most one item each tick.
      */
     @Override
     public void tick() {
-        if (inventory != null) {     /* if is NOT empty */
+        if (peek() != null) {        /* if is NOT empty */
             Path path = getPath();   /* get the next item in the path */
             if (path.getNext() == null) { /* if there's no item then stop */
                 return;
             }
             Transport nextNode = path.getNext().getNode(); /* if there's a next item and */
 
-            if (nextNode.inventory == null) {         /* its inventory is empty */
-                nextNode.inventory = inventory;       /* transfer inventory to the next inventory */
-                inventory = null;                     /* and remove inventory from self */
+            if (nextNode.canAccept()) {               /* it has room */
+                nextNode.offer(poll());               /* transfer the head item to the next node */
+                moved++;
+            } else {
+                stalled++;                            /* blocked by a full next node */
             }
         }
     }
@@ -1,24 +1,183 @@
 package lms.logistics.belts;
 
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
 import lms.logistics.Transport;
 
 /**
  * A class representing a Belt object and implements the Transport class
  * overriding the implemented Functional Interface MapComponent's method getEncoding().
  * and Tickable#tick()
+ * <p>
+ * A Belt can hold more than one item at a time. The items queue up in the order they
+ * arrived, and the item at the head is the one moved on to the next node, so a belt
+ * still moves at most one item each tick but can buffer up to its capacity. A belt with
+ * a capacity of 1 behaves exactly like a plain Transport. Larger belts keep their items
+ * as ItemRegistry ids in a ring buffer, so items are interned when they are moved in.
  * @provided
  */
 public class Belt extends Transport {
 
+    /**
+     * The ids of the items held, oldest first starting from head, or null if the belt
+     * has a capacity of 1 and uses the Transport inventory instead
+     */
+    private final int[] slots;
+
+    /**
+     * The index in slots of the item at the head of the belt
+     */
+    private int head;
+
+    /**
+     * The number of items held in slots
+     */
+    private int count;
+
     /**
      * Constructs a new Belt object with the given integer id value.
      *
      * @param id the integer value to be provided to the superclass constructor
      */
     public Belt(int id) {
+        this(id, 1);
+    }
+
+    /**
+     * Constructs a new Belt object with the given integer id value that can hold
+     * the given number of items.
+     *
+     * @param id the integer value to be provided to the superclass constructor
+     * @param capacity the number of items the belt can hold
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public Belt(int id, int capacity) throws IllegalArgumentException {
         super(id);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Belt capacity must be positive: " + capacity);
+        }
+        this.slots = capacity > 1 ? new int[capacity] : null;
+    }
+
+    /**
+     * Returns the number of items the belt can hold
+     *
+     * @return the capacity of the belt
+     */
+    public int getCapacity() {
+        return slots == null ? 1 : slots.length;
+    }
+
+    /**
+     * Returns the number of items the belt holds
+     *
+     * @return the number of items, from 0 to the capacity
+     */
+    public int getItemCount() {
+        if (slots == null) {
+            return isEmpty() ? 0 : 1;
+        }
+        return count;
+    }
+
+    /**
+     * Returns one of the items the belt holds
+     *
+     * @param index the position of the item, where 0 is the head of the belt
+     * @return the item at the position
+     * @throws IndexOutOfBoundsException if index is not less than getItemCount()
+     */
+    public Item getItem(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= getItemCount()) {
+            throw new IndexOutOfBoundsException("No item at " + index);
+        }
+        if (slots == null) {
+            return super.peek();
+        }
+        return ItemRegistry.get(slots[(head + index) % slots.length]);
     }
 
+    /**
+     * Returns the item at the head of the belt
+     *
+     * @return the item that will be moved next, or null if the belt is empty
+     */
+    @Override
+    public Item getInventory() {
+        return peek();
+    }
+
+    /**
+     * Sets the belt to hold only the given item, or nothing if it is null
+     *
+     * @param inventory the item to hold, or null to empty the belt
+     */
+    @Override
+    public void setInventory(Item inventory) {
+        if (slots == null) {
+            super.setInventory(inventory);
+            return;
+        }
+        count = 0;
+        if (inventory != null) {
+            offer(inventory);
+        }
+    }
+
+    @Override
+    public void restoreInventory(Item inventory) {
+        if (slots == null) {
+            super.restoreInventory(inventory);
+        } else {
+            setInventory(inventory);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return slots == null ? super.isEmpty() : count == 0;
+    }
+
+    @Override
+    public boolean canAccept() {
+        return slots == null ? super.canAccept() : count < slots.length;
+    }
+
+    @Override
+    protected void offer(Item item) {
+        if (slots == null) {
+            super.offer(item);
+            return;
+        }
+        int id = item.getId();
+        if (id == Item.NO_ID) {
+            id = ItemRegistry.intern(item.toString()).getId();
+        }
+        int tail = head + count;
+        slots[tail < slots.length ? tail : tail - slots.length] = id;
+        count++;
+    }
+
+    @Override
+    protected Item peek() {
+        if (slots == null) {
+            return super.peek();
+        }
+        return count == 0 ? null : ItemRegistry.get(slots[head]);
+    }
+
+    @Override
+    protected Item poll() {
+        if (slots == null) {
+            return super.poll();
+        }
+        Item item = ItemRegistry.get(slots[head]);
+        if (++head == slots.length) {
+            head = 0;
+        }
+        count--;
+        return item;
+    }
 
     /**
      * Overrides encoding method returns the character string representing a
@@ -32,8 +32,16 @@ import lms.logistics.Path;
  */
 public class Producer extends Container {
 
+    /**
+     * The number of ticks since the last item was produced, either 0 or 1
+     */
     private int counter;
 
+    /**
+     * The number of items produced. Only the thread ticking the producer writes to it.
+     */
+    private long produced;
+
     public Producer(int id, Item key) {
         super(id, key);
         counter = 0;
@@ -54,10 +62,62 @@ public class Producer extends Container {
         throw new UnsupportedActionException();
     }
 
+    /**
+     * Returns the number of ticks since the last item was produced. An item is
+     * produced on the next tick if the counter is 0.
+     *
+     * @return the counter, either 0 or 1
+     */
+    public int getCounter() {
+        return counter;
+    }
+
+    /**
+     * Returns the number of items this Producer has produced
+     *
+     * @return the number of items produced
+     */
+    public long getItemsProduced() {
+        return produced;
+    }
+
+    /**
+     * Adds to the number of items this Producer has produced, for ticks that were
+     * worked out rather than ticked
+     *
+     * @param count the number of items to add
+     * @throws IllegalArgumentException if count is negative
+     */
+    public void addItemsProduced(long count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count");
+        }
+        produced += count;
+    }
+
+    /**
+     * Sets the number of ticks since the last item was produced, to restore a
+     * saved state
+     *
+     * @param counter the counter, either 0 or 1
+     * @throws IllegalArgumentException if counter is not 0 or 1
+     */
+    public void setCounter(int counter) throws IllegalArgumentException {
+        if (counter != 0 && counter != 1) {
+            throw new IllegalArgumentException("Counter must be 0 or 1");
+        }
+        this.counter = counter;
+    }
+
     @Override
     public void tick() {
-        if (++counter % 2 == 1) {
+        // kept as 0 or 1, the same cadence as ++counter % 2 == 1 without overflowing
+        counter = (counter + 1) % 2;
+        if (counter == 1) {
             super.tick();
+            if (isEmpty()) {
+                produced++;
+            }
             super.setInventory(getKey());
         }
     }
@@ -37,6 +37,17 @@ import lms.logistics.Transport;
  */
 public class Receiver extends Container {
 
+    /**
+     * The number of items this Receiver has consumed
+     */
+    private long received;
+
+    /**
+     * The link version at which every item that can reach this Receiver was known to
+     * match its key, so that ticks do not have to check, or -1 if it is not known
+     */
+    private long keyMatchedVersion = -1;
+
     /**
      * The Receiver class represents a receiver object that receives items
      * in a given inventory. This class has a constructor that takes an
@@ -59,6 +70,8 @@ public class Receiver extends Container {
      */
     public Receiver(int id, Item key) {
         super(id, key);
+        super.setInventory(null); // starts empty, so the key isn't counted as received
+        received = 0;
     }
 
     @Override
@@ -100,18 +113,89 @@ public class Receiver extends Container {
         throw new UnsupportedActionException();
     }
 
+    /**
+     * Returns the number of items this Receiver has consumed
+     *
+     * @return the number of items received
+     */
+    public long getReceivedCount() {
+        return received;
+    }
+
+    /**
+     * Adds items to the number this Receiver has consumed, for deliveries that were
+     * worked out rather than ticked
+     *
+     * @param count the number of items to add
+     * @throws IllegalArgumentException if count is negative
+     */
+    public void addReceived(long count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count");
+        }
+        received += count;
+    }
+
+    /**
+     * Sets whether every item that can reach this Receiver is known to match its key,
+     * such as after the links of a loaded grid have been checked. While it is set, the
+     * Receiver takes every item without comparing it to its key. It is cleared as soon
+     * as any link changes, since new links can bring other items to the Receiver.
+     *
+     * @param keyMatched true if only items matching the key can reach this Receiver
+     * @see Path#getLinkVersion()
+     */
+    public void setKeyMatched(boolean keyMatched) {
+        this.keyMatchedVersion = keyMatched ? Path.getLinkVersion() : -1;
+    }
+
+    /**
+     * Returns whether every item that can reach this Receiver is known to match its key,
+     * which stops being known once any link changes
+     *
+     * @return true if items are taken without comparing them to the key
+     */
+    public boolean isKeyMatched() {
+        return keyMatchedVersion == Path.getLinkVersion();
+    }
+
+    /**
+     * Returns the item the Receiver holds until its next tick consumes it, which
+     * getInventory() does not show, for saving its state
+     *
+     * @return the item held, or null if the Receiver is empty
+     */
+    public Item getHeldItem() {
+        return super.getInventory();
+    }
+
+    /**
+     * Checks whether the Receiver holds an item that does not match its key, which
+     * makes its next tick throw a BadStateException
+     *
+     * @return true if the next tick will fail, false otherwise
+     */
+    public boolean isBlocked() {
+        Item inventory = super.getInventory();
+        return inventory != null && !isKeyMatched() && !getKey().equals(inventory);
+    }
+
     /**
      * Checks to ensure that the value at this iteration is not null and the key
-     * does not equal the inventory of the superclass.
+     * does not equal the inventory of the superclass, unless the key is known to
+     * match.
      *
      * throws BadStateException, or nullifies the inventory of the superclass if
-     * no exception found
+     * no exception found, counting the item as received
      */
     @Override
     public void tick() {
         Item inventory = super.getInventory();
-        if (inventory != null && !getKey().equals(inventory)) {
-            throw new BadStateException("Receiver inventory != key value");
+        if (inventory != null) {
+            if (!isKeyMatched() && !getKey().equals(inventory)) {
+                throw new BadStateException("Receiver inventory != key value");
+            }
+            received++;
         }
         super.setInventory(null);
     }
@@ -0,0 +1,97 @@
+package lms.metrics;
+
+import lms.logistics.Transport;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import lms.simulation.Simulation;
+
+/**
+ * Sums the counters kept by a group of transports.
+ * <p>
+ * Every transport keeps its own counters, which only the thread ticking it writes to, so
+ * recording costs a plain increment and needs no locking in any tick mode.
+ * <p>
+ * A jammed transport is not ticked in TickMode.ACTIVE, and a long straight path ticked
+ * as a RunLengthLine keeps its own tallies, so both only add to their counts when the
+ * simulation brings them up to date. FactoryMetrics turns on the simulation's live
+ * counters, which has the ticking thread bring them up to date every 64 ticks and then
+ * publish the tick through a volatile field. Each sum reads that field first, so it sees
+ * every count as of the published tick: the counts of transports ticked one by one can
+ * be newer, and the rest are at most 64 ticks behind. Ticks skipped by
+ * Simulation#advance() are counted as if they had been ticked.
+ */
+final class Counters {
+
+    /**
+     * There are no instances of Counters
+     */
+    private Counters() {}
+
+    /**
+     * Sums the items moved by the transports
+     *
+     * @param simulation the simulation the transports are part of
+     * @param transports the transports to sum
+     * @return the total items moved
+     */
+    static long itemsMoved(Simulation simulation, Transport[] transports) {
+        simulation.getPublishedTick();
+        long total = 0;
+        for (Transport transport : transports) {
+            total += transport.getItemsMoved();
+        }
+        return total;
+    }
+
+    /**
+     * Sums the stalled ticks of the transports
+     *
+     * @param simulation the simulation the transports are part of
+     * @param transports the transports to sum
+     * @return the total stalled ticks
+     */
+    static long ticksStalled(Simulation simulation, Transport[] transports) {
+        simulation.getPublishedTick();
+        long total = 0;
+        for (Transport transport : transports) {
+            total += transport.getTicksStalled();
+        }
+        return total;
+    }
+
+    /**
+     * Sums the items produced by the producers among the transports
+     *
+     * @param simulation the simulation the transports are part of
+     * @param transports the transports to sum
+     * @return the total items produced
+     */
+    static long itemsProduced(Simulation simulation, Transport[] transports) {
+        simulation.getPublishedTick();
+        long total = 0;
+        for (Transport transport : transports) {
+            if (transport instanceof Producer producer) {
+                total += producer.getItemsProduced();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Sums the items received by the receivers among the transports
+     *
+     * @param simulation the simulation the transports are part of
+     * @param transports the transports to sum
+     * @return the total items received
+     */
+    static long itemsReceived(Simulation simulation, Transport[] transports) {
+        simulation.getPublishedTick();
+        long total = 0;
+        for (Transport transport : transports) {
+            if (transport instanceof Receiver receiver) {
+                total += receiver.getReceivedCount();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,158 @@
+package lms.metrics;
+
+import lms.logistics.Transport;
+import lms.logistics.container.Receiver;
+import lms.simulation.Simulation;
+import lms.simulation.TickPlan;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the counters of a simulation as JMX MBeans.
+ * <p>
+ * Each simulation registered gets a number, and the MBeans are named:
+ * <ul>
+ *     <li><code>lms:type=Factory,factory=N</code> for the totals of the simulation</li>
+ *     <li><code>lms:type=Path,factory=N,tail=ID</code> for each path, named by the id
+ *     of its tail</li>
+ *     <li><code>lms:type=Receiver,factory=N,id=ID</code> for each Receiver</li>
+ * </ul>
+ * The paths are the ones in the simulation's plan when it is registered. If the links
+ * change, unregister the simulation and register it again. Registering turns on the
+ * simulation's live counters, so that the ticking thread brings the counts of
+ * run-length lines and sleeping transports up to date every 64 ticks and publishes
+ * them. Those counts can be up to 64 ticks behind the tick count, and the tick they
+ * were published at is the PublishedTick attribute of the Factory MBean.
+ *
+ * @see Counters
+ */
+public class FactoryMetrics {
+
+    /**
+     * The number given to the next simulation registered
+     */
+    private static final AtomicInteger factories = new AtomicInteger(1);
+
+    /**
+     * The server the MBeans are registered with
+     */
+    private final MBeanServer server;
+
+    /**
+     * The names of the registered MBeans
+     */
+    private final List<ObjectName> names;
+
+    /**
+     * The number of the simulation
+     */
+    private final int factory;
+
+    /**
+     * Creates an empty set of MBeans for a simulation
+     *
+     * @param server the server to register with
+     */
+    private FactoryMetrics(MBeanServer server) {
+        this.server = server;
+        this.names = new ArrayList<>();
+        this.factory = factories.getAndIncrement();
+    }
+
+    /**
+     * Registers the MBeans of a simulation with the platform MBean server
+     *
+     * @param simulation the simulation to publish
+     * @return the registered MBeans, to unregister later
+     * @throws JMException if the MBeans could not be registered
+     */
+    public static FactoryMetrics register(Simulation simulation) throws JMException {
+        return register(simulation, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Registers the MBeans of a simulation with the given MBean server
+     *
+     * @param simulation the simulation to publish
+     * @param server the server to register with
+     * @return the registered MBeans, to unregister later
+     * @throws JMException if the MBeans could not be registered
+     */
+    public static FactoryMetrics register(Simulation simulation, MBeanServer server)
+            throws JMException {
+        FactoryMetrics metrics = new FactoryMetrics(server);
+        simulation.setLiveCounters(true);
+        TickPlan plan = simulation.getPlan();
+        Transport[] transports = new Transport[plan.size()];
+        for (int i = 0; i < transports.length; i++) {
+            transports[i] = plan.getTransport(i);
+        }
+        try {
+            metrics.add("type=Factory",
+                    new FactoryStats(simulation, transports, plan.getPathCount()));
+            for (int path = 0; path < plan.getPathCount(); path++) {
+                int start = plan.getPathStart(path);
+                int end = plan.getPathEnd(path);
+                if (start == end) {
+                    continue;
+                }
+                Transport[] pathTransports = new Transport[end - start];
+                System.arraycopy(transports, start, pathTransports, 0, end - start);
+                metrics.add("type=Path,tail=" + pathTransports[0].getId(),
+                        new PathStats(pathTransports, simulation));
+            }
+            for (Transport transport : transports) {
+                if (transport instanceof Receiver receiver) {
+                    metrics.add("type=Receiver,id=" + receiver.getId(),
+                            new ReceiverStats(receiver, simulation));
+                }
+            }
+        } catch (JMException e) {
+            metrics.unregister();
+            throw e;
+        }
+        return metrics;
+    }
+
+    /**
+     * Registers one MBean
+     *
+     * @param properties the key properties of the MBean's name, apart from factory
+     * @param mbean the MBean to register
+     * @throws JMException if the MBean could not be registered
+     */
+    private void add(String properties, Object mbean) throws JMException {
+        ObjectName name = new ObjectName("lms:" + properties + ",factory=" + factory);
+        server.registerMBean(mbean, name);
+        names.add(name);
+    }
+
+    /**
+     * Returns the names of the registered MBeans
+     *
+     * @return the MBean names
+     */
+    public List<ObjectName> getNames() {
+        return List.copyOf(names);
+    }
+
+    /**
+     * Unregisters every MBean of the simulation, ignoring any that are already gone
+     */
+    public void unregister() {
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // already unregistered
+            }
+        }
+        names.clear();
+    }
+}
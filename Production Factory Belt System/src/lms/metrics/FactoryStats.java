@@ -0,0 +1,78 @@
+package lms.metrics;
+
+import lms.logistics.Transport;
+import lms.simulation.Simulation;
+
+/**
+ * Throughput and stall counters for a whole simulation, summed over its transports
+ */
+public class FactoryStats implements FactoryStatsMBean {
+
+    /**
+     * The simulation being counted
+     */
+    private final Simulation simulation;
+
+    /**
+     * The transports of the simulation
+     */
+    private final Transport[] transports;
+
+    /**
+     * The number of paths in the simulation
+     */
+    private final int paths;
+
+    /**
+     * Creates the counters for a simulation
+     *
+     * @param simulation the simulation to count
+     * @param transports the transports of the simulation
+     * @param paths the number of paths in the simulation
+     */
+    public FactoryStats(Simulation simulation, Transport[] transports, int paths) {
+        this.simulation = simulation;
+        this.transports = transports.clone();
+        this.paths = paths;
+    }
+
+    @Override
+    public long getTickCount() {
+        return simulation.getTickCount();
+    }
+
+    @Override
+    public long getPublishedTick() {
+        return simulation.getPublishedTick();
+    }
+
+    @Override
+    public int getTransportCount() {
+        return transports.length;
+    }
+
+    @Override
+    public int getPathCount() {
+        return paths;
+    }
+
+    @Override
+    public long getItemsMoved() {
+        return Counters.itemsMoved(simulation, transports);
+    }
+
+    @Override
+    public long getTicksStalled() {
+        return Counters.ticksStalled(simulation, transports);
+    }
+
+    @Override
+    public long getItemsProduced() {
+        return Counters.itemsProduced(simulation, transports);
+    }
+
+    @Override
+    public long getItemsReceived() {
+        return Counters.itemsReceived(simulation, transports);
+    }
+}
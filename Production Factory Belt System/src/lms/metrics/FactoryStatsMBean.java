@@ -0,0 +1,67 @@
+package lms.metrics;
+
+/**
+ * The JMX management interface of FactoryStats
+ * <p>
+ * The counts of long straight paths and of jammed transports are brought up to date
+ * every 64 ticks, so they can be up to 64 ticks behind getTickCount(); they are all up
+ * to date as of getPublishedTick().
+ */
+public interface FactoryStatsMBean {
+
+    /**
+     * Returns the number of ticks the simulation has run
+     *
+     * @return the tick count
+     */
+    long getTickCount();
+
+    /**
+     * Returns the tick the counts were last brought up to date at
+     *
+     * @return the tick the counts were published at
+     */
+    long getPublishedTick();
+
+    /**
+     * Returns the number of transports being simulated
+     *
+     * @return the transport count
+     */
+    int getTransportCount();
+
+    /**
+     * Returns the number of paths being simulated
+     *
+     * @return the path count
+     */
+    int getPathCount();
+
+    /**
+     * Returns the number of items moved between transports
+     *
+     * @return the items moved
+     */
+    long getItemsMoved();
+
+    /**
+     * Returns the number of ticks a transport was blocked by a full next transport
+     *
+     * @return the stalled ticks
+     */
+    long getTicksStalled();
+
+    /**
+     * Returns the number of items produced
+     *
+     * @return the items produced
+     */
+    long getItemsProduced();
+
+    /**
+     * Returns the number of items received
+     *
+     * @return the items received
+     */
+    long getItemsReceived();
+}
@@ -0,0 +1,81 @@
+package lms.metrics;
+
+import lms.logistics.Transport;
+import lms.simulation.Simulation;
+
+/**
+ * Throughput and stall counters for one path of a simulation, summed over its transports
+ */
+public class PathStats implements PathStatsMBean {
+
+    /**
+     * The transports of the path, from tail to head
+     */
+    private final Transport[] transports;
+
+    /**
+     * The simulation the path is part of
+     */
+    private final Simulation simulation;
+
+    /**
+     * Creates the counters for a path
+     *
+     * @param transports the transports of the path, from tail to head
+     * @param simulation the simulation the path is part of
+     * @requires transports.length &gt; 0
+     */
+    public PathStats(Transport[] transports, Simulation simulation) {
+        this.transports = transports.clone();
+        this.simulation = simulation;
+    }
+
+    @Override
+    public int getHeadId() {
+        return transports[transports.length - 1].getId();
+    }
+
+    @Override
+    public int getTailId() {
+        return transports[0].getId();
+    }
+
+    @Override
+    public int getTransportCount() {
+        return transports.length;
+    }
+
+    @Override
+    public long getItemsMoved() {
+        return Counters.itemsMoved(simulation, transports);
+    }
+
+    @Override
+    public long getTicksStalled() {
+        return Counters.ticksStalled(simulation, transports);
+    }
+
+    @Override
+    public int getMostStalledId() {
+        simulation.getPublishedTick();
+        int id = -1;
+        long most = 0;
+        for (Transport transport : transports) {
+            if (transport.getTicksStalled() > most) {
+                most = transport.getTicksStalled();
+                id = transport.getId();
+            }
+        }
+        return id;
+    }
+
+    @Override
+    public long getItemsProduced() {
+        return Counters.itemsProduced(simulation, transports);
+    }
+
+    @Override
+    public long getItemsReceived() {
+        return Counters.itemsReceived(simulation, transports);
+    }
+}
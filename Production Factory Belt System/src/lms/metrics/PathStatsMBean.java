@@ -0,0 +1,69 @@
+package lms.metrics;
+
+/**
+ * The JMX management interface of PathStats
+ * <p>
+ * The counts of a long straight path, and of its transports while they are jammed, are
+ * brought up to date every 64 ticks, so they can be up to 64 ticks behind the
+ * simulation.
+ */
+public interface PathStatsMBean {
+
+    /**
+     * Returns the id of the transport at the head of the path
+     *
+     * @return the head's id
+     */
+    int getHeadId();
+
+    /**
+     * Returns the id of the transport at the tail of the path
+     *
+     * @return the tail's id
+     */
+    int getTailId();
+
+    /**
+     * Returns the number of transports on the path
+     *
+     * @return the length of the path
+     */
+    int getTransportCount();
+
+    /**
+     * Returns the number of items moved from one transport to the next on the path
+     *
+     * @return the items moved
+     */
+    long getItemsMoved();
+
+    /**
+     * Returns the number of ticks a transport on the path was blocked by a full
+     * next transport
+     *
+     * @return the stalled ticks
+     */
+    long getTicksStalled();
+
+    /**
+     * Returns the id of the transport on the path that has stalled the most, which is
+     * where the path is backed up to
+     *
+     * @return the id of the most stalled transport, or -1 if nothing has stalled
+     */
+    int getMostStalledId();
+
+    /**
+     * Returns the number of items produced by the producers on the path
+     *
+     * @return the items produced
+     */
+    long getItemsProduced();
+
+    /**
+     * Returns the number of items received by the receivers on the path
+     *
+     * @return the items received
+     */
+    long getItemsReceived();
+}
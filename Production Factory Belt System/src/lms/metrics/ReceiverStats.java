@@ -0,0 +1,52 @@
+package lms.metrics;
+
+import lms.logistics.container.Receiver;
+import lms.simulation.Simulation;
+
+/**
+ * Delivery counters for one Receiver of a simulation
+ */
+public class ReceiverStats implements ReceiverStatsMBean {
+
+    /**
+     * The Receiver being counted
+     */
+    private final Receiver receiver;
+
+    /**
+     * The simulation the Receiver is part of
+     */
+    private final Simulation simulation;
+
+    /**
+     * Creates the counters for a Receiver
+     *
+     * @param receiver the Receiver to count
+     * @param simulation the simulation the Receiver is part of
+     */
+    public ReceiverStats(Receiver receiver, Simulation simulation) {
+        this.receiver = receiver;
+        this.simulation = simulation;
+    }
+
+    @Override
+    public int getId() {
+        return receiver.getId();
+    }
+
+    @Override
+    public String getKey() {
+        return receiver.getKey().toString();
+    }
+
+    @Override
+    public long getItemsReceived() {
+        return receiver.getReceivedCount();
+    }
+
+    @Override
+    public double getItemsPerTick() {
+        long ticks = simulation.getTickCount();
+        return ticks == 0 ? 0 : (double) receiver.getReceivedCount() / ticks;
+    }
+}
@@ -0,0 +1,35 @@
+package lms.metrics;
+
+/**
+ * The JMX management interface of ReceiverStats
+ */
+public interface ReceiverStatsMBean {
+
+    /**
+     * Returns the id of the Receiver
+     *
+     * @return the Receiver's id
+     */
+    int getId();
+
+    /**
+     * Returns the name of the Item the Receiver accepts
+     *
+     * @return the Receiver's key
+     */
+    String getKey();
+
+    /**
+     * Returns the number of items the Receiver has received
+     *
+     * @return the items received
+     */
+    long getItemsReceived();
+
+    /**
+     * Returns the number of items received per tick since the simulation started
+     *
+     * @return the items received per tick
+     */
+    double getItemsPerTick();
+}
@@ -0,0 +1,306 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.container.Producer;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Ticks only the transports of a TickPlan whose state can change.
+ * <p>
+ * A transport can only change if it holds an item and its output has room, if it is a
+ * Receiver holding an item, or if it is a Producer. Whenever a tick moves an item, the
+ * transport it moved into is woken, as is the transport itself if it still holds items,
+ * and when a full transport makes room every transport that outputs into it is woken.
+ * Transports are ticked in plan order, so a transport woken by one
+ * later in the plan is ticked this tick, and one woken by one earlier in the plan is ticked
+ * next tick, exactly as a full sweep of the plan would see them. Idle and jammed transports
+ * are not visited at all.
+ * <p>
+ * A transport left asleep behind a full output would have stalled on every tick it was
+ * not visited. The tick it first stalled on is kept, and the missed stalls are added to
+ * its count when it is next visited or when flushStalls() is called.
+ * <p>
+ * Changes made to inventories from outside the simulation are not noticed, use
+ * wakeAll() after making them.
+ */
+class ActiveSet {
+
+    /**
+     * The plan being ticked
+     */
+    private final TickPlan plan;
+
+    /**
+     * The transports of the plan, in plan order
+     */
+    private final Transport[] transports;
+
+    /**
+     * The plan index of each transport's output, or -1 if it has none in the plan
+     */
+    private final int[] next;
+
+    /**
+     * The index into inputs that each transport's inputs start at, with one extra entry
+     * for the end
+     */
+    private final int[] inputStarts;
+
+    /**
+     * The plan indices of the transports that output into each transport
+     */
+    private final int[] inputs;
+
+    /**
+     * The plan indices of the producers
+     */
+    private final int[] producers;
+
+    /**
+     * The transports to tick this tick
+     */
+    private BitSet current;
+
+    /**
+     * The transports to tick next tick
+     */
+    private BitSet pending;
+
+    /**
+     * The transports left asleep behind a full output
+     */
+    private final BitSet stalled;
+
+    /**
+     * The tick each stalled transport last had its stalls counted up to
+     */
+    private final long[] stalledSince;
+
+    /**
+     * The number of ticks run
+     */
+    private long ticks;
+
+    /**
+     * Where the transports that move during the current tick are reported, or null
+     */
+    private ChangeTracker.Movers movers;
+
+    /**
+     * Creates an ActiveSet for the given plan, with every transport active
+     *
+     * @param plan the plan to tick
+     */
+    ActiveSet(TickPlan plan) {
+        this.plan = plan;
+        int size = plan.size();
+        Map<Transport, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++) {
+            indices.put(plan.getTransport(i), i);
+        }
+        transports = new Transport[size];
+        for (int i = 0; i < size; i++) {
+            transports[i] = plan.getTransport(i);
+        }
+        next = new int[size];
+        inputStarts = new int[size + 1];
+        int producerCount = 0;
+        for (int i = 0; i < size; i++) {
+            Transport transport = plan.getTransport(i);
+            Path output = transport.getOutput();
+            Integer index = output == null ? null : indices.get(output.getNode());
+            next[i] = index == null ? -1 : index;
+            if (next[i] >= 0) {
+                inputStarts[next[i] + 1]++;
+            }
+            if (transport instanceof Producer) {
+                producerCount++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            inputStarts[i + 1] += inputStarts[i];
+        }
+        inputs = new int[inputStarts[size]];
+        int[] fill = inputStarts.clone();
+        producers = new int[producerCount];
+        producerCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (next[i] >= 0) {
+                inputs[fill[next[i]]++] = i;
+            }
+            if (plan.getTransport(i) instanceof Producer) {
+                producers[producerCount++] = i;
+            }
+        }
+        current = new BitSet(size);
+        pending = new BitSet(size);
+        stalled = new BitSet(size);
+        stalledSince = new long[size];
+        wakeAll();
+    }
+
+    /**
+     * Returns the plan this ActiveSet ticks
+     *
+     * @return the plan
+     */
+    TickPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Marks every transport as active for the next tick
+     */
+    void wakeAll() {
+        pending.set(0, plan.size());
+    }
+
+    /**
+     * Returns the number of transports woken for the next tick. Producers are ticked
+     * every tick on top of these.
+     *
+     * @return the number of active transports
+     */
+    int getActiveCount() {
+        return pending.cardinality();
+    }
+
+    /**
+     * Ticks the active transports and the producers once, in plan order
+     *
+     * @param movers where to report the transports that move an item, or null
+     */
+    void tick(ChangeTracker.Movers movers) {
+        this.movers = movers;
+        ticks++;
+        BitSet swap = current;
+        current = pending;
+        pending = swap;
+        for (int producer : producers) {
+            current.set(producer);
+        }
+        for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1)) {
+            try {
+                tickTransport(i);
+            } catch (BadStateException bse) {
+                System.err.println("Tick could not be processed:" + bse);
+                i = skipPath(i);
+            }
+        }
+        // cleared in one go rather than bit by bit, ready to be the next pending set
+        current.clear();
+    }
+
+    /**
+     * Ticks one transport and wakes the transports its tick may have made active
+     *
+     * @param i the plan index of the transport
+     */
+    private void tickTransport(int i) {
+        Transport transport = transports[i];
+        if (stalled.get(i)) {
+            // it stalled on every tick since, without being visited
+            transport.addTicksStalled(ticks - stalledSince[i] - 1);
+            stalled.clear(i);
+        }
+        long moved = transport.getItemsMoved();
+        long stalls = transport.getTicksStalled();
+        int firstInput = inputStarts[i];
+        int lastInput = inputStarts[i + 1];
+        // only a transport with inputs to wake needs to know whether it made room
+        boolean wasFull = firstInput < lastInput && !transport.canAccept();
+
+        transport.tick();
+
+        if (transport.getTicksStalled() != stalls) {
+            stalled.set(i);
+            stalledSince[i] = ticks;
+        }
+        if (transport.getItemsMoved() != moved) {
+            if (movers != null) {
+                movers.moved(i);
+            }
+            if (next[i] >= 0) {
+                wake(i, next[i]);
+            }
+            if (!transport.isEmpty()) {
+                // the next item in the queue can move next tick
+                pending.set(i);
+            }
+        }
+        if (wasFull && transport.canAccept()) {
+            for (int j = firstInput; j < lastInput; j++) {
+                wake(i, inputs[j]);
+            }
+        }
+    }
+
+    /**
+     * Adds the stalls of the transports left asleep behind a full output, up to and
+     * including the latest tick, to their counts
+     */
+    void flushStalls() {
+        for (int i = stalled.nextSetBit(0); i >= 0; i = stalled.nextSetBit(i + 1)) {
+            transports[i].addTicksStalled(ticks - stalledSince[i]);
+            stalledSince[i] = ticks;
+        }
+    }
+
+    /**
+     * Wakes a transport, for this tick if it comes later in the plan than the transport
+     * being ticked, otherwise for the next tick
+     *
+     * @param from the plan index of the transport being ticked
+     * @param to the plan index of the transport to wake
+     */
+    private void wake(int from, int to) {
+        if (to > from) {
+            current.set(to);
+        } else {
+            pending.set(to);
+        }
+    }
+
+    /**
+     * Skips the rest of a path after a bad state, the same way a full sweep does. The
+     * transport that failed and the active transports left on the path are ticked
+     * again next tick.
+     *
+     * @param i the plan index of the transport that failed
+     * @return the last plan index of the path
+     */
+    private int skipPath(int i) {
+        int end = pathEnd(i);
+        pending.set(i);
+        for (int j = current.nextSetBit(i); j >= 0 && j < end; j = current.nextSetBit(j + 1)) {
+            current.clear(j);
+            pending.set(j);
+        }
+        return end - 1;
+    }
+
+    /**
+     * Finds the end of the path holding a plan index
+     *
+     * @param i the plan index
+     * @return the index after the last transport of the path
+     */
+    private int pathEnd(int i) {
+        int low = 0;
+        int high = plan.getPathCount() - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (plan.getPathEnd(mid) <= i) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return plan.getPathEnd(low);
+    }
+}
@@ -0,0 +1,426 @@
+package lms.simulation;
+
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.Map;
+
+/**
+ * Ticks a single straight path of a TickPlan as a bitset of occupied slots, 64 slots to
+ * a word.
+ * <p>
+ * On a path with no merges, one item type and belts that hold one item each, the only
+ * state is which slots are full. Slot 0 is the tail of the path and the last slot is its
+ * head, the same order as the plan. Ticking the tail first means a run of full slots
+ * moves forward by one when the slot in front of it is empty, and stays put otherwise.
+ * The moving runs are found by adding the bottom slot of each one to the bitset, which
+ * carries through the run and clears it, so a tick is a handful of word operations with
+ * no per-slot loop. A Producer at the head and a Receiver at the tail are ticked on
+ * their own around the belts, exactly as their tick() methods would.
+ * <p>
+ * The line keeps its own state once created, and deliveries are added to the Receiver
+ * as they happen. Ticked with somewhere to report its changes, the line also writes the
+ * slots that changed into their transports, found by comparing the words before and
+ * after the tick. Everything else stays in the line until writeBack() is called,
+ * including the item moved, stall and produced counts of the transports, which are
+ * worked out the same way as a RunLengthLine's: the items a belt moved are the items
+ * moved into it, plus the item it started with, less the item it ends with, and a belt
+ * only stalls once it is part of the full slots jammed at the tail of a line without a
+ * Receiver.
+ *
+ * @see Transport#tick()
+ * @see RunLengthLine
+ */
+public class BitsetLine {
+
+    /**
+     * The transports of the line, from tail to head
+     */
+    private final Transport[] transports;
+
+    /**
+     * The plan index of the tail of the line
+     */
+    private final int start;
+
+    /**
+     * The only item that can be on the line
+     */
+    private final Item item;
+
+    /**
+     * The occupied slots, with room for one bit past the head
+     */
+    private final long[] words;
+
+    /**
+     * The occupied slots before the current tick, to find the ones it changed
+     */
+    private final long[] previous;
+
+    /**
+     * The occupied slots when the counts were last written back
+     */
+    private final long[] written;
+
+    /**
+     * The Producer at the head of the line, or null if there is none
+     */
+    private final Producer producer;
+
+    /**
+     * The Receiver at the tail of the line, or null if there is none
+     */
+    private final Receiver receiver;
+
+    /**
+     * The number of slots the belts can be in, which is every slot but the producer's
+     */
+    private final int slots;
+
+    /**
+     * The counter of the producer
+     */
+    private int counter;
+
+    /**
+     * The number of ticks run since the line was created
+     */
+    private long ticks;
+
+    /**
+     * The number of full slots jammed at the tail of a line without a Receiver
+     */
+    private int jammed;
+
+    /**
+     * The tick count at which each jammed slot joined the jam or last had its stalls
+     * written back, the slot stalling on every tick after it
+     */
+    private final long[] jamTicks;
+
+    /**
+     * The items moved by the producer since the counts were last written back
+     */
+    private long producerMoved;
+
+    /**
+     * The ticks the producer stalled since the counts were last written back
+     */
+    private long producerStalled;
+
+    /**
+     * The items produced since the counts were last written back
+     */
+    private long produced;
+
+    /**
+     * Creates a line for a path of a plan, starting from the current state of its
+     * transports
+     *
+     * @param plan the plan holding the path
+     * @param path the index of the path
+     * @throws IllegalArgumentException if supports() is false for the path
+     */
+    public BitsetLine(TickPlan plan, int path) throws IllegalArgumentException {
+        if (!supports(plan, path)) {
+            throw new IllegalArgumentException("Path " + path + " is not a straight line");
+        }
+        start = plan.getPathStart(path);
+        int length = plan.getPathEnd(path) - start;
+        transports = new Transport[length];
+        for (int i = 0; i < length; i++) {
+            transports[i] = plan.getTransport(start + i);
+        }
+        item = itemOf(transports);
+        words = new long[(length >>> 6) + 1];
+        for (int i = 0; i < length; i++) {
+            if (!transports[i].isEmpty()) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        previous = new long[words.length];
+        written = words.clone();
+        producer = transports[length - 1] instanceof Producer p ? p : null;
+        receiver = transports[0] instanceof Receiver r ? r : null;
+        slots = producer == null ? length : length - 1;
+        counter = producer == null ? 0 : producer.getCounter();
+        jamTicks = new long[slots];
+        growJam();
+    }
+
+    /**
+     * Checks whether a path of a plan can be ticked as a bitset. The path must only link
+     * to itself, hold nothing but single item Belts between an optional Producer at its
+     * head and an optional Receiver at its tail, and carry only one item type.
+     *
+     * @param plan the plan holding the path
+     * @param path the index of the path
+     * @return true if the path can be ticked as a BitsetLine, false otherwise
+     */
+    public static boolean supports(TickPlan plan, int path) {
+        return supports(plan, path, plan.countInputs());
+    }
+
+    /**
+     * Checks whether a path of a plan can be ticked as a bitset, using input counts
+     * already worked out for the whole plan
+     *
+     * @param plan the plan holding the path
+     * @param path the index of the path
+     * @param inputs the number of transports outputting into each transport, from
+     *               TickPlan#countInputs()
+     * @return true if the path can be ticked as a straight line, false otherwise
+     */
+    static boolean supports(TickPlan plan, int path, Map<Transport, Integer> inputs) {
+        if (!plan.isStraight(path, inputs)) {
+            return false;
+        }
+        int start = plan.getPathStart(path);
+        Transport[] line = new Transport[plan.getPathEnd(path) - start];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = plan.getTransport(start + i);
+            if (line[i] instanceof Belt belt && belt.getCapacity() != 1) {
+                return false;
+            }
+        }
+        Item item = itemOf(line);
+        for (Transport transport : line) {
+            if (transport instanceof Container container && !container.getKey().equals(item)
+                    || !transport.isEmpty() && !item.equals(rawInventory(transport))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of slots on the line
+     *
+     * @return the number of transports on the line
+     */
+    public int length() {
+        return transports.length;
+    }
+
+    /**
+     * Checks whether a slot of the line holds an item
+     *
+     * @param slot the slot, where 0 is the tail
+     * @return true if the slot is full, false otherwise
+     */
+    public boolean isOccupied(int slot) {
+        return (words[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Ticks the line once, with the same result as ticking its transports from tail to
+     * head
+     */
+    public void tick() {
+        tick(null);
+    }
+
+    /**
+     * Ticks the line once, with the same result as ticking its transports from tail to
+     * head
+     *
+     * @param movers where to report the transports that change, which also makes the
+     *               line write them through, or null to keep them in the line
+     */
+    void tick(ChangeTracker.Movers movers) {
+        ticks++;
+        if (movers != null) {
+            System.arraycopy(words, 0, previous, 0, words.length);
+        }
+        if (receiver != null && (words[0] & 1L) != 0) {
+            // the receiver consumes the item at the tail
+            words[0] &= ~1L;
+            receiver.addReceived(1);
+        }
+        int head = transports.length - 1;
+        long producerBit = 1L << head;
+        boolean producerFull = false;
+        if (producer != null) {
+            // the producer only moves on its own turn, so keep it out of the runs
+            producerFull = (words[head >>> 6] & producerBit) != 0;
+            words[head >>> 6] &= ~producerBit;
+        }
+        advanceRuns();
+        if (producer != null) {
+            counter = (counter + 1) % 2;
+            if (counter == 1) {
+                if (!producerFull) {
+                    produced++;
+                } else if (head > 0 && !isOccupied(head - 1)) {
+                    words[(head - 1) >>> 6] |= 1L << (head - 1);
+                    producerMoved++;
+                    produced++;
+                } else if (head > 0) {
+                    producerStalled++;
+                }
+            }
+            if (producerFull || counter == 1) {
+                words[head >>> 6] |= producerBit;
+            }
+        }
+        growJam();
+        if (movers != null) {
+            writeMoves(movers);
+        }
+    }
+
+    /**
+     * Writes the slots changed by the last tick into their transports, and reports them
+     *
+     * @param movers where to report the changed transports
+     */
+    private void writeMoves(ChangeTracker.Movers movers) {
+        for (int k = 0; k < words.length; k++) {
+            long changed = words[k] ^ previous[k];
+            while (changed != 0) {
+                int slot = (k << 6) + Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                transports[slot].restoreInventory(isOccupied(slot) ? item : null);
+                movers.changed(start + slot);
+            }
+        }
+        if (producer != null) {
+            producer.setCounter(counter);
+        }
+    }
+
+    /**
+     * Adds the full slots that have reached the jam at the tail of a line without a
+     * Receiver to it. Nothing in front of the jam can ever move, so it only grows.
+     */
+    private void growJam() {
+        if (receiver != null) {
+            return;
+        }
+        while (jammed < slots && isOccupied(jammed)) {
+            jamTicks[jammed] = ticks;
+            jammed++;
+        }
+    }
+
+    /**
+     * Copies the state of the line back into its transports, and adds the items moved,
+     * ticks stalled and items produced since the last time to their counts
+     */
+    public void writeBack() {
+        for (int i = 0; i < transports.length; i++) {
+            transports[i].restoreInventory(isOccupied(i) ? item : null);
+        }
+        writeBackCounts();
+        if (producer != null) {
+            producer.setCounter(counter);
+            producer.addItemsMoved(producerMoved);
+            producer.addTicksStalled(producerStalled);
+            producer.addItemsProduced(produced);
+            producerMoved = 0;
+            producerStalled = 0;
+            produced = 0;
+        }
+    }
+
+    /**
+     * Adds the items moved and ticks stalled by the belts since the last write back to
+     * their counts
+     */
+    private void writeBackCounts() {
+        // a receiver in slot 0 consumes its item rather than moving it
+        long entered = producerMoved;
+        for (int slot = slots - 1; slot > 0; slot--) {
+            long left = entered + bit(written, slot) - bit(words, slot);
+            transports[slot].addItemsMoved(left);
+            entered = left;
+        }
+        System.arraycopy(words, 0, written, 0, words.length);
+        // slot 0 is the tail, which has nowhere to move its item
+        for (int slot = 1; slot < jammed; slot++) {
+            transports[slot].addTicksStalled(ticks - jamTicks[slot]);
+            jamTicks[slot] = ticks;
+        }
+    }
+
+    /**
+     * Reads one slot of a bitset
+     *
+     * @param bits the bitset
+     * @param slot the slot
+     * @return 1 if the slot is set, 0 otherwise
+     */
+    private static long bit(long[] bits, int slot) {
+        return (bits[slot >>> 6] >>> slot) & 1L;
+    }
+
+    /**
+     * Moves every run of full slots that has an empty slot in front of it forward by
+     * one. The bottom slot of each such run is added to the bitset, which carries through
+     * the run and clears it, leaving the run as the bits that went from 1 to 0.
+     */
+    private void advanceRuns() {
+        long below = 0;       // the top bit of the previous word, before the tick
+        long carry = 0;       // the carry out of adding the previous word
+        long lastMoving = 0;  // the moving bits of the previous word
+        for (int k = 0; k < words.length; k++) {
+            long word = words[k];
+            long starts = word & ~((word << 1) | below);
+            if (k == 0) {
+                starts &= ~1L;   // the tail has nowhere to move to
+            }
+            long sum = word + starts + carry;
+            // starts never has two neighbouring bits, so only the addition to word overflows
+            carry = Long.compareUnsigned(sum, word) < 0 ? 1 : 0;
+            long moving = word & ~sum;
+            if (k > 0) {
+                words[k - 1] = (words[k - 1] & ~lastMoving) | (lastMoving >>> 1)
+                        | (moving << 63);
+            }
+            below = word >>> 63;
+            lastMoving = moving;
+        }
+        int last = words.length - 1;
+        words[last] = (words[last] & ~lastMoving) | (lastMoving >>> 1);
+    }
+
+    /**
+     * Finds the item type carried by a line
+     *
+     * @param line the transports of the line
+     * @return the key of the producer or receiver, otherwise the first item on the line,
+     *         or null if the line is empty and has neither
+     */
+    static Item itemOf(Transport[] line) {
+        for (Transport transport : line) {
+            if (transport instanceof Container container) {
+                return container.getKey();
+            }
+        }
+        for (Transport transport : line) {
+            if (!transport.isEmpty()) {
+                return rawInventory(transport);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the item a transport holds, including one a Receiver is about to consume
+     *
+     * @param transport the transport
+     * @return the item held, or null if it is empty
+     */
+    private static Item rawInventory(Transport transport) {
+        if (transport instanceof Receiver receiver) {
+            // its item can't be read, but it can only have come along the line
+            return receiver.isEmpty() ? null : receiver.getKey();
+        }
+        return transport.getInventory();
+    }
+}
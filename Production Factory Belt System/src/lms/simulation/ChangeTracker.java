@@ -0,0 +1,299 @@
+package lms.simulation;
+
+import lms.logistics.Path;
+import lms.logistics.Transport;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the transports whose inventory changed during a tick.
+ * <p>
+ * An inventory only changes when an item is moved, which empties one transport and fills
+ * its output (a Producer refills itself straight after moving, and a Receiver's inventory
+ * is never shown). Whatever ticks a transport already knows whether it moved an item, so
+ * it reports the transport's plan index to the Movers of its thread, and after the tick
+ * the tracker gathers the reported transports and their outputs into one set. A tick only
+ * costs the tracker time in proportion to the number of items that moved, whichever
+ * TickMode ran it.
+ */
+class ChangeTracker {
+
+    /**
+     * The plan being tracked
+     */
+    private final TickPlan plan;
+
+    /**
+     * The transports that can change, which are the plan's transports in plan order and
+     * then the outputs that are not in the plan
+     */
+    private final Transport[] nodes;
+
+    /**
+     * The index into nodes of each plan transport's output, or -1 if it has none
+     */
+    private final int[] outputs;
+
+    /**
+     * The Movers of every thread that has ticked for this tracker
+     */
+    private final List<Movers> movers = new CopyOnWriteArrayList<>();
+
+    /**
+     * The Movers of the current thread
+     */
+    private final ThreadLocal<Movers> local = ThreadLocal.withInitial(() -> {
+        Movers threadMovers = new Movers();
+        movers.add(threadMovers);
+        return threadMovers;
+    });
+
+    /**
+     * The indices into nodes of the transports that changed during the last tick
+     */
+    private final int[] changed;
+
+    /**
+     * The number of entries of changed in use
+     */
+    private int changedCount;
+
+    /**
+     * The indices into nodes that are in changed
+     */
+    private final BitSet seen;
+
+    /**
+     * A read-only view of the changed transports
+     */
+    private final ChangedView view = new ChangedView();
+
+    /**
+     * Creates a tracker for a plan
+     *
+     * @param plan the plan to track
+     */
+    ChangeTracker(TickPlan plan) {
+        this.plan = plan;
+        int size = plan.size();
+        Map<Transport, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++) {
+            indices.put(plan.getTransport(i), i);
+        }
+        List<Transport> all = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            all.add(plan.getTransport(i));
+        }
+        outputs = new int[size];
+        for (int i = 0; i < size; i++) {
+            Path output = plan.getTransport(i).getOutput();
+            if (output == null) {
+                outputs[i] = -1;
+                continue;
+            }
+            Integer index = indices.get(output.getNode());
+            if (index == null) {
+                // never ticked, but its inventory can still be filled
+                index = all.size();
+                indices.put(output.getNode(), index);
+                all.add(output.getNode());
+            }
+            outputs[i] = index;
+        }
+        nodes = all.toArray(new Transport[0]);
+        changed = new int[nodes.length];
+        seen = new BitSet(nodes.length);
+    }
+
+    /**
+     * Returns the plan being tracked
+     *
+     * @return the plan
+     */
+    TickPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the Movers of the current thread, to report the transports it ticks to
+     *
+     * @return the Movers of the thread
+     */
+    Movers movers() {
+        return local.get();
+    }
+
+    /**
+     * Gathers the transports reported since the last call
+     *
+     * @return a read-only set of the changed transports, which is reused by the next call
+     * @requires no thread is ticking
+     */
+    Set<Transport> collect() {
+        for (int i = 0; i < changedCount; i++) {
+            seen.clear(changed[i]);
+        }
+        changedCount = 0;
+        for (Movers threadMovers : movers) {
+            for (int i = 0; i < threadMovers.count; i++) {
+                int entry = threadMovers.entries[i];
+                if (entry >= 0) {
+                    add(entry);
+                    if (outputs[entry] >= 0) {
+                        add(outputs[entry]);
+                    }
+                } else {
+                    add(~entry);
+                }
+            }
+            threadMovers.count = 0;
+        }
+        return view;
+    }
+
+    /**
+     * Returns the number of transports that changed during the last tick
+     *
+     * @return the number of changed transports
+     */
+    int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * Returns the index of one of the transports that changed during the last tick. The
+     * indices of the plan's transports are their plan indices, and the outputs that are
+     * not in the plan come after them.
+     *
+     * @param i the position of the transport, below getChangedCount()
+     * @return the index of the changed transport, to look up with getNode()
+     */
+    int getChangedIndex(int i) {
+        return changed[i];
+    }
+
+    /**
+     * Returns the transport with an index given by getChangedIndex()
+     *
+     * @param index the index of the transport
+     * @return the transport
+     */
+    Transport getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Adds a transport to the changed transports, unless it is already there
+     *
+     * @param node the index into nodes of the transport
+     */
+    private void add(int node) {
+        if (!seen.get(node)) {
+            seen.set(node);
+            changed[changedCount++] = node;
+        }
+    }
+
+    /**
+     * The plan indices reported by one thread during a tick
+     */
+    static final class Movers {
+
+        /**
+         * The plan index of each transport that moved an item, or the complement of the
+         * plan index of a transport that changed without moving
+         */
+        private int[] entries = new int[64];
+
+        /**
+         * The number of entries in use
+         */
+        private int count;
+
+        /**
+         * Reports a transport that moved an item, which changes its output as well
+         *
+         * @param index the plan index of the transport
+         */
+        void moved(int index) {
+            add(index);
+        }
+
+        /**
+         * Reports a transport whose inventory changed without it moving an item
+         *
+         * @param index the plan index of the transport
+         */
+        void changed(int index) {
+            add(~index);
+        }
+
+        /**
+         * Ticks a transport of a plan, and reports it if it moved an item
+         *
+         * @param plan the plan being ticked
+         * @param index the plan index of the transport
+         */
+        void tick(TickPlan plan, int index) {
+            Transport transport = plan.getTransport(index);
+            long moved = transport.getItemsMoved();
+            transport.tick();
+            if (transport.getItemsMoved() != moved) {
+                add(index);
+            }
+        }
+
+        /**
+         * Adds an entry
+         *
+         * @param entry the entry to add
+         */
+        private void add(int entry) {
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+            }
+            entries[count++] = entry;
+        }
+    }
+
+    /**
+     * A read-only view of the transports that changed during the last tick
+     */
+    private final class ChangedView extends AbstractSet<Transport> {
+
+        @Override
+        public Iterator<Transport> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < changedCount;
+                }
+
+                @Override
+                public Transport next() {
+                    if (next >= changedCount) {
+                        throw new NoSuchElementException();
+                    }
+                    return nodes[changed[next++]];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return changedCount;
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package lms.simulation;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GridComponent;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes checkpoints of a running Simulation to a file, so that it can be resumed with
+ * restore() after a restart.
+ * <p>
+ * The first checkpoint is a base holding the state of every transport. After that, a
+ * delta is written every interval ticks holding only the transports that changed since
+ * the checkpoint before, found from the indices of the transports each tick reports to
+ * its TickListeners, which are kept in a BitSet. So a checkpoint costs time and space in proportion to the number of
+ * items that moved, not the size of the grid. A new base is written instead when the
+ * links of the grid change, when ticks were skipped by Simulation#advance(), or after
+ * requestBase(). Call requestBase() after changing inventories from outside the
+ * simulation.
+ * <p>
+ * Each checkpoint is taken on the ticking thread straight after a tick, so it always
+ * holds the state between two ticks, and is then written to the file on a background
+ * thread. The ticking thread only waits if the checkpoint before is still being written
+ * when the next one is due.
+ * <p>
+ * The state of a transport is the items it holds, along with a Producer's counter and a
+ * Receiver's received count. Statistics such as the number of items moved are not
+ * saved. Producers flip their counter every tick without moving an item, so they are
+ * not reported by the ticks. They are checked at every checkpoint instead, and a counter
+ * is only written when it did not just follow the ticks.
+ * <p>
+ * All values are big-endian. A checkpoint file is a header of two ints, the magic number
+ * and the format version, followed by the checkpoints. Each checkpoint is:
+ * <ol>
+ *     <li>a byte, BASE or DELTA, and the tick count as a long</li>
+ *     <li>the item table, an int count followed by each item as an int byte length and
+ *     its UTF-8 name</li>
+ *     <li>an int count of transports, each as its int id, then a byte counter for a
+ *     Producer or a long received count for a Receiver, then an int count of items
+ *     followed by their int indices into the item table, head first</li>
+ * </ol>
+ * A checkpoint cut short by a crash at the end of the file is ignored.
+ *
+ * @see TickListener
+ */
+public class Checkpointer implements AutoCloseable {
+
+    /**
+     * The first int of every checkpoint file, "LMSC" in ASCII
+     */
+    static final int MAGIC = 0x4C4D5343;
+
+    /**
+     * The version of the checkpoint format written
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The type of a checkpoint holding every transport
+     */
+    static final int BASE = 0;
+
+    /**
+     * The type of a checkpoint holding the transports changed since the one before
+     */
+    static final int DELTA = 1;
+
+    /**
+     * The simulation being checkpointed
+     */
+    private final Simulation simulation;
+
+    /**
+     * The number of ticks between checkpoints
+     */
+    private final long interval;
+
+    /**
+     * Added to the simulation to collect the changed transports
+     */
+    private final TickListener listener = this::ticked;
+
+    /**
+     * The indices of the transports changed since the last checkpoint, as numbered by the
+     * ChangeTracker of plan. Only used by the ticking thread.
+     */
+    private final BitSet dirty = new BitSet();
+
+    /**
+     * The tracker of the last tick reported, or null if none has been
+     */
+    private ChangeTracker tracker;
+
+    /**
+     * Writes the checkpoints in the background
+     */
+    private final ExecutorService writer;
+
+    /**
+     * The checkpoint file, only written by the writer's thread once the header is out
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The checkpoint being written, or null if none has been
+     */
+    private Future<?> pending;
+
+    /**
+     * The plan the last checkpoint was taken with
+     */
+    private TickPlan plan;
+
+    /**
+     * The producers of plan, in plan order
+     */
+    private Producer[] producers;
+
+    /**
+     * The plan index of each producer
+     */
+    private int[] producerIndices;
+
+    /**
+     * The counter of each producer at the last checkpoint
+     */
+    private final BitSet counters = new BitSet();
+
+    /**
+     * Whether the next checkpoint has to be a base
+     */
+    private boolean needBase = true;
+
+    /**
+     * The tick count of the last checkpoint
+     */
+    private long checkpointTick;
+
+    /**
+     * The tick count the simulation was last seen at
+     */
+    private long seenTick;
+
+    /**
+     * Starts checkpointing a simulation into a file, replacing anything already in it,
+     * and writes a base checkpoint of its current state.
+     * <p>
+     * Only create, checkpoint or close a Checkpointer between ticks, on the thread that
+     * ticks the simulation.
+     *
+     * @param simulation the simulation to checkpoint
+     * @param file the checkpoint file
+     * @param interval the number of ticks between checkpoints
+     * @throws IllegalArgumentException if interval is not positive
+     * @throws IOException if the file cannot be written
+     */
+    public Checkpointer(Simulation simulation, Path file, long interval)
+            throws IllegalArgumentException, IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        this.simulation = simulation;
+        this.interval = interval;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // brings the transports of any run-length lines up to date
+        simulation.getGrid();
+        simulation.addTickListener(listener);
+        seenTick = simulation.getTickCount();
+        checkpoint();
+    }
+
+    /**
+     * Makes the next checkpoint a base, holding every transport
+     */
+    public void requestBase() {
+        needBase = true;
+    }
+
+    /**
+     * Takes a checkpoint of the current state now, rather than waiting for the interval
+     *
+     * @throws IOException if an earlier checkpoint could not be written
+     */
+    public void checkpoint() throws IOException {
+        await();
+        Record record = capture();
+        pending = writer.submit(() -> {
+            write(record);
+            return null;
+        });
+    }
+
+    /**
+     * Stops checkpointing, takes a last checkpoint if the simulation has ticked since the
+     * one before, and waits for every checkpoint to be written
+     *
+     * @throws IOException if a checkpoint could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        simulation.removeTickListener(listener);
+        try {
+            if (simulation.getTickCount() != checkpointTick || needBase) {
+                checkpoint();
+            }
+            await();
+        } finally {
+            writer.shutdown();
+            out.close();
+        }
+    }
+
+    /**
+     * Collects the transports changed by a tick, and takes a checkpoint once the interval
+     * has passed
+     *
+     * @param tick the tick count
+     * @param changed the transports changed by the tick
+     */
+    private void ticked(long tick, Set<Transport> changed) {
+        tracker = simulation.getTracker();
+        if (tick != seenTick + 1 || tracker.getPlan() != plan) {
+            // ticks were skipped without reporting what changed, or the links changed
+            needBase = true;
+        }
+        seenTick = tick;
+        if (!needBase) {
+            for (int i = 0; i < tracker.getChangedCount(); i++) {
+                dirty.set(tracker.getChangedIndex(i));
+            }
+        }
+        if (tick - checkpointTick >= interval) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the checkpoint being written, if there is one
+     *
+     * @throws IOException if it could not be written
+     */
+    private void await() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a checkpoint");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    /**
+     * Takes the state of the transports to checkpoint
+     *
+     * @return the checkpoint
+     */
+    private Record capture() {
+        long tick = simulation.getTickCount();
+        TickPlan current = simulation.getPlan();
+        if (current != plan || tick != seenTick) {
+            needBase = true;
+        }
+        if (current != plan) {
+            plan = current;
+            List<Producer> found = new ArrayList<>();
+            List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < plan.size(); i++) {
+                if (plan.getTransport(i) instanceof Producer producer) {
+                    found.add(producer);
+                    indices.add(i);
+                }
+            }
+            producers = found.toArray(new Producer[0]);
+            producerIndices = indices.stream().mapToInt(Integer::intValue).toArray();
+        }
+        boolean base = needBase;
+        if (base) {
+            dirty.clear();
+            dirty.set(0, plan.size());
+        } else {
+            boolean flipped = (tick - checkpointTick) % 2 == 1;
+            for (int i = 0; i < producers.length; i++) {
+                if ((producers[i].getCounter() == 1) != (counters.get(i) ^ flipped)) {
+                    dirty.set(producerIndices[i]);
+                }
+            }
+        }
+        List<Entry> entries = new ArrayList<>();
+        List<Integer> held = new ArrayList<>();
+        for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+            Transport transport = i < plan.size() ? plan.getTransport(i) : tracker.getNode(i);
+            entries.add(new Entry(transport));
+            if (transport instanceof Receiver && !transport.isEmpty()) {
+                held.add(i);
+            }
+        }
+        dirty.clear();
+        for (int i = 0; i < producers.length; i++) {
+            counters.set(i, producers[i].getCounter() == 1);
+        }
+        for (int i : held) {
+            // consumed on the next tick, which is not reported as a change
+            dirty.set(i);
+        }
+        needBase = false;
+        checkpointTick = tick;
+        seenTick = tick;
+        return new Record(base, tick, entries);
+    }
+
+    /**
+     * Writes a checkpoint to the file, on the writer's thread
+     *
+     * @param record the checkpoint to write
+     * @throws IOException if the file cannot be written
+     */
+    private void write(Record record) throws IOException {
+        Map<Item, Integer> items = new LinkedHashMap<>();
+        for (Entry entry : record.entries) {
+            for (Item item : entry.items) {
+                items.putIfAbsent(item, items.size());
+            }
+        }
+        out.writeByte(record.base ? BASE : DELTA);
+        out.writeLong(record.tick);
+        out.writeInt(items.size());
+        for (Item item : items.keySet()) {
+            byte[] name = item.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+        }
+        out.writeInt(record.entries.size());
+        for (Entry entry : record.entries) {
+            out.writeInt(entry.transport.getId());
+            if (entry.transport instanceof Producer) {
+                out.writeByte(entry.counter);
+            } else if (entry.transport instanceof Receiver) {
+                out.writeLong(entry.received);
+            }
+            out.writeInt(entry.items.length);
+            for (Item item : entry.items) {
+                out.writeInt(items.get(item));
+            }
+        }
+        // a crash only loses the checkpoints that were not finished
+        out.flush();
+    }
+
+    /**
+     * Restores the state saved in a checkpoint file onto a simulation of a grid loaded
+     * from the same save file, which has not been ticked yet. The transports are matched
+     * by id, and the simulation's tick count is set to that of the last checkpoint.
+     *
+     * @param simulation the simulation to restore
+     * @param file the checkpoint file
+     * @return the tick count of the last checkpoint
+     * @throws IOException if the file cannot be read
+     * @throws FileFormatException if the file is not a valid checkpoint file, or does
+     *                             not match the grid
+     */
+    public static long restore(Simulation simulation, Path file)
+            throws IOException, FileFormatException {
+        Map<Integer, Transport> transports = new HashMap<>();
+        List<Producer> producers = new ArrayList<>();
+        for (GridComponent component : simulation.getGrid().getPlacedView().values()) {
+            if (component instanceof Transport transport) {
+                transports.put(transport.getId(), transport);
+                if (transport instanceof Producer producer) {
+                    producers.add(producer);
+                }
+            }
+        }
+        long tick = -1;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new FileFormatException("Not a checkpoint file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new FileFormatException("Unsupported checkpoint version " + version);
+            }
+            while (true) {
+                Record record;
+                try {
+                    record = read(in, transports);
+                } catch (EOFException e) {
+                    // the last checkpoint was not finished
+                    break;
+                }
+                if (record == null) {
+                    break;
+                }
+                if (tick < 0 && !record.base) {
+                    throw new FileFormatException("Checkpoint file does not start with a base");
+                }
+                if (tick >= 0 && (record.tick - tick) % 2 == 1) {
+                    for (Producer producer : producers) {
+                        producer.setCounter(1 - producer.getCounter());
+                    }
+                }
+                for (Entry entry : record.entries) {
+                    entry.apply();
+                }
+                tick = record.tick;
+            }
+        } catch (EOFException e) {
+            throw new FileFormatException("Checkpoint file is truncated", e);
+        }
+        if (tick < 0) {
+            throw new FileFormatException("Checkpoint file has no complete checkpoint");
+        }
+        simulation.restoreTickCount(tick);
+        simulation.wakeAll();
+        return tick;
+    }
+
+    /**
+     * Reads a checkpoint from the file
+     *
+     * @param in the checkpoint file
+     * @param transports the transports of the grid by id
+     * @return the checkpoint, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     * @throws FileFormatException if the checkpoint is not valid
+     */
+    private static Record read(DataInputStream in, Map<Integer, Transport> transports)
+            throws IOException, FileFormatException {
+        int type = in.read();
+        if (type < 0) {
+            return null;
+        }
+        if (type != BASE && type != DELTA) {
+            throw new FileFormatException("Unknown checkpoint type " + type);
+        }
+        long tick = in.readLong();
+        Item[] items = new Item[in.readInt()];
+        for (int i = 0; i < items.length; i++) {
+            byte[] name = new byte[in.readInt()];
+            in.readFully(name);
+            try {
+                items[i] = ItemRegistry.intern(new String(name, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new FileFormatException("Empty item name in checkpoint");
+            }
+        }
+        int count = in.readInt();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            Transport transport = transports.get(id);
+            if (transport == null) {
+                throw new FileFormatException("No transport with id " + id);
+            }
+            int counter = transport instanceof Producer ? in.readByte() : -1;
+            long received = transport instanceof Receiver ? in.readLong() : -1;
+            if (transport instanceof Producer && counter != 0 && counter != 1) {
+                throw new FileFormatException("Bad counter for " + transport);
+            }
+            if (transport instanceof Receiver receiver
+                    && received < receiver.getReceivedCount()) {
+                throw new FileFormatException("Bad received count for " + transport);
+            }
+            Item[] held = new Item[in.readInt()];
+            int capacity = transport instanceof Belt belt ? belt.getCapacity() : 1;
+            if (held.length > capacity) {
+                throw new FileFormatException("Too many items on " + transport);
+            }
+            for (int j = 0; j < held.length; j++) {
+                int index = in.readInt();
+                if (index < 0 || index >= items.length) {
+                    throw new FileFormatException("Bad item index on " + transport);
+                }
+                held[j] = items[index];
+            }
+            entries.add(new Entry(transport, counter, received, held));
+        }
+        return new Record(type == BASE, tick, entries);
+    }
+
+    /**
+     * A checkpoint taken between two ticks
+     */
+    private static final class Record {
+
+        /**
+         * Whether it holds every transport
+         */
+        private final boolean base;
+
+        /**
+         * The tick count it was taken at
+         */
+        private final long tick;
+
+        /**
+         * The state of each transport in it
+         */
+        private final List<Entry> entries;
+
+        /**
+         * Creates a checkpoint
+         *
+         * @param base whether it holds every transport
+         * @param tick the tick count it was taken at
+         * @param entries the state of each transport in it
+         */
+        Record(boolean base, long tick, List<Entry> entries) {
+            this.base = base;
+            this.tick = tick;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * The state of one transport
+     */
+    private static final class Entry {
+
+        /**
+         * The transport
+         */
+        private final Transport transport;
+
+        /**
+         * A Producer's counter, or -1
+         */
+        private final int counter;
+
+        /**
+         * A Receiver's received count, or -1
+         */
+        private final long received;
+
+        /**
+         * The items held, head first
+         */
+        private final Item[] items;
+
+        /**
+         * Takes the current state of a transport
+         *
+         * @param transport the transport
+         */
+        Entry(Transport transport) {
+            this.transport = transport;
+            this.counter = transport instanceof Producer producer ? producer.getCounter() : -1;
+            this.received = transport instanceof Receiver receiver
+                    ? receiver.getReceivedCount() : -1;
+            if (transport instanceof Belt belt && belt.getCapacity() > 1) {
+                items = new Item[belt.getItemCount()];
+                for (int i = 0; i < items.length; i++) {
+                    items[i] = belt.getItem(i);
+                }
+            } else {
+                Item item = transport instanceof Receiver receiver
+                        ? receiver.getHeldItem() : transport.getInventory();
+                items = item == null ? new Item[0] : new Item[] {item};
+            }
+        }
+
+        /**
+         * Creates the state read from a checkpoint
+         *
+         * @param transport the transport
+         * @param counter a Producer's counter, or -1
+         * @param received a Receiver's received count, or -1
+         * @param items the items held, head first
+         */
+        Entry(Transport transport, int counter, long received, Item[] items) {
+            this.transport = transport;
+            this.counter = counter;
+            this.received = received;
+            this.items = items;
+        }
+
+        /**
+         * Puts the transport back into this state
+         */
+        void apply() {
+            if (transport instanceof Belt belt && belt.getCapacity() > 1) {
+                belt.restoreInventory(null);
+                for (Item item : items) {
+                    belt.receive(item);
+                }
+            } else {
+                transport.restoreInventory(items.length == 0 ? null : items[0]);
+            }
+            if (transport instanceof Producer producer) {
+                producer.setCounter(counter);
+            } else if (transport instanceof Receiver receiver) {
+                receiver.addReceived(received - receiver.getReceivedCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package lms.simulation;
+
+import lms.logistics.Item;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the point where a simulation starts repeating itself.
+ * <p>
+ * A tick only depends on the inventories of the transports, including the items queued
+ * behind the head of a belt that holds more than one, and the counters of the
+ * producers, so once the simulation reaches a state it has been in before, it repeats the
+ * same cycle of states forever. The detector is shown the state after every tick, and
+ * uses Brent's method to find the cycle: it keeps one saved state, compares every new
+ * state with it, and moves the saved state forward each time the number of ticks since
+ * it was saved reaches the next power of two. Only one extra copy of the state is kept,
+ * and a cycle is found within about twice the number of ticks it takes to enter it.
+ * <p>
+ * While the cycle is being found, the detector records how many items each Receiver gets
+ * per cycle, and how many items each transport moves, ticks it stalls and items each
+ * Producer produces, so that whole cycles can be skipped by adding these counts directly.
+ */
+class CycleDetector {
+
+    /**
+     * The code of an empty transport in a state
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * The transports whose inventories make up the state, which are the plan's
+     * transports and any outputs that are not in the plan
+     */
+    private final Transport[] transports;
+
+    /**
+     * The producers whose counters make up the state
+     */
+    private final Producer[] producers;
+
+    /**
+     * The belts that can hold more than one item, whose queued items make up the state
+     */
+    private final Belt[] buffered;
+
+    /**
+     * The index in a state of the queued items of the buffered belts
+     */
+    private final int bufferedStart;
+
+    /**
+     * The receivers whose deliveries are counted
+     */
+    private final Receiver[] receivers;
+
+    /**
+     * The code of every Item seen in a state, starting from 1
+     */
+    private final Map<Item, Integer> itemCodes = new IdentityHashMap<>();
+
+    /**
+     * The state being compared against
+     */
+    private int[] saved;
+
+    /**
+     * The state after the latest tick
+     */
+    private int[] state;
+
+    /**
+     * The delivery counts of the receivers when the state was saved
+     */
+    private final long[] savedReceived;
+
+    /**
+     * The item moved counts of the transports when the state was saved
+     */
+    private final long[] savedMoved;
+
+    /**
+     * The stall counts of the transports when the state was saved
+     */
+    private final long[] savedStalled;
+
+    /**
+     * The produced counts of the producers when the state was saved
+     */
+    private final long[] savedProduced;
+
+    /**
+     * The number of ticks after which the saved state is moved forward
+     */
+    private long power;
+
+    /**
+     * The number of ticks since the state was saved
+     */
+    private long length;
+
+    /**
+     * The length of the cycle, or 0 if it has not been found
+     */
+    private long period;
+
+    /**
+     * The number of items each receiver gets in one cycle
+     */
+    private final long[] receivedPerCycle;
+
+    /**
+     * The number of items each transport moves in one cycle
+     */
+    private final long[] movedPerCycle;
+
+    /**
+     * The number of ticks each transport stalls in one cycle
+     */
+    private final long[] stalledPerCycle;
+
+    /**
+     * The number of items each producer produces in one cycle
+     */
+    private final long[] producedPerCycle;
+
+    /**
+     * Creates a detector for the transports of a plan, taking the current state as
+     * the first saved state
+     *
+     * @param plan the plan being ticked
+     */
+    CycleDetector(TickPlan plan) {
+        List<Transport> all = new ArrayList<>();
+        List<Producer> producerList = new ArrayList<>();
+        List<Receiver> receiverList = new ArrayList<>();
+        List<Belt> bufferedList = new ArrayList<>();
+        Map<Transport, Boolean> seen = new IdentityHashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            seen.put(plan.getTransport(i), Boolean.TRUE);
+        }
+        for (int i = 0; i < plan.size(); i++) {
+            Transport transport = plan.getTransport(i);
+            all.add(transport);
+            if (transport instanceof Producer producer) {
+                producerList.add(producer);
+            } else if (transport instanceof Receiver receiver) {
+                receiverList.add(receiver);
+            }
+            Path output = transport.getOutput();
+            if (output != null && seen.put(output.getNode(), Boolean.TRUE) == null) {
+                // never ticked, but its inventory can still be filled
+                all.add(output.getNode());
+            }
+        }
+        int queued = 0;
+        for (Transport transport : all) {
+            if (transport instanceof Belt belt && belt.getCapacity() > 1) {
+                bufferedList.add(belt);
+                queued += belt.getCapacity() - 1;
+            }
+        }
+        transports = all.toArray(new Transport[0]);
+        producers = producerList.toArray(new Producer[0]);
+        receivers = receiverList.toArray(new Receiver[0]);
+        buffered = bufferedList.toArray(new Belt[0]);
+        bufferedStart = transports.length + producers.length;
+        saved = new int[bufferedStart + queued];
+        state = new int[saved.length];
+        savedReceived = new long[receivers.length];
+        receivedPerCycle = new long[receivers.length];
+        savedMoved = new long[transports.length];
+        savedStalled = new long[transports.length];
+        movedPerCycle = new long[transports.length];
+        stalledPerCycle = new long[transports.length];
+        savedProduced = new long[producers.length];
+        producedPerCycle = new long[producers.length];
+        capture(saved);
+        recordCounts();
+        power = 1;
+        length = 0;
+        period = 0;
+    }
+
+    /**
+     * Compares the state after a tick with the saved state
+     *
+     * @return true if the cycle has been found, false otherwise
+     */
+    boolean observe() {
+        if (period > 0) {
+            return true;
+        }
+        capture(state);
+        length++;
+        if (Arrays.equals(state, saved)) {
+            period = length;
+            for (int i = 0; i < receivers.length; i++) {
+                receivedPerCycle[i] = receivers[i].getReceivedCount() - savedReceived[i];
+            }
+            for (int i = 0; i < transports.length; i++) {
+                movedPerCycle[i] = transports[i].getItemsMoved() - savedMoved[i];
+                stalledPerCycle[i] = transports[i].getTicksStalled() - savedStalled[i];
+            }
+            for (int i = 0; i < producers.length; i++) {
+                producedPerCycle[i] = producers[i].getItemsProduced() - savedProduced[i];
+            }
+            return true;
+        }
+        if (length == power) {
+            int[] swap = saved;
+            saved = state;
+            state = swap;
+            recordCounts();
+            power *= 2;
+            length = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the length of the cycle
+     *
+     * @return the number of ticks in the cycle, or 0 if it has not been found
+     */
+    long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Adds the deliveries, moves, stalls and production of a number of whole cycles to
+     * the transports, as if those cycles had been ticked
+     *
+     * @param cycles the number of cycles to skip
+     * @requires the cycle has been found
+     */
+    void skip(long cycles) {
+        for (int i = 0; i < receivers.length; i++) {
+            receivers[i].addReceived(Math.multiplyExact(receivedPerCycle[i], cycles));
+        }
+        for (int i = 0; i < transports.length; i++) {
+            transports[i].addItemsMoved(Math.multiplyExact(movedPerCycle[i], cycles));
+            transports[i].addTicksStalled(Math.multiplyExact(stalledPerCycle[i], cycles));
+        }
+        for (int i = 0; i < producers.length; i++) {
+            producers[i].addItemsProduced(Math.multiplyExact(producedPerCycle[i], cycles));
+        }
+    }
+
+    /**
+     * Records the counts of the transports for the saved state
+     */
+    private void recordCounts() {
+        for (int i = 0; i < receivers.length; i++) {
+            savedReceived[i] = receivers[i].getReceivedCount();
+        }
+        for (int i = 0; i < transports.length; i++) {
+            savedMoved[i] = transports[i].getItemsMoved();
+            savedStalled[i] = transports[i].getTicksStalled();
+        }
+        for (int i = 0; i < producers.length; i++) {
+            savedProduced[i] = producers[i].getItemsProduced();
+        }
+    }
+
+    /**
+     * Writes the current state into an array
+     *
+     * @param into the array to write to
+     */
+    private void capture(int[] into) {
+        for (int i = 0; i < transports.length; i++) {
+            Transport transport = transports[i];
+            if (transport instanceof Receiver receiver) {
+                // an item matching the key is consumed next tick, and any other blocks
+                into[i] = code(receiver.getHeldItem());
+            } else {
+                into[i] = code(transport.getInventory());
+            }
+        }
+        for (int i = 0; i < producers.length; i++) {
+            into[transports.length + i] = producers[i].getCounter();
+        }
+        int slot = bufferedStart;
+        for (Belt belt : buffered) {
+            // the head is already in the state as the belt's inventory
+            int count = belt.getItemCount();
+            for (int i = 1; i < belt.getCapacity(); i++) {
+                into[slot++] = i < count ? code(belt.getItem(i)) : EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Returns the code of an inventory in a state
+     *
+     * @param item the inventory
+     * @return EMPTY if item is null, otherwise a positive code for the item
+     */
+    private int code(Item item) {
+        if (item == null) {
+            return EMPTY;
+        }
+        Integer code = itemCodes.get(item);
+        if (code == null) {
+            code = itemCodes.size() + 1;
+            itemCodes.put(item, code);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,87 @@
+package lms.simulation;
+
+import lms.logistics.Item;
+import lms.logistics.Transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of items being moved into transports owned by another
+ * worker.
+ * <p>
+ * Only one thread may offer and only one thread may drain. Each side only writes its
+ * own index, and publishes it with an ordered write after the slots it covers, so
+ * neither side ever waits for the other.
+ */
+final class HandoffQueue {
+
+    /**
+     * The transport each queued item is moving into
+     */
+    private final Transport[] targets;
+
+    /**
+     * The queued items
+     */
+    private final Item[] items;
+
+    /**
+     * The capacity minus one, the capacity being a power of two
+     */
+    private final int mask;
+
+    /**
+     * The number of entries ever drained, written by the draining thread
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The number of entries ever offered, written by the offering thread
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates a queue that can hold at least the given number of entries
+     *
+     * @param capacity the number of entries the queue must hold
+     */
+    HandoffQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        targets = new Transport[size];
+        items = new Item[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Queues an item to be moved into a transport
+     *
+     * @param target the transport the item moves into
+     * @param item the item
+     * @throws IllegalStateException if the queue is full
+     */
+    void offer(Transport target, Item item) throws IllegalStateException {
+        long t = tail.get();
+        if (t - head.get() == targets.length) {
+            throw new IllegalStateException("Handoff queue is full");
+        }
+        int slot = (int) t & mask;
+        targets[slot] = target;
+        items[slot] = item;
+        tail.lazySet(t + 1);
+    }
+
+    /**
+     * Moves every queued item into its transport, in the order they were queued
+     */
+    void drain() {
+        long h = head.get();
+        long t = tail.get();
+        for (; h < t; h++) {
+            int slot = (int) h & mask;
+            targets[slot].receive(items[slot]);
+            targets[slot] = null;
+            items[slot] = null;
+        }
+        head.lazySet(h);
+    }
+}
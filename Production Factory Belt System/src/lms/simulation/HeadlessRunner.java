@@ -0,0 +1,305 @@
+package lms.simulation;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.io.GameLoader;
+import lms.io.SnapshotLoader;
+import lms.logistics.container.Receiver;
+import lms.metrics.FactoryMetrics;
+
+import javax.management.JMException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs a factory save file without the GUI, as fast as the simulation allows.
+ * <p>
+ * The runner stops after a number of ticks, a wall-clock budget, or whichever comes
+ * first, and then reports the tick rate and the number of items each Receiver got.
+ * <p>
+ * Example usage:
+ * <pre>
+ * java lms.simulation.HeadlessRunner saves/grid2.txt --ticks 1000000
+ * java lms.simulation.HeadlessRunner saves/grid2.txt --millis 5000 --parallel
+ * java lms.simulation.HeadlessRunner saves/grid2.txt --ticks 1000000000 --fast-forward
+ * java lms.simulation.HeadlessRunner saves/grid2.txt --ticks 1000000 --checkpoint run.lmsc 10000
+ * java lms.simulation.HeadlessRunner saves/grid2.txt --ticks 1000000 --resume run.lmsc
+ * </pre>
+ * A save file ending in .lmsb is loaded as a binary snapshot.
+ *
+ * @see lms.io.SnapshotWriter
+ * @see Checkpointer
+ */
+public class HeadlessRunner {
+
+    /**
+     * The most ticks to run between checks of the wall clock
+     */
+    private static final int MAX_CLOCK_CHECK_INTERVAL = 1024;
+
+    /**
+     * The wall-clock time to aim for between checks of the wall clock, in nanoseconds,
+     * which bounds how far a run can overshoot its budget unless a single tick takes
+     * longer
+     */
+    private static final long CLOCK_CHECK_NANOS = 1_000_000L;
+
+    /**
+     * The simulation being run
+     */
+    private final Simulation simulation;
+
+    /**
+     * The receivers of the simulated grid, ordered by id
+     */
+    private final List<Receiver> receivers;
+
+    /**
+     * The number of ticks run by the last call to run()
+     */
+    private long ticksRun;
+
+    /**
+     * The wall-clock time taken by the last call to run(), in nanoseconds
+     */
+    private long elapsedNanos;
+
+    /**
+     * Creates a new HeadlessRunner for the given GameGrid
+     *
+     * @param grid the GameGrid to run
+     */
+    public HeadlessRunner(GameGrid grid) {
+        this.simulation = new Simulation(grid);
+        this.receivers = new ArrayList<>();
+        for (GridComponent component : grid.getPlacedView().values()) {
+            if (component instanceof Receiver receiver) {
+                receivers.add(receiver);
+            }
+        }
+        receivers.sort(Comparator.comparingInt(Receiver::getId));
+    }
+
+    /**
+     * Loads a save file and creates a HeadlessRunner for it
+     *
+     * @param reader the Reader for the save file
+     * @return a HeadlessRunner for the loaded GameGrid
+     * @throws IOException if there is an error from the reader
+     * @throws FileFormatException if the file is not in the correct format
+     */
+    public static HeadlessRunner load(Reader reader) throws IOException, FileFormatException {
+        return new HeadlessRunner(GameLoader.load(reader));
+    }
+
+    /**
+     * Returns the simulation being run
+     *
+     * @return the simulation
+     */
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Ticks the simulation until the tick limit or the time limit is reached.
+     * <p>
+     * The clock is checked about once a millisecond, going by the time the ticks since
+     * the last check took, and after every tick once a tick takes longer than that.
+     *
+     * @param maxTicks the number of ticks to run, or a negative number for no limit
+     * @param maxMillis the wall-clock budget in milliseconds, or a negative number
+     *                  for no limit
+     * @requires maxTicks &gt;= 0 || maxMillis &gt;= 0
+     */
+    public void run(long maxTicks, long maxMillis) {
+        if (maxTicks < 0 && maxMillis < 0) {
+            throw new IllegalArgumentException("A tick or time limit is required");
+        }
+        long start = System.nanoTime();
+        long deadline = maxMillis < 0 ? Long.MAX_VALUE : start + maxMillis * 1_000_000L;
+        long limit = maxTicks < 0 ? Long.MAX_VALUE : maxTicks;
+        long count = 0;
+        long nextCheck = 1;
+        long lastCheck = start;
+        long lastCount = 0;
+        while (count < limit) {
+            simulation.tick();
+            count++;
+            if (count == nextCheck) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+                long tickNanos = Math.max(1, (now - lastCheck) / (count - lastCount));
+                nextCheck = count + Math.max(1,
+                        Math.min(CLOCK_CHECK_NANOS / tickNanos, MAX_CLOCK_CHECK_INTERVAL));
+                lastCheck = now;
+                lastCount = count;
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+        ticksRun = count;
+    }
+
+    /**
+     * Advances the simulation by a number of ticks, skipping whole cycles once the
+     * simulation starts repeating itself
+     *
+     * @param ticks the number of ticks to advance by
+     * @see Simulation#advance(long)
+     */
+    public void fastForward(long ticks) {
+        long start = System.nanoTime();
+        simulation.advance(ticks);
+        elapsedNanos = System.nanoTime() - start;
+        ticksRun = ticks;
+    }
+
+    /**
+     * Returns the number of ticks run by the last call to run() or fastForward()
+     *
+     * @return the ticks run
+     */
+    public long getTicksRun() {
+        return ticksRun;
+    }
+
+    /**
+     * Returns the tick rate achieved by the last call to run() or fastForward()
+     *
+     * @return the ticks run per second
+     */
+    public double getTicksPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return ticksRun * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the receivers of the simulated grid, ordered by id
+     *
+     * @return the receivers
+     */
+    public List<Receiver> getReceivers() {
+        return List.copyOf(receivers);
+    }
+
+    /**
+     * Prints the tick rate and the items delivered to each Receiver
+     *
+     * @param out the PrintStream to print to
+     */
+    public void report(PrintStream out) {
+        out.printf("Ran %d ticks in %.3f s (%.0f ticks/s)%n",
+                ticksRun, elapsedNanos / 1e9, getTicksPerSecond());
+        long total = 0;
+        for (Receiver receiver : receivers) {
+            out.printf("%s %s: %d received%n",
+                    receiver, receiver.getKey(), receiver.getReceivedCount());
+            total += receiver.getReceivedCount();
+        }
+        out.printf("Total: %d received%n", total);
+    }
+
+    /**
+     * Main method for the headless runner.
+     *
+     * @param args the save file, followed by --ticks N and/or --millis M, and
+     *             optionally --parallel, --active or --partitioned, --fast-forward,
+     *             --jmx, --resume FILE and --checkpoint FILE N
+     */
+    public static void main(String[] args) {
+        long maxTicks = -1;
+        long maxMillis = -1;
+        TickMode mode = TickMode.SEQUENTIAL;
+        boolean fastForward = false;
+        boolean jmx = false;
+        String resume = null;
+        String checkpoint = null;
+        long interval = 0;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--ticks" -> maxTicks = Long.parseLong(args[++i]);
+                    case "--millis" -> maxMillis = Long.parseLong(args[++i]);
+                    case "--parallel" -> mode = TickMode.PARALLEL;
+                    case "--active" -> mode = TickMode.ACTIVE;
+                    case "--partitioned" -> mode = TickMode.PARTITIONED;
+                    case "--fast-forward" -> fastForward = true;
+                    case "--jmx" -> jmx = true;
+                    case "--resume" -> resume = args[++i];
+                    case "--checkpoint" -> {
+                        checkpoint = args[++i];
+                        interval = Long.parseLong(args[++i]);
+                    }
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            args = new String[0];
+        }
+        if (args.length == 0 || (maxTicks < 0 && maxMillis < 0) || (fastForward && maxTicks < 0)
+                || (checkpoint != null && interval < 1)) {
+            System.err.println("Usage: save_file [--ticks N] [--millis M]"
+                    + " [--parallel | --active | --partitioned] [--fast-forward] [--jmx]"
+                    + " [--resume FILE] [--checkpoint FILE N]\n");
+            System.err.println("At least one of --ticks or --millis is required.");
+            System.err.println("--fast-forward skips repeating cycles, and needs --ticks.");
+            System.err.println("--jmx publishes the counters as MBeans while running.");
+            System.err.println("--resume starts from the last checkpoint in a file.");
+            System.err.println("--checkpoint writes a checkpoint every N ticks.");
+            System.err.println("Example: saves/grid2.txt --ticks 1000000");
+            System.exit(1);
+        }
+        try {
+            HeadlessRunner runner;
+            if (args[0].endsWith(".lmsb")) {
+                runner = new HeadlessRunner(SnapshotLoader.load(Path.of(args[0])));
+            } else {
+                try (Reader reader = new FileReader(args[0])) {
+                    runner = HeadlessRunner.load(reader);
+                }
+            }
+            runner.getSimulation().setMode(mode);
+            if (jmx) {
+                FactoryMetrics.register(runner.getSimulation());
+            }
+            if (resume != null) {
+                long tick = Checkpointer.restore(runner.getSimulation(), Path.of(resume));
+                System.out.printf("Resumed from tick %d%n", tick);
+            }
+            Checkpointer checkpointer = checkpoint == null ? null
+                    : new Checkpointer(runner.getSimulation(), Path.of(checkpoint), interval);
+            if (fastForward) {
+                runner.fastForward(maxTicks);
+            } else {
+                runner.run(maxTicks, maxMillis);
+            }
+            if (checkpointer != null) {
+                checkpointer.close();
+            }
+            runner.report(System.out);
+        } catch (FileFormatException e) {
+            System.err.println("File was incorrectly formatted");
+            e.printStackTrace();
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("File could not be read or written");
+            e.printStackTrace();
+            System.exit(1);
+        } catch (JMException e) {
+            System.err.println("Metrics could not be registered");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
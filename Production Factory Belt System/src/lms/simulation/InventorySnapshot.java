@@ -0,0 +1,74 @@
+package lms.simulation;
+
+import lms.logistics.Transport;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * An immutable record of which transports held an item after a tick, for drawing the
+ * factory on another thread while the simulation keeps running.
+ *
+ * @see SimulationRunner
+ */
+public class InventorySnapshot {
+
+    /**
+     * The number of ticks run when the snapshot was taken
+     */
+    private final long tick;
+
+    /**
+     * The ids of the transports holding an item
+     */
+    private final BitSet occupied;
+
+    /**
+     * The transports that changed since the previous snapshot, or null if everything
+     * has to be treated as changed
+     */
+    private final Set<Transport> changed;
+
+    /**
+     * Creates a snapshot, taking ownership of the given set and BitSet
+     *
+     * @param tick the number of ticks run
+     * @param occupied the ids of the transports holding an item
+     * @param changed the transports changed since the previous snapshot, or null for all
+     */
+    InventorySnapshot(long tick, BitSet occupied, Set<Transport> changed) {
+        this.tick = tick;
+        this.occupied = occupied;
+        this.changed = changed == null ? null : Collections.unmodifiableSet(changed);
+    }
+
+    /**
+     * Returns the number of ticks run when the snapshot was taken
+     *
+     * @return the tick count
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Checks whether a transport held an item when the snapshot was taken
+     *
+     * @param id the id of the transport
+     * @return true if the transport held an item, false otherwise
+     */
+    public boolean isOccupied(int id) {
+        return id >= 0 && occupied.get(id);
+    }
+
+    /**
+     * Returns the transports whose inventory changed since the previous snapshot
+     *
+     * @return a read-only set of changed transports, or null if every transport
+     *         should be treated as changed
+     */
+    public Set<Transport> getChanged() {
+        return changed;
+    }
+}
@@ -0,0 +1,92 @@
+package lms.simulation;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork-join task that ticks a range of the groups in a TickPlan.
+ * <p>
+ * The range is split in two, by the number of transports in it, until it is small
+ * enough to tick directly. Each group is only ever ticked by one task, and its paths
+ * are ticked in plan order, so the result does not depend on how the work is split.
+ * Tasks are never serialised.
+ */
+@SuppressWarnings("serial")
+class ParallelTick extends RecursiveAction {
+
+    /**
+     * The number of transports below which a range is ticked without splitting
+     */
+    private static final int THRESHOLD = 4096;
+
+    /**
+     * The simulation being ticked
+     */
+    private final Simulation simulation;
+
+    /**
+     * The plan being ticked
+     */
+    private final TickPlan plan;
+
+    /**
+     * The first group of the range
+     */
+    private final int from;
+
+    /**
+     * The group after the last group of the range
+     */
+    private final int to;
+
+    /**
+     * Creates a task that ticks the groups from (inclusive) to to (exclusive)
+     *
+     * @param simulation the simulation being ticked
+     * @param plan the plan being ticked
+     * @param from the first group of the range
+     * @param to the group after the last group of the range
+     */
+    ParallelTick(Simulation simulation, TickPlan plan, int from, int to) {
+        this.simulation = simulation;
+        this.plan = plan;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        int weight = plan.getGroupWeight(to) - plan.getGroupWeight(from);
+        if (to - from == 1 || weight <= THRESHOLD) {
+            for (int group = from; group < to; group++) {
+                for (int i = 0; i < plan.getGroupSize(group); i++) {
+                    simulation.tickPath(plan, plan.getGroupPath(group, i));
+                }
+            }
+            return;
+        }
+        int middle = split();
+        invokeAll(new ParallelTick(simulation, plan, from, middle),
+                new ParallelTick(simulation, plan, middle, to));
+    }
+
+    /**
+     * Finds the group that splits the range into two halves of about the same
+     * number of transports
+     *
+     * @return a group strictly between from and to
+     */
+    private int split() {
+        int target = (plan.getGroupWeight(from) + plan.getGroupWeight(to)) / 2;
+        int low = from + 1;
+        int high = to - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (plan.getGroupWeight(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,442 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ticks a TickPlan with the grid split into regions, each ticked by its own worker, so
+ * that one long path spread over the grid is shared between the workers.
+ * <p>
+ * The regions are bands of rows with about the same number of transports each. Straight
+ * paths are cut into segments where they cross from one region to another, and every
+ * other group of paths is ticked whole by the region its first transport is in. A
+ * Producer at the head of a path always stays in the segment below it, so the tail end
+ * of a segment that moves items into another region is never a Producer.
+ * <p>
+ * Ticking a path from tail to head means a transport only has room for the item behind
+ * it if it had room to begin with, or held an item and moved it on. That makes whether
+ * a segment has room for the item from the next segment up a function of whether the
+ * segment below it had room, of the form <code>always || (chained &amp;&amp; below)</code>.
+ * A tick runs in phases, with every worker finishing one phase before the next starts:
+ * <ol>
+ *     <li>each worker works out always and chained for its segments</li>
+ *     <li>the calling thread goes down every path, segment by segment, to find whether
+ *     each segment's output has room</li>
+ *     <li>each worker ticks its transports in plan order, handing an item that leaves
+ *     its region to a HandoffQueue for the region it is going to</li>
+ *     <li>each worker moves the items queued for it into its transports</li>
+ * </ol>
+ * The queued items go into transports that were ticked in the third phase, exactly as
+ * they would be after a sequential tick, so the grid ends up the same.
+ *
+ * @see TickMode#PARTITIONED
+ */
+class PartitionedTick {
+
+    /**
+     * The phases of a tick run by the workers
+     */
+    private enum Step { SUMMARISE, TICK, DELIVER }
+
+    /**
+     * The simulation being ticked
+     */
+    private final Simulation simulation;
+
+    /**
+     * The plan being ticked
+     */
+    private final TickPlan plan;
+
+    /**
+     * The pool the workers run on
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of regions
+     */
+    private final int regions;
+
+    /**
+     * The plan index of the tail end of each segment
+     */
+    private final int[] segmentStarts;
+
+    /**
+     * The plan index after the head end of each segment
+     */
+    private final int[] segmentEnds;
+
+    /**
+     * The path of each segment
+     */
+    private final int[] segmentPaths;
+
+    /**
+     * The segment holding the output of each segment's tail end, or -1 at a path's tail
+     */
+    private final int[] segmentOutputs;
+
+    /**
+     * The region of each segment
+     */
+    private final int[] segmentRegions;
+
+    /**
+     * The segments of each region, in plan order
+     */
+    private final int[][] regionSegments;
+
+    /**
+     * The groups ticked whole by each region
+     */
+    private final int[][] regionGroups;
+
+    /**
+     * Whether each segment's head end has room after the tick, whatever happens below
+     */
+    private final boolean[] always;
+
+    /**
+     * Whether each segment's head end has room after the tick if its output has room
+     */
+    private final boolean[] chained;
+
+    /**
+     * Whether the output of each segment's tail end has room when the tail end ticks
+     */
+    private final boolean[] accepted;
+
+    /**
+     * Whether each path fails at its Receiver this tick, which stops the whole path
+     */
+    private final boolean[] failed;
+
+    /**
+     * The queues from each region to each other region
+     */
+    private final HandoffQueue[][] queues;
+
+    /**
+     * Splits the transports of a plan into regions
+     *
+     * @param simulation the simulation being ticked
+     * @param plan the plan to tick
+     * @param grid the grid the plan was compiled from
+     * @param pool the pool to run the workers on
+     * @param regions the number of regions, at least 1
+     */
+    PartitionedTick(Simulation simulation, TickPlan plan, GameGrid grid, ForkJoinPool pool,
+                    int regions) {
+        this.simulation = simulation;
+        this.plan = plan;
+        this.pool = pool;
+        this.regions = regions;
+
+        Map<Transport, Integer> regionOf = assignRegions(grid, regions);
+        Map<Transport, Integer> inputs = plan.countInputs();
+        List<int[]> segments = new ArrayList<>();
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int region = 0; region < regions; region++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int group = 0; group < plan.getGroupCount(); group++) {
+            int first = plan.getGroupPath(group, 0);
+            if (plan.getGroupSize(group) > 1 || !plan.isStraight(first, inputs)) {
+                groups.get(region(regionOf, plan.getPathStart(first))).add(group);
+                continue;
+            }
+            int previous = -1;
+            int start = plan.getPathStart(first);
+            int end = plan.getPathEnd(first);
+            for (int i = start; i < end; i++) {
+                boolean headProducer = i + 2 == end
+                        && plan.getTransport(i + 1) instanceof Producer;
+                if (i + 1 == end || (!headProducer
+                        && region(regionOf, i + 1) != region(regionOf, i))) {
+                    segments.add(new int[] {start, i + 1, first, previous,
+                            region(regionOf, start)});
+                    previous = segments.size() - 1;
+                    start = i + 1;
+                }
+            }
+        }
+        // segments come out in plan order, which resolve() relies on
+        int count = segments.size();
+        segmentStarts = new int[count];
+        segmentEnds = new int[count];
+        segmentPaths = new int[count];
+        segmentOutputs = new int[count];
+        segmentRegions = new int[count];
+        int[] perRegion = new int[regions];
+        int[][] crossings = new int[regions][regions];
+        for (int s = 0; s < count; s++) {
+            int[] segment = segments.get(s);
+            segmentStarts[s] = segment[0];
+            segmentEnds[s] = segment[1];
+            segmentPaths[s] = segment[2];
+            segmentOutputs[s] = segment[3];
+            segmentRegions[s] = segment[4];
+            perRegion[segment[4]]++;
+            if (segment[3] >= 0) {
+                crossings[segment[4]][segments.get(segment[3])[4]]++;
+            }
+        }
+        regionSegments = new int[regions][];
+        regionGroups = new int[regions][];
+        for (int region = 0; region < regions; region++) {
+            regionSegments[region] = new int[perRegion[region]];
+            regionGroups[region] = groups.get(region).stream().mapToInt(Integer::intValue)
+                    .toArray();
+            perRegion[region] = 0;
+        }
+        for (int s = 0; s < count; s++) {
+            regionSegments[segmentRegions[s]][perRegion[segmentRegions[s]]++] = s;
+        }
+        queues = new HandoffQueue[regions][regions];
+        for (int from = 0; from < regions; from++) {
+            for (int to = 0; to < regions; to++) {
+                queues[from][to] = new HandoffQueue(crossings[from][to]);
+            }
+        }
+        always = new boolean[count];
+        chained = new boolean[count];
+        accepted = new boolean[count];
+        failed = new boolean[plan.getPathCount()];
+    }
+
+    /**
+     * Returns the plan this PartitionedTick ticks
+     *
+     * @return the plan
+     */
+    TickPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the number of segments the straight paths were cut into
+     *
+     * @return the number of segments
+     */
+    int getSegmentCount() {
+        return segmentStarts.length;
+    }
+
+    /**
+     * Ticks every transport of the plan once
+     */
+    void tick() {
+        pool.invoke(new Phase(Step.SUMMARISE, 0, regions));
+        resolve();
+        pool.invoke(new Phase(Step.TICK, 0, regions));
+        pool.invoke(new Phase(Step.DELIVER, 0, regions));
+    }
+
+    /**
+     * Works out always and chained for the segments of a region, and whether the paths
+     * whose tails are in the region will fail
+     *
+     * @param region the region
+     */
+    private void summarise(int region) {
+        for (int s : regionSegments[region]) {
+            int start = segmentStarts[s];
+            if (segmentOutputs[s] < 0) {
+                failed[segmentPaths[s]] = plan.getTransport(start) instanceof Receiver receiver
+                        && receiver.isBlocked();
+            }
+            // the tail end's output is the input, a tail has no room below it
+            boolean room = false;
+            boolean chain = true;
+            for (int i = start; i < segmentEnds[s]; i++) {
+                Transport transport = plan.getTransport(i);
+                if (transport instanceof Receiver) {
+                    // it always empties, unless it fails and stops the path
+                    room = true;
+                    chain = false;
+                } else {
+                    boolean full = !transport.isEmpty();
+                    room = transport.canAccept() || (full && room);
+                    chain = chain && full;
+                }
+            }
+            always[s] = room;
+            chained[s] = chain;
+        }
+    }
+
+    /**
+     * Goes down every path to find whether each segment's output has room
+     */
+    private void resolve() {
+        for (int s = 0; s < segmentStarts.length; s++) {
+            int output = segmentOutputs[s];
+            accepted[s] = output >= 0
+                    && (always[output] || (chained[output] && accepted[output]));
+        }
+    }
+
+    /**
+     * Ticks the transports of a region, queueing the items that leave it
+     *
+     * @param region the region
+     */
+    private void tickRegion(int region) {
+        ChangeTracker.Movers movers = simulation.movers();
+        for (int group : regionGroups[region]) {
+            for (int i = 0; i < plan.getGroupSize(group); i++) {
+                simulation.tickPath(plan, plan.getGroupPath(group, i));
+            }
+        }
+        for (int s : regionSegments[region]) {
+            int start = segmentStarts[s];
+            int output = segmentOutputs[s];
+            if (failed[segmentPaths[s]] && output >= 0) {
+                continue;   // the tail failed, so the rest of the path is skipped
+            }
+            try {
+                int i = start;
+                if (output >= 0) {
+                    Transport transport = plan.getTransport(i++);
+                    Item item = transport.handOff(accepted[s]);
+                    if (item != null) {
+                        queues[region][segmentRegions[output]]
+                                .offer(transport.getOutput().getNode(), item);
+                        if (movers != null) {
+                            movers.moved(start);
+                        }
+                    }
+                }
+                for (; i < segmentEnds[s]; i++) {
+                    if (movers == null) {
+                        plan.getTransport(i).tick();
+                    } else {
+                        movers.tick(plan, i);
+                    }
+                }
+            } catch (BadStateException bse) {
+                System.err.println("Tick could not be processed:" + bse);
+            }
+        }
+    }
+
+    /**
+     * Moves the items queued for a region into its transports
+     *
+     * @param region the region
+     */
+    private void deliver(int region) {
+        for (int from = 0; from < regions; from++) {
+            queues[from][region].drain();
+        }
+    }
+
+    /**
+     * Returns the region of a transport in the plan
+     *
+     * @param regionOf the region of every transport on the grid
+     * @param index the index of the transport in the plan
+     * @return the region of the transport
+     */
+    private int region(Map<Transport, Integer> regionOf, int index) {
+        return regionOf.getOrDefault(plan.getTransport(index), 0);
+    }
+
+    /**
+     * Splits the rows of a grid into bands with about the same number of transports
+     *
+     * @param grid the grid
+     * @param regions the number of bands
+     * @return the band of every transport on the grid
+     */
+    private static Map<Transport, Integer> assignRegions(GameGrid grid, int regions) {
+        int range = grid.getRange();
+        int[] rowCounts = new int[2 * range + 1];
+        int total = 0;
+        for (Map.Entry<Coordinate, GridComponent> entry : grid.getPlacedView().entrySet()) {
+            if (entry.getValue() instanceof Transport) {
+                rowCounts[entry.getKey().getR() + range]++;
+                total++;
+            }
+        }
+        int[] rowRegions = new int[rowCounts.length];
+        long before = 0;
+        for (int row = 0; row < rowCounts.length; row++) {
+            rowRegions[row] = total == 0 ? 0 : (int) (before * regions / total);
+            before += rowCounts[row];
+        }
+        Map<Transport, Integer> regionOf = new IdentityHashMap<>();
+        for (Map.Entry<Coordinate, GridComponent> entry : grid.getPlacedView().entrySet()) {
+            if (entry.getValue() instanceof Transport transport) {
+                regionOf.put(transport, rowRegions[entry.getKey().getR() + range]);
+            }
+        }
+        return regionOf;
+    }
+
+    /**
+     * A fork-join task that runs one phase of a tick for a range of regions. Tasks are
+     * never serialised.
+     */
+    @SuppressWarnings("serial")
+    private class Phase extends RecursiveAction {
+
+        /**
+         * The phase to run
+         */
+        private final Step step;
+
+        /**
+         * The first region of the range
+         */
+        private final int from;
+
+        /**
+         * The region after the last region of the range
+         */
+        private final int to;
+
+        /**
+         * Creates a task that runs a phase for the regions from (inclusive) to to
+         * (exclusive)
+         *
+         * @param step the phase to run
+         * @param from the first region
+         * @param to the region after the last
+         */
+        Phase(Step step, int from, int to) {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Phase(step, from, middle), new Phase(step, middle, to));
+                return;
+            }
+            switch (step) {
+                case SUMMARISE -> summarise(from);
+                case TICK -> tickRegion(from);
+                case DELIVER -> deliver(from);
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package lms.simulation;
+
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.Arrays;
+
+/**
+ * Ticks a straight path of a TickPlan as runs of full slots, rather than transport by
+ * transport.
+ * <p>
+ * The path has the same shape as a BitsetLine. Slot 0 is its tail and every run of full
+ * slots with an empty slot in front of it moves forward by one each tick, so every run
+ * moves at once. The runs are kept in a deque, from the tail up, with their bounds offset
+ * by the number of ticks run, which moves all of them in a single step. A run that
+ * reaches the tail of a path without a Receiver can never move again, and is folded into
+ * a count of the jammed slots at the tail. A tick only looks at the runs at either end of
+ * the path, so a long line costs no more to tick than a short one.
+ * <p>
+ * Deliveries are added to the Receiver as they happen. While the simulation has
+ * listeners, the line is ticked with somewhere to report its changes, and then it also
+ * writes the slots that changed into their transports as it goes: each run that moves
+ * fills the slot below it and empties its top slot, so this costs time in proportion to
+ * the number of runs. Everything else stays in the line until writeBack() is called,
+ * including the item moved, stall and produced counts of
+ * the transports. Each slot holds at most one item, so the items a belt moved are the
+ * items moved into it, plus the item it started with, less the item it ends with,
+ * which gives every belt's count from the producer's count in one pass down the line.
+ * A belt only stalls once it is part of the jam at the tail of a line without a
+ * Receiver, so the line keeps the tick at which each run joined the jam.
+ *
+ * @see BitsetLine
+ */
+class RunLengthLine {
+
+    /**
+     * The transports of the line, from tail to head
+     */
+    private final Transport[] transports;
+
+    /**
+     * The plan index of the tail of the line
+     */
+    private final int start;
+
+    /**
+     * The only item that can be on the line
+     */
+    private final Item item;
+
+    /**
+     * The Producer at the head of the line, or null if there is none
+     */
+    private final Producer producer;
+
+    /**
+     * The Receiver at the tail of the line, or null if there is none
+     */
+    private final Receiver receiver;
+
+    /**
+     * The number of slots the runs can be in, which is every slot but the producer's
+     */
+    private final int slots;
+
+    /**
+     * The first slot of each run plus shift, in a circular buffer
+     */
+    private long[] starts;
+
+    /**
+     * The slot after the last of each run plus shift, in a circular buffer
+     */
+    private long[] ends;
+
+    /**
+     * The index in the buffers of the run nearest the tail
+     */
+    private int first;
+
+    /**
+     * The number of runs in the buffers
+     */
+    private int count;
+
+    /**
+     * The number of slots every run in the buffers has moved
+     */
+    private long shift;
+
+    /**
+     * The number of full slots jammed at the tail of a line without a Receiver
+     */
+    private int jammed;
+
+    /**
+     * Whether the producer holds an item
+     */
+    private boolean producerFull;
+
+    /**
+     * The counter of the producer
+     */
+    private int counter;
+
+    /**
+     * Whether each slot was full when the counts were last written back
+     */
+    private final boolean[] written;
+
+    /**
+     * The number of ticks run since the line was created
+     */
+    private long ticks;
+
+    /**
+     * The slot after the last jammed slot after each time the jam grew, since the counts
+     * were last written back
+     */
+    private int[] jamEnds;
+
+    /**
+     * The tick count at each time the jam grew, the jammed slots stalling on every tick
+     * after it
+     */
+    private long[] jamTicks;
+
+    /**
+     * The number of times the jam grew since the counts were last written back
+     */
+    private int jamCount;
+
+    /**
+     * The items moved by the producer since the counts were last written back
+     */
+    private long producerMoved;
+
+    /**
+     * The ticks the producer stalled since the counts were last written back
+     */
+    private long producerStalled;
+
+    /**
+     * The items produced since the counts were last written back
+     */
+    private long produced;
+
+    /**
+     * Creates a line for a path of a plan, starting from the current state of its
+     * transports
+     *
+     * @param plan the plan holding the path
+     * @param path the index of the path
+     * @requires BitsetLine.supports(plan, path)
+     */
+    RunLengthLine(TickPlan plan, int path) {
+        start = plan.getPathStart(path);
+        transports = new Transport[plan.getPathEnd(path) - start];
+        for (int i = 0; i < transports.length; i++) {
+            transports[i] = plan.getTransport(start + i);
+        }
+        item = BitsetLine.itemOf(transports);
+        int head = transports.length - 1;
+        producer = transports[head] instanceof Producer p ? p : null;
+        receiver = transports[0] instanceof Receiver r ? r : null;
+        slots = producer == null ? transports.length : head;
+        producerFull = producer != null && !producer.isEmpty();
+        counter = producer == null ? 0 : producer.getCounter();
+        starts = new long[8];
+        ends = new long[8];
+        jamEnds = new int[8];
+        jamTicks = new long[8];
+        written = new boolean[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            written[slot] = !transports[slot].isEmpty();
+        }
+        int slot = 0;
+        if (receiver == null) {
+            while (slot < slots && !transports[slot].isEmpty()) {
+                slot++;
+            }
+            if (slot > 0) {
+                jam(slot);
+            }
+        }
+        while (slot < slots) {
+            if (transports[slot].isEmpty()) {
+                slot++;
+                continue;
+            }
+            int runStart = slot;
+            while (slot < slots && !transports[slot].isEmpty()) {
+                slot++;
+            }
+            addLast(runStart, slot);
+        }
+    }
+
+    /**
+     * Returns the number of runs of full slots on the line, not counting the producer
+     *
+     * @return the number of runs
+     */
+    int getRunCount() {
+        return count + (jammed > 0 ? 1 : 0);
+    }
+
+    /**
+     * Ticks the line once, with the same result as ticking its transports from tail to
+     * head
+     *
+     * @param movers where to report the transports that change, which also makes the
+     *               line write them through, or null to keep them in the line
+     */
+    void tick(ChangeTracker.Movers movers) {
+        ticks++;
+        boolean consumed = false;
+        if (receiver != null && count > 0 && starts[first] == shift) {
+            // the receiver consumes the item at the tail
+            receiver.addReceived(1);
+            consumed = true;
+            if (++starts[first] == ends[first]) {
+                removeFirst();
+            }
+        }
+        // every run in the buffers has an empty slot in front of it
+        shift++;
+        if (movers != null) {
+            writeMoves(movers, consumed);
+        }
+        while (receiver == null && count > 0 && starts[first] - shift == jammed) {
+            jam(jammed + (int) (ends[first] - starts[first]));
+            removeFirst();
+        }
+        if (producer != null) {
+            counter = (counter + 1) % 2;
+            if (counter == 1) {
+                if (!producerFull) {
+                    produced++;
+                    if (movers != null) {
+                        producer.restoreInventory(item);
+                        movers.changed(start + slots);
+                    }
+                } else if (slots > 0 && top() < slots) {
+                    addLast(slots - 1, slots);
+                    producerMoved++;
+                    produced++;
+                    if (movers != null) {
+                        // the producer refills straight away
+                        transports[slots - 1].restoreInventory(item);
+                        movers.moved(start + slots);
+                    }
+                } else if (slots > 0) {
+                    producerStalled++;
+                }
+                producerFull = true;
+            }
+            if (movers != null) {
+                producer.setCounter(counter);
+            }
+        }
+    }
+
+    /**
+     * Writes the slots changed by the runs moving forward into their transports, and
+     * reports them
+     *
+     * @param movers where to report the changed transports
+     * @param consumed whether the receiver consumed an item this tick
+     */
+    private void writeMoves(ChangeTracker.Movers movers, boolean consumed) {
+        if (consumed && (count == 0 || starts[first] - shift > 0)) {
+            // nothing moved into the receiver behind the item it consumed
+            receiver.restoreInventory(null);
+            movers.changed(start);
+        }
+        for (int i = 0; i < count; i++) {
+            int run = (first + i) & (starts.length - 1);
+            int filled = (int) (starts[run] - shift);
+            int emptied = (int) (ends[run] - shift);
+            transports[filled].restoreInventory(item);
+            transports[emptied].restoreInventory(null);
+            movers.changed(start + filled);
+            movers.changed(start + emptied);
+        }
+    }
+
+    /**
+     * Copies the state of the line back into its transports, and adds the items moved,
+     * ticks stalled and items produced since the last time to their counts
+     */
+    void writeBack() {
+        for (int slot = 0; slot < slots; slot++) {
+            transports[slot].restoreInventory(slot < jammed ? item : null);
+        }
+        for (int i = 0; i < count; i++) {
+            int run = (first + i) & (starts.length - 1);
+            for (long slot = starts[run] - shift; slot < ends[run] - shift; slot++) {
+                transports[(int) slot].restoreInventory(item);
+            }
+        }
+        writeBackCounts();
+        if (producer != null) {
+            producer.restoreInventory(producerFull ? item : null);
+            producer.setCounter(counter);
+            producer.addItemsMoved(producerMoved);
+            producer.addTicksStalled(producerStalled);
+            producer.addItemsProduced(produced);
+            producerMoved = 0;
+            producerStalled = 0;
+            produced = 0;
+        }
+    }
+
+    /**
+     * Adds the items moved and ticks stalled by the belts since the last write back to
+     * their counts
+     */
+    private void writeBackCounts() {
+        // a receiver in slot 0 consumes its item rather than moving it
+        long entered = producerMoved;
+        for (int slot = slots - 1; slot > 0; slot--) {
+            boolean full = !transports[slot].isEmpty();
+            long left = entered + (written[slot] ? 1 : 0) - (full ? 1 : 0);
+            transports[slot].addItemsMoved(left);
+            written[slot] = full;
+            entered = left;
+        }
+        if (slots > 0) {
+            written[0] = !transports[0].isEmpty();
+        }
+        // slot 0 is the tail, which has nowhere to move its item
+        int from = 1;
+        for (int i = 0; i < jamCount; i++) {
+            for (int slot = from; slot < jamEnds[i]; slot++) {
+                transports[slot].addTicksStalled(ticks - jamTicks[i]);
+            }
+            from = Math.max(from, jamEnds[i]);
+        }
+        jamCount = 0;
+        if (jammed > 0) {
+            // the jammed slots stall again from the next tick
+            jam(jammed);
+        }
+    }
+
+    /**
+     * Returns the slot after the highest full slot below the producer
+     *
+     * @return the end of the highest run, or 0 if there are none
+     */
+    private int top() {
+        if (count == 0) {
+            return jammed;
+        }
+        return (int) (ends[(first + count - 1) & (ends.length - 1)] - shift);
+    }
+
+    /**
+     * Adds full slots above the highest run, joining them to it if they touch
+     *
+     * @param start the first slot to add
+     * @param end the slot after the last one to add
+     */
+    private void addLast(int start, int end) {
+        if (count == 0 && receiver == null && start == jammed) {
+            jam(end);
+            return;
+        }
+        int last = (first + count - 1) & (ends.length - 1);
+        if (count > 0 && ends[last] - shift == start) {
+            ends[last] = end + shift;
+            return;
+        }
+        if (count == starts.length) {
+            grow();
+        }
+        int next = (first + count) & (starts.length - 1);
+        starts[next] = start + shift;
+        ends[next] = end + shift;
+        count++;
+    }
+
+    /**
+     * Grows the jam at the tail, whose slots stall on every tick after this one
+     *
+     * @param end the slot after the last jammed slot
+     */
+    private void jam(int end) {
+        jammed = end;
+        if (jamCount == jamEnds.length) {
+            jamEnds = Arrays.copyOf(jamEnds, jamCount * 2);
+            jamTicks = Arrays.copyOf(jamTicks, jamCount * 2);
+        }
+        jamEnds[jamCount] = end;
+        jamTicks[jamCount] = ticks;
+        jamCount++;
+    }
+
+    /**
+     * Removes the run nearest the tail
+     */
+    private void removeFirst() {
+        first = (first + 1) & (starts.length - 1);
+        count--;
+    }
+
+    /**
+     * Doubles the size of the buffers, keeping the runs in order
+     */
+    private void grow() {
+        long[] newStarts = new long[starts.length * 2];
+        long[] newEnds = new long[ends.length * 2];
+        for (int i = 0; i < count; i++) {
+            int run = (first + i) & (starts.length - 1);
+            newStarts[i] = starts[run];
+            newEnds[i] = ends[run];
+        }
+        starts = newStarts;
+        ends = newEnds;
+        first = 0;
+    }
+}
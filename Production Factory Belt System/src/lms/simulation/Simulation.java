@@ -0,0 +1,513 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.grid.GameGrid;
+import lms.logistics.Transport;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the factory on a GameGrid one tick at a time.
+ * <p>
+ * The paths of the grid are compiled into a TickPlan the first time the simulation
+ * ticks, and only compiled again once a link or a grid component has changed, so a
+ * tick on an unchanged grid just runs through the compiled schedule.
+ * <p>
+ * In TickMode.PARALLEL, the independent groups of paths in the plan are ticked on a
+ * fork-join pool. The paths of each group are still ticked in plan order, so the grid
+ * ends up the same as after a sequential tick, whatever the number of threads.
+ * <p>
+ * In TickMode.ACTIVE, only the transports whose state can change are ticked, so a tick
+ * costs time in proportion to the number of moving items rather than the size of the
+ * grid. Call wakeAll() after changing inventories from outside the simulation.
+ * <p>
+ * In TickMode.PARTITIONED, the grid is split into one region of rows for each thread of
+ * the pool, so that even a single path that runs across the whole grid is shared out.
+ * <p>
+ * TickListeners are told about every tick, with the transports whose inventory changed,
+ * so that a view only has to redraw what moved.
+ * <p>
+ * In TickMode.SEQUENTIAL, straight paths of at least RUN_LENGTH_MIN transports are
+ * ticked as RunLengthLines, which only keep track of the runs of full belts, and shorter
+ * ones of at least BITSET_MIN transports as BitsetLines, which tick 64 belts with a
+ * few word operations. Their receivers are given their deliveries every tick, but the item moved, stall and
+ * produced counts of their transports are only brought up to date by getGrid(), as are
+ * their inventories while there are no listeners, so call it before looking at or
+ * changing the transports between ticks. Turn on setLiveCounters() to have the counts
+ * brought up to date every LIVE_COUNT_TICKS ticks on the ticking thread, and published
+ * for other threads to read.
+ *
+ * @see TickPlan
+ * @see TickMode
+ * @see ActiveSet
+ * @see RunLengthLine
+ * @see BitsetLine
+ * @see PartitionedTick
+ */
+public class Simulation {
+
+    /**
+     * The shortest straight path that is ticked as a RunLengthLine
+     */
+    static final int RUN_LENGTH_MIN = 256;
+
+    /**
+     * The shortest straight path that is ticked as a BitsetLine, below which ticking the
+     * transports one by one costs no more than a word of the bitset
+     */
+    static final int BITSET_MIN = 64;
+
+    /**
+     * The number of ticks between bringing the counts of the lines and of the
+     * transports left asleep in TickMode.ACTIVE up to date, while the counters are live.
+     * Doing it on every tick would cost as much as ticking them one by one.
+     */
+    static final int LIVE_COUNT_TICKS = 64;
+
+    /**
+     * The GameGrid being simulated
+     */
+    private final GameGrid grid;
+
+    /**
+     * The compiled schedule, or null if it has not been compiled yet
+     */
+    private TickPlan plan;
+
+    /**
+     * The transports to tick in TickMode.ACTIVE, or null if they have to be found again
+     */
+    private ActiveSet active;
+
+    /**
+     * The regions ticked in TickMode.PARTITIONED, or null if they have to be found again
+     */
+    private PartitionedTick partitioned;
+
+    /**
+     * The RunLengthLine of each path of the plan, null for paths ticked normally, or
+     * null if they have to be built again
+     */
+    private RunLengthLine[] lines;
+
+    /**
+     * The BitsetLine of each path of the plan, null for paths ticked otherwise, built
+     * along with the RunLengthLines
+     */
+    private BitsetLine[] bitsetLines;
+
+    /**
+     * The plan the lines were built for
+     */
+    private TickPlan linesPlan;
+
+    /**
+     * The listeners told about every tick
+     */
+    private final List<TickListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Collects the transports changed by each tick, or null while there are no listeners
+     */
+    private ChangeTracker tracker;
+
+    /**
+     * The number of ticks that have been run
+     */
+    private long ticks;
+
+    /**
+     * The tick count when the counts were last brought up to date while the counters are
+     * live. It is written after the counts, so a thread that reads it sees them.
+     */
+    private volatile long publishedTick;
+
+    /**
+     * How each tick is run
+     */
+    private TickMode mode;
+
+    /**
+     * The pool that runs parallel ticks
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Whether the counts of the transports are read while ticking, so that they are
+     * brought up to date and published every LIVE_COUNT_TICKS ticks
+     */
+    private boolean liveCounters;
+
+    /**
+     * Creates a new sequential Simulation of the given GameGrid
+     *
+     * @param grid the GameGrid to simulate
+     */
+    public Simulation(GameGrid grid) {
+        this(grid, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new sequential Simulation of the given GameGrid, which uses the given
+     * pool when it is switched to TickMode.PARALLEL
+     *
+     * @param grid the GameGrid to simulate
+     * @param pool the pool to run parallel ticks on
+     */
+    public Simulation(GameGrid grid, ForkJoinPool pool) {
+        this.grid = grid;
+        this.pool = pool;
+        this.plan = null;
+        this.ticks = 0;
+        this.mode = TickMode.SEQUENTIAL;
+    }
+
+    /**
+     * Returns how each tick is run
+     *
+     * @return the tick mode
+     */
+    public TickMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets how each tick is run. Switching to TickMode.ACTIVE starts with every
+     * transport active.
+     *
+     * @param mode the tick mode
+     */
+    public void setMode(TickMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException();
+        }
+        syncLines();
+        this.mode = mode;
+        this.active = null;
+        this.partitioned = null;
+    }
+
+    /**
+     * Sets whether the item moved, stall and produced counts of the transports are read
+     * while the simulation is ticking, from another thread or between ticks without
+     * calling getGrid(). While they are, every LIVE_COUNT_TICKS ticks the RunLengthLines
+     * and BitsetLines write their state back and the stalls of the transports left
+     * asleep in TickMode.ACTIVE are counted, on the ticking thread, and the counts are
+     * published through getPublishedTick(). This costs each line one pass over its
+     * transports every LIVE_COUNT_TICKS ticks, so the lines stay in use.
+     *
+     * @param liveCounters whether the counts must be kept up to date while ticking
+     */
+    public void setLiveCounters(boolean liveCounters) {
+        syncLines();
+        this.liveCounters = liveCounters;
+    }
+
+    /**
+     * Makes every transport active for the next tick in TickMode.ACTIVE, which is
+     * needed after inventories are changed from outside the simulation
+     */
+    public void wakeAll() {
+        if (active != null) {
+            active.wakeAll();
+        }
+    }
+
+    /**
+     * Returns the GameGrid being simulated, with every inventory up to date
+     *
+     * @return the simulated GameGrid
+     */
+    public GameGrid getGrid() {
+        syncLines();
+        return grid;
+    }
+
+    /**
+     * Returns the number of ticks that have been run
+     *
+     * @return the tick count
+     */
+    public long getTickCount() {
+        return ticks;
+    }
+
+    /**
+     * Returns the tick count when the counts of the transports were last brought up to
+     * date, while the counters are live. A thread that calls this sees every count as of
+     * that tick; the counts of transports that are ticked one by one can be newer, and
+     * the others are at most LIVE_COUNT_TICKS ticks behind the simulation.
+     *
+     * @return the tick the counts were last published at, or 0 if they never have been
+     * @see #setLiveCounters(boolean)
+     */
+    public long getPublishedTick() {
+        return publishedTick;
+    }
+
+    /**
+     * Sets the number of ticks that have been run, to restore a saved state
+     *
+     * @param ticks the tick count
+     */
+    void restoreTickCount(long ticks) {
+        this.ticks = ticks;
+    }
+
+    /**
+     * Returns the current TickPlan, compiling it again if the grid has changed
+     *
+     * @return the up-to-date TickPlan
+     */
+    public TickPlan getPlan() {
+        if (plan == null || !plan.isCurrent(grid)) {
+            plan = TickPlan.compile(grid);
+        }
+        return plan;
+    }
+
+    /**
+     * Ticks every transport once, path by path from tail to head.
+     * <p>
+     * If a path is in a bad state, the rest of that path is skipped for this tick and
+     * the other paths still tick.
+     */
+    public void tick() {
+        TickPlan plan = getPlan();
+        if (listeners.isEmpty()) {
+            tracker = null;
+        } else if (tracker == null || tracker.getPlan() != plan) {
+            // the lines only write their changes through while they are tracked
+            syncLines();
+            tracker = new ChangeTracker(plan);
+        }
+        ChangeTracker.Movers movers = movers();
+        if (mode == TickMode.PARALLEL && plan.getGroupCount() > 1) {
+            pool.invoke(new ParallelTick(this, plan, 0, plan.getGroupCount()));
+        } else if (mode == TickMode.ACTIVE) {
+            if (active == null || active.getPlan() != plan) {
+                syncLines();
+                active = new ActiveSet(plan);
+            }
+            active.tick(movers);
+        } else if (mode == TickMode.PARTITIONED) {
+            if (partitioned == null || partitioned.getPlan() != plan) {
+                partitioned = new PartitionedTick(this, plan, grid, pool,
+                        pool.getParallelism());
+            }
+            partitioned.tick();
+        } else {
+            RunLengthLine[] runLines = getLines(plan);
+            BitsetLine[] bitLines = bitsetLines;
+            for (int path = 0; path < plan.getPathCount(); path++) {
+                if (runLines[path] != null) {
+                    runLines[path].tick(movers);
+                } else if (bitLines[path] != null) {
+                    bitLines[path].tick(movers);
+                } else {
+                    tickPath(plan, path);
+                }
+            }
+        }
+        ticks++;
+        if (liveCounters && ticks % LIVE_COUNT_TICKS == 0) {
+            publishCounts();
+        }
+        if (tracker != null) {
+            Set<Transport> changed = tracker.collect();
+            for (TickListener listener : listeners) {
+                listener.ticked(ticks, changed);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener to be told about every tick, along with the transports whose
+     * inventory changed during it
+     *
+     * @param listener the listener to add
+     */
+    public void addTickListener(TickListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException();
+        }
+        if (listeners.isEmpty()) {
+            // only report the changes from the next tick on
+            tracker = null;
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addTickListener()
+     *
+     * @param listener the listener to remove
+     */
+    public void removeTickListener(TickListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Runs the given number of ticks, skipping whole cycles once the simulation starts
+     * repeating itself.
+     * <p>
+     * The state is checked for a cycle after every tick. Once a cycle is found, as many
+     * whole cycles as fit are skipped at once, with each Receiver given the items it would
+     * have received in them and each transport's counts increased by what they would have
+     * counted, and the remaining ticks are run normally. The grid ends up
+     * the same as after ticking the given number of times, so a very large number of ticks
+     * takes about as long as the simulation takes to settle into its cycle.
+     *
+     * @param count the number of ticks to run
+     * @throws IllegalArgumentException if count is negative
+     * @see CycleDetector
+     */
+    public void advance(long count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative tick count");
+        }
+        long target = ticks + count;
+        syncLines();
+        CycleDetector detector = new CycleDetector(getPlan());
+        boolean skipped = false;
+        while (ticks < target) {
+            tick();
+            if (!skipped) {
+                // the detector reads the transports
+                syncLines();
+            }
+            if (!skipped && detector.observe()) {
+                long cycles = (target - ticks) / detector.getPeriod();
+                detector.skip(cycles);
+                ticks += cycles * detector.getPeriod();
+                skipped = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the RunLengthLines for a plan, building them and the BitsetLines if the
+     * plan has changed. A straight path of at least RUN_LENGTH_MIN transports becomes a
+     * RunLengthLine, and one of at least BITSET_MIN a BitsetLine.
+     *
+     * @param plan the plan being ticked
+     * @return the RunLengthLine of each path, null for paths that are ticked otherwise
+     */
+    private RunLengthLine[] getLines(TickPlan plan) {
+        if (linesPlan != plan) {
+            syncLines();
+            Map<Transport, Integer> inputs = null;
+            lines = new RunLengthLine[plan.getPathCount()];
+            bitsetLines = new BitsetLine[plan.getPathCount()];
+            for (int path = 0; path < plan.getPathCount(); path++) {
+                int length = plan.getPathEnd(path) - plan.getPathStart(path);
+                if (length < BITSET_MIN) {
+                    continue;
+                }
+                if (inputs == null) {
+                    inputs = plan.countInputs();
+                }
+                if (!BitsetLine.supports(plan, path, inputs)) {
+                    continue;
+                }
+                if (length >= RUN_LENGTH_MIN) {
+                    lines[path] = new RunLengthLine(plan, path);
+                } else {
+                    bitsetLines[path] = new BitsetLine(plan, path);
+                }
+            }
+            linesPlan = plan;
+        }
+        return lines;
+    }
+
+    /**
+     * Brings the counts of the lines and of the transports the ActiveSet left asleep up
+     * to date, keeping the lines, and publishes them to other threads
+     */
+    private void publishCounts() {
+        writeBackLines();
+        publishedTick = ticks;
+    }
+
+    /**
+     * Writes the state of the lines back into their transports, and drops them so that
+     * they are built again from the transports on the next tick. The stalls of the
+     * transports the ActiveSet left asleep are counted as well.
+     */
+    private void syncLines() {
+        writeBackLines();
+        lines = null;
+        bitsetLines = null;
+        linesPlan = null;
+    }
+
+    /**
+     * Writes the state and counts of the RunLengthLines and BitsetLines back into their
+     * transports, along with the stalls of the transports the ActiveSet left asleep
+     */
+    private void writeBackLines() {
+        if (active != null) {
+            active.flushStalls();
+        }
+        if (lines != null) {
+            for (RunLengthLine line : lines) {
+                if (line != null) {
+                    line.writeBack();
+                }
+            }
+        }
+        if (bitsetLines != null) {
+            for (BitsetLine line : bitsetLines) {
+                if (line != null) {
+                    line.writeBack();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the tracker that collected the transports changed by the last tick, for
+     * listeners that want their indices rather than the transports
+     *
+     * @return the tracker, or null if there are no listeners
+     */
+    ChangeTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * Returns where the thread ticking part of the plan reports the transports that move
+     *
+     * @return the Movers of the current thread, or null if there are no listeners
+     */
+    ChangeTracker.Movers movers() {
+        ChangeTracker tracking = tracker;
+        return tracking == null ? null : tracking.movers();
+    }
+
+    /**
+     * Ticks the transports of one path of the plan, from tail to head
+     *
+     * @param plan the plan being ticked
+     * @param path the index of the path
+     */
+    void tickPath(TickPlan plan, int path) {
+        ChangeTracker.Movers movers = movers();
+        try {
+            for (int i = plan.getPathStart(path); i < plan.getPathEnd(path); i++) {
+                if (movers == null) {
+                    plan.getTransport(i).tick();
+                } else {
+                    movers.tick(plan, i);
+                }
+            }
+        } catch (BadStateException bse) {
+            System.err.println("Tick could not be processed:" + bse);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package lms.simulation;
+
+import lms.logistics.Transport;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs a Simulation on its own thread, and publishes InventorySnapshots for a view to
+ * draw from.
+ * <p>
+ * Once started, only the runner's thread touches the simulation. The thread ticks at the
+ * configured rate, or as fast as it can if the rate is not positive, and does nothing
+ * while the pause condition holds.
+ * <p>
+ * Snapshots are only taken when the view asks for one with requestSnapshot(), so an
+ * unthrottled simulation is not slowed down by taking a snapshot every tick. Each
+ * snapshot carries every transport that changed since the one before, so a view that
+ * only repaints the changes does not miss any. The listener is called on the runner's
+ * thread, and should hand the snapshot over to the view's own thread.
+ */
+public class SimulationRunner {
+
+    /**
+     * How long to wait before checking the pause condition again, in milliseconds
+     */
+    private static final long PAUSE_CHECK_MILLIS = 10;
+
+    /**
+     * The simulation being run
+     */
+    private final Simulation simulation;
+
+    /**
+     * Whether the simulation is paused
+     */
+    private final BooleanSupplier paused;
+
+    /**
+     * Told about every new snapshot
+     */
+    private final Consumer<InventorySnapshot> listener;
+
+    /**
+     * Whether the view is ready for another snapshot
+     */
+    private final AtomicBoolean requested = new AtomicBoolean(false);
+
+    /**
+     * The transports changed since the last snapshot, or null once there are so many
+     * that everything is treated as changed. Only used by the runner's thread.
+     */
+    private Set<Transport> changed;
+
+    /**
+     * The latest snapshot
+     */
+    private volatile InventorySnapshot snapshot;
+
+    /**
+     * The number of nanoseconds between ticks, or 0 to run unthrottled
+     */
+    private volatile long tickNanos;
+
+    /**
+     * The thread running the simulation, or null if it has not been started
+     */
+    private Thread thread;
+
+    /**
+     * Whether the thread should keep running
+     */
+    private volatile boolean running;
+
+    /**
+     * Creates a runner for a simulation
+     *
+     * @param simulation the simulation to run
+     * @param ticksPerSecond the tick rate, or a number that is not positive to run
+     *                       unthrottled
+     * @param paused whether the simulation is paused, checked before every tick
+     * @param listener told on the runner's thread each time a snapshot is published
+     */
+    public SimulationRunner(Simulation simulation, double ticksPerSecond,
+                            BooleanSupplier paused, Consumer<InventorySnapshot> listener) {
+        this.simulation = simulation;
+        this.paused = paused;
+        this.listener = listener;
+        setTicksPerSecond(ticksPerSecond);
+        simulation.addTickListener(this::record);
+    }
+
+    /**
+     * Sets the tick rate, which takes effect from the next tick
+     *
+     * @param ticksPerSecond the tick rate, or a number that is not positive to run
+     *                       unthrottled
+     */
+    public void setTicksPerSecond(double ticksPerSecond) {
+        this.tickNanos = ticksPerSecond > 0
+                ? Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ticksPerSecond)) : 0;
+    }
+
+    /**
+     * Publishes a snapshot of the current state and starts the simulation thread
+     *
+     * @throws IllegalStateException if the runner has already been started
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        changed = null;
+        publish();
+        running = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits for it to finish its tick
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        Thread running;
+        synchronized (this) {
+            running = thread;
+            this.running = false;
+        }
+        if (running != null) {
+            LockSupport.unpark(running);
+            running.join();
+        }
+    }
+
+    /**
+     * Returns the latest snapshot
+     *
+     * @return the latest snapshot, or null if the runner has not been started
+     */
+    public InventorySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Asks for a snapshot to be taken after the next tick. Call this once the previous
+     * snapshot has been drawn.
+     */
+    public void requestSnapshot() {
+        requested.set(true);
+    }
+
+    /**
+     * The loop run by the simulation thread
+     */
+    private void run() {
+        long next = System.nanoTime();
+        while (running) {
+            if (paused.getAsBoolean()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(PAUSE_CHECK_MILLIS));
+                next = System.nanoTime();
+                continue;
+            }
+            long period = tickNanos;
+            if (period > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                // don't try to catch up on ticks missed while running slow
+                next = Math.max(next + period, System.nanoTime() - period);
+            }
+            try {
+                simulation.tick();
+            } catch (RuntimeException e) {
+                System.err.println("Simulation stopped:" + e);
+                running = false;
+                return;
+            }
+            if (requested.compareAndSet(true, false)) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot, publishes it and tells the listener
+     */
+    private void publish() {
+        BitSet occupied = new BitSet();
+        TickPlan plan = simulation.getPlan();
+        for (int i = 0; i < plan.size(); i++) {
+            Transport transport = plan.getTransport(i);
+            if (transport.getId() >= 0 && transport.getInventory() != null) {
+                occupied.set(transport.getId());
+            }
+        }
+        snapshot = new InventorySnapshot(simulation.getTickCount(), occupied, changed);
+        changed = new HashSet<>();
+        listener.accept(snapshot);
+    }
+
+    /**
+     * Adds the transports changed by a tick to the changes for the next snapshot
+     *
+     * @param tick the number of ticks run
+     * @param tickChanged the transports changed by the tick
+     */
+    private void record(long tick, Set<Transport> tickChanged) {
+        if (changed == null) {
+            return;
+        }
+        changed.addAll(tickChanged);
+        if (changed.size() > Math.max(64, simulation.getPlan().size() / 4)) {
+            // cheaper to redraw everything than to keep track
+            changed = null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package lms.simulation;
+
+import lms.logistics.Transport;
+
+import java.util.Set;
+
+/**
+ * Listens for the ticks of a Simulation
+ *
+ * @see Simulation#addTickListener(TickListener)
+ */
+@FunctionalInterface
+public interface TickListener {
+
+    /**
+     * Called on the ticking thread after every tick
+     *
+     * @param tick the number of ticks run so far, including this one
+     * @param changed the transports whose inventory changed during the tick, which
+     *                is read-only and only valid until this method returns
+     */
+    void ticked(long tick, Set<Transport> changed);
+}
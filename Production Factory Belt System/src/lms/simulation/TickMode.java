@@ -0,0 +1,35 @@
+package lms.simulation;
+
+/**
+ * The ways a Simulation can run a tick
+ */
+public enum TickMode {
+    /**
+     * Every path is ticked one after another on the calling thread
+     */
+    SEQUENTIAL,
+
+    /**
+     * Independent groups of paths are ticked at the same time on a fork-join pool,
+     * with the same result as a sequential tick
+     */
+    PARALLEL,
+
+    /**
+     * Only the transports whose state can change are ticked, with the same result as
+     * a sequential tick.
+     * <p>
+     * Keeping track of the active transports costs more per transport than a sequential
+     * tick, so this only pays off when most of the grid is idle or jammed, such as a
+     * factory whose receivers are backed up. A grid where most belts move on every tick
+     * is faster in SEQUENTIAL.
+     */
+    ACTIVE,
+
+    /**
+     * The grid is split into regions of rows, each ticked at the same time on a
+     * fork-join pool, with items that cross between regions handed over once every
+     * region has ticked. The result is the same as a sequential tick.
+     */
+    PARTITIONED;
+}
@@ -0,0 +1,376 @@
+package lms.simulation;
+
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled tick schedule for the transports on a GameGrid.
+ * <p>
+ * Every path is flattened into one array, from its tail back to its head, which is the
+ * order Path#applyAll() relies on to move items along. The paths are concatenated in
+ * order of their tail's id, so the schedule is the same every time it is compiled.
+ * A plan only describes the links that existed when it was compiled, use isCurrent()
+ * to check whether it needs to be compiled again.
+ * <p>
+ * Paths that can move items into each other are put in the same group. Different groups
+ * share no transports, so they can be ticked at the same time, while the paths of a group
+ * have to be ticked one after another in plan order. Groups are numbered by their first
+ * path, which keeps the grouping stable between compilations.
+ *
+ * @see Path#applyAll(java.util.function.Consumer)
+ */
+public class TickPlan {
+
+    /**
+     * The transports of every path, each path ordered from tail to head
+     */
+    private final Transport[] order;
+
+    /**
+     * The index into order that each path starts at, with one extra entry for the end
+     */
+    private final int[] pathStarts;
+
+    /**
+     * The paths of every group, each group in plan order
+     */
+    private final int[] groupPaths;
+
+    /**
+     * The index into groupPaths that each group starts at, with one extra entry for the end
+     */
+    private final int[] groupStarts;
+
+    /**
+     * The number of transports in all the groups before each group, with one extra
+     * entry for the total
+     */
+    private final int[] groupWeights;
+
+    /**
+     * The link version of Path when the plan was compiled
+     */
+    private final long linkVersion;
+
+    /**
+     * The modification count of the GameGrid when the plan was compiled
+     */
+    private final int gridVersion;
+
+    /**
+     * Creates a new TickPlan from an already compiled schedule
+     *
+     * @param order the transports of every path, each path ordered from tail to head
+     * @param pathStarts the index each path starts at, followed by order.length
+     * @param pathGroups the group of every path
+     * @param linkVersion the link version the schedule was compiled from
+     * @param gridVersion the grid modification count the schedule was compiled from
+     */
+    private TickPlan(Transport[] order, int[] pathStarts, int[] pathGroups,
+                     long linkVersion, int gridVersion) {
+        this.order = order;
+        this.pathStarts = pathStarts;
+        this.linkVersion = linkVersion;
+        this.gridVersion = gridVersion;
+
+        int paths = pathGroups.length;
+        int groups = 0;
+        for (int group : pathGroups) {
+            groups = Math.max(groups, group + 1);
+        }
+        groupStarts = new int[groups + 1];
+        for (int group : pathGroups) {
+            groupStarts[group + 1]++;
+        }
+        for (int group = 0; group < groups; group++) {
+            groupStarts[group + 1] += groupStarts[group];
+        }
+        groupPaths = new int[paths];
+        int[] fill = groupStarts.clone();
+        for (int path = 0; path < paths; path++) {
+            groupPaths[fill[pathGroups[path]]++] = path;
+        }
+        groupWeights = new int[groups + 1];
+        for (int group = 0; group < groups; group++) {
+            int weight = 0;
+            for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+                weight += getPathEnd(groupPaths[i]) - getPathStart(groupPaths[i]);
+            }
+            groupWeights[group + 1] = groupWeights[group] + weight;
+        }
+    }
+
+    /**
+     * Compiles the paths of the given GameGrid into a TickPlan.
+     * <p>
+     * Each path is found by walking back from a tail (a transport without an output)
+     * to its head. A transport is only scheduled once, if a walk reaches a transport
+     * that is already scheduled, the walk stops there.
+     *
+     * @param grid the GameGrid to compile
+     * @return the compiled TickPlan
+     */
+    public static TickPlan compile(GameGrid grid) {
+        long linkVersion = Path.getLinkVersion();
+        int gridVersion = grid.getModificationCount();
+
+        List<Transport> tails = new ArrayList<>();
+        int transports = 0;
+        for (GridComponent component : grid.getPlacedView().values()) {
+            if (component instanceof Transport transport) {
+                transports++;
+                if (transport.getOutput() == null) {
+                    tails.add(transport);
+                }
+            }
+        }
+        tails.sort(Comparator.comparingInt(Transport::getId));
+
+        Transport[] order = new Transport[transports];
+        int[] pathStarts = new int[tails.size() + 1];
+        Map<Transport, Boolean> scheduled = new IdentityHashMap<>();
+        int index = 0;
+        for (int i = 0; i < tails.size(); i++) {
+            pathStarts[i] = index;
+            Path path = tails.get(i).getPath();
+            while (path != null && scheduled.put(path.getNode(), Boolean.TRUE) == null) {
+                order[index++] = path.getNode();
+                path = path.getPrevious();
+            }
+        }
+        pathStarts[tails.size()] = index;
+
+        Transport[] compact = new Transport[index];
+        System.arraycopy(order, 0, compact, 0, index);
+        return new TickPlan(compact, pathStarts, groupPaths(compact, pathStarts),
+                linkVersion, gridVersion);
+    }
+
+    /**
+     * Works out which paths have to be ticked together. A transport moves items into
+     * its output, so a path is grouped with every path holding one of its outputs.
+     *
+     * @param order the transports of every path, each path ordered from tail to head
+     * @param pathStarts the index each path starts at, followed by order.length
+     * @return the group of every path, numbered in order of each group's first path
+     */
+    private static int[] groupPaths(Transport[] order, int[] pathStarts) {
+        int paths = pathStarts.length - 1;
+        Map<Transport, Integer> owners = new IdentityHashMap<>();
+        for (int path = 0; path < paths; path++) {
+            for (int i = pathStarts[path]; i < pathStarts[path + 1]; i++) {
+                owners.put(order[i], path);
+            }
+        }
+        int[] parents = new int[paths];
+        for (int path = 0; path < paths; path++) {
+            parents[path] = path;
+        }
+        for (int path = 0; path < paths; path++) {
+            for (int i = pathStarts[path]; i < pathStarts[path + 1]; i++) {
+                Path output = order[i].getOutput();
+                if (output != null) {
+                    // outputs off the grid still join every path that feeds them
+                    Integer owner = owners.putIfAbsent(output.getNode(), path);
+                    if (owner != null) {
+                        union(parents, path, owner);
+                    }
+                }
+            }
+        }
+        // the representative of a set is its lowest path, so it is always numbered first
+        int[] groups = new int[paths];
+        int count = 0;
+        for (int path = 0; path < paths; path++) {
+            int root = find(parents, path);
+            groups[path] = root == path ? count++ : groups[root];
+        }
+        return groups;
+    }
+
+    /**
+     * Finds the representative of a path in a union-find forest, halving the
+     * paths along the way
+     *
+     * @param parents the parent of every path
+     * @param path the path to look up
+     * @return the representative of the path's set
+     */
+    private static int find(int[] parents, int path) {
+        while (parents[path] != path) {
+            parents[path] = parents[parents[path]];
+            path = parents[path];
+        }
+        return path;
+    }
+
+    /**
+     * Joins the sets of two paths in a union-find forest, keeping the lowest path
+     * as the representative
+     *
+     * @param parents the parent of every path
+     * @param first the first path
+     * @param second the second path
+     */
+    private static void union(int[] parents, int first, int second) {
+        int a = find(parents, first);
+        int b = find(parents, second);
+        if (a < b) {
+            parents[b] = a;
+        } else if (b < a) {
+            parents[a] = b;
+        }
+    }
+
+    /**
+     * Checks whether the plan still matches the links between paths and the contents
+     * of the given GameGrid
+     *
+     * @param grid the GameGrid the plan was compiled from
+     * @return true if nothing has changed since the plan was compiled, false otherwise
+     */
+    public boolean isCurrent(GameGrid grid) {
+        return linkVersion == Path.getLinkVersion()
+                && gridVersion == grid.getModificationCount();
+    }
+
+    /**
+     * Returns the number of transports in the plan
+     *
+     * @return the number of scheduled transports
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Returns the number of paths in the plan
+     *
+     * @return the number of paths
+     */
+    public int getPathCount() {
+        return pathStarts.length - 1;
+    }
+
+    /**
+     * Returns the index of the first transport (the tail) of the given path
+     *
+     * @param path the index of the path
+     * @return the index of the path's tail in the plan
+     */
+    public int getPathStart(int path) {
+        return pathStarts[path];
+    }
+
+    /**
+     * Returns the index one past the last transport (the head) of the given path
+     *
+     * @param path the index of the path
+     * @return the index after the path's head in the plan
+     */
+    public int getPathEnd(int path) {
+        return pathStarts[path + 1];
+    }
+
+    /**
+     * Returns the number of independent groups of paths in the plan
+     *
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        return groupStarts.length - 1;
+    }
+
+    /**
+     * Returns the number of paths in the given group
+     *
+     * @param group the index of the group
+     * @return the number of paths in the group
+     */
+    public int getGroupSize(int group) {
+        return groupStarts[group + 1] - groupStarts[group];
+    }
+
+    /**
+     * Returns a path of the given group, the paths of a group are in plan order
+     *
+     * @param group the index of the group
+     * @param index the index of the path within the group
+     * @return the index of the path in the plan
+     */
+    public int getGroupPath(int group, int index) {
+        return groupPaths[groupStarts[group] + index];
+    }
+
+    /**
+     * Returns the number of transports in all the groups before the given group
+     *
+     * @param group the index of the group, or getGroupCount() for the total
+     * @return the number of transports before the group
+     */
+    public int getGroupWeight(int group) {
+        return groupWeights[group];
+    }
+
+    /**
+     * Returns the transport scheduled at the given index
+     *
+     * @param index the index in the plan
+     * @return the transport at that index
+     */
+    public Transport getTransport(int index) {
+        return order[index];
+    }
+
+    /**
+     * Counts the transports of the plan that output into each transport
+     *
+     * @return the number of inputs of each transport that has any
+     */
+    Map<Transport, Integer> countInputs() {
+        Map<Transport, Integer> inputs = new IdentityHashMap<>();
+        for (Transport transport : order) {
+            Path output = transport.getOutput();
+            if (output != null) {
+                inputs.merge(output.getNode(), 1, Integer::sum);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Checks whether a path is a straight line, where each transport is fed by the one
+     * after it in the plan and by nothing else, and nothing feeds the head. Nothing
+     * ticked outside a straight path can change it, or be changed by it.
+     *
+     * @param path the index of the path
+     * @param inputs the number of inputs of each transport, from countInputs()
+     * @return true if the path is a straight line, false otherwise
+     */
+    boolean isStraight(int path, Map<Transport, Integer> inputs) {
+        int head = getPathEnd(path) - 1;
+        for (int i = getPathStart(path); i <= head; i++) {
+            Transport transport = order[i];
+            Path input = transport.getInput();
+            if (i == head) {
+                if (input != null || inputs.containsKey(transport)) {
+                    return false;
+                }
+            } else if (input == null || input.getNode() != order[i + 1]
+                    || inputs.getOrDefault(transport, 0) != 1
+                    || order[i + 1].getOutput() == null
+                    || order[i + 1].getOutput().getNode() != transport) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package lms.grid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Objects;
+
+import static org.junit.Assert.*;
+
+public class CoordinateTest {
+
+    private Coordinate origin;
+    private Coordinate other;
+
+    @Before
+    public void setup() {
+        origin = new Coordinate();
+        other = new Coordinate(-3, 5);
+    }
+
+    @Test
+    public void neighboursTest() {
+        assertEquals(new Coordinate(-1, 0, 1), origin.getLeft());
+        assertEquals(new Coordinate(1, 0, -1), origin.getRight());
+        assertEquals(new Coordinate(0, -1, 1), origin.getTopLeft());
+        assertEquals(new Coordinate(1, -1, 0), origin.getTopRight());
+        assertEquals(new Coordinate(-1, 1, 0), origin.getBottomLeft());
+        assertEquals(new Coordinate(0, 1, -1), origin.getBottomRight());
+    }
+
+    @Test
+    public void isNeighbourTest() {
+        for (Orientation orientation : Orientation.values()) {
+            assertTrue(other.isNeighbour(other.getNeighbour(orientation)));
+        }
+        assertFalse(other.isNeighbour(other));
+        assertFalse(origin.isNeighbour(new Coordinate(1, 1)));
+        assertFalse(origin.isNeighbour(new Coordinate(1, 0, 0)));
+    }
+
+    @Test
+    public void getDirectionTest() {
+        for (Orientation orientation : Orientation.values()) {
+            Coordinate step = other.getNeighbour(orientation);
+            assertEquals(orientation, other.getDirection(step));
+            assertEquals(orientation, other.getDirection(step.getNeighbour(orientation)));
+        }
+    }
+
+    @Test (expected = RuntimeException.class)
+    public void getDirectionNotStraightTest() {
+        origin.getDirection(new Coordinate(2, -1));
+    }
+
+    @Test (expected = RuntimeException.class)
+    public void getDirectionSameTest() {
+        origin.getDirection(origin);
+    }
+
+    @Test
+    public void hashCodeTest() {
+        assertEquals(Objects.hash(-3, 5, -2), other.hashCode());
+        assertEquals(new Coordinate(-3, 5, -2).hashCode(), other.hashCode());
+    }
+
+    @Test
+    public void packTest() {
+        long packed = other.pack();
+        assertEquals(-3, Coordinate.packedQ(packed));
+        assertEquals(5, Coordinate.packedR(packed));
+        assertEquals(other, Coordinate.unpack(packed));
+        assertEquals(Coordinate.pack(-3, 5), packed);
+        assertNotEquals(origin.pack(), packed);
+    }
+
+    @Test
+    public void packedNeighbourTest() {
+        for (Orientation orientation : Orientation.values()) {
+            long packed = Coordinate.neighbour(other.pack(), orientation);
+            assertEquals(other.getNeighbour(orientation), Coordinate.unpack(packed));
+            assertTrue(Coordinate.isNeighbour(other.pack(), packed));
+            assertEquals(orientation, Coordinate.getDirection(other.pack(), packed));
+        }
+        assertFalse(Coordinate.isNeighbour(origin.pack(), other.pack()));
+    }
+}
@@ -3,6 +3,8 @@ package lms.grid;
 import lms.logistics.belts.Belt;
 import org.junit.Before;
 import org.junit.Test;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -92,4 +94,85 @@ public class GameGridTest {
         emptyGame.setCoordinate(new Coordinate(0,0,0), new Belt(1));
         assertEquals(emptyGame, emptyGame2);
     }
+
+    @Test
+    public void gridSizeTest() {
+        assertEquals(37, emptyGame.getGrid().size());
+        assertEquals(37, emptyGame.getGridView().size());
+        assertEquals(37, emptyGame.getGridView().keySet().size());
+    }
+
+    @Test
+    public void viewMatchesCopyTest() {
+        emptyGame.setCoordinate(new Coordinate(-3, 1), new Belt(1));
+        assertEquals(emptyGame.getGrid(), emptyGame.getGridView());
+    }
+
+    @Test
+    public void viewSeesChangesTest() {
+        Map<Coordinate, GridComponent> view = emptyGame.getGridView();
+        Coordinate coord = new Coordinate(2, -3);
+        Belt belt = new Belt(1);
+        emptyGame.setCoordinate(coord, belt);
+        assertEquals(belt, view.get(coord));
+    }
+
+    @Test (expected = UnsupportedOperationException.class)
+    public void viewUnmodifiableTest() {
+        emptyGame.getGridView().put(new Coordinate(0, 0, 0), new Belt(1));
+    }
+
+    @Test
+    public void getComponentTest() {
+        Coordinate coord = new Coordinate(1, 1, -2);
+        Belt belt = new Belt(1);
+        emptyGame.setCoordinate(coord, belt);
+        assertEquals(belt, emptyGame.getComponent(coord));
+        assertEquals("ERROR", emptyGame.getComponent(new Coordinate(-1, -1)).getEncoding());
+    }
+
+    @Test
+    public void outsideRangeTest() {
+        assertFalse(emptyGame.contains(new Coordinate(4, 0)));
+        assertFalse(emptyGame.contains(new Coordinate(2, 2)));
+        assertFalse(emptyGame.contains(new Coordinate(1, 1, 1)));
+        assertNull(emptyGame.getComponent(new Coordinate(-2, -2)));
+        assertFalse(emptyGame.getGridView().containsKey(new Coordinate(0, 4)));
+    }
+
+    @Test
+    public void placedViewTest() {
+        emptyGame.setCoordinate(new Coordinate(2, -3), new Belt(1));
+        emptyGame.setCoordinate(new Coordinate(-3, 1), new Belt(2));
+        emptyGame.setCoordinate(new Coordinate(0, 3), new Belt(3));
+        Map<Coordinate, GridComponent> placed = new LinkedHashMap<>();
+        emptyGame.getGridView().forEach((coordinate, component) -> {
+            if (!component.getEncoding().equals("ERROR")) {
+                placed.put(coordinate, component);
+            }
+        });
+        assertEquals(3, emptyGame.getPlacedView().size());
+        assertEquals(new ArrayList<>(placed.entrySet()),
+                new ArrayList<>(emptyGame.getPlacedView().entrySet()));
+        assertFalse(emptyGame.getPlacedView().containsKey(new Coordinate(0, 0)));
+    }
+
+    @Test
+    public void sparseHugeGridTest() {
+        GameGrid huge = new GameGrid(2000);
+        Coordinate far = new Coordinate(-2000, 1000);
+        Belt belt = new Belt(1);
+        huge.setCoordinate(far, belt);
+        huge.setCoordinate(new Coordinate(1999, -2000), new Belt(2));
+        assertEquals(belt, huge.getComponent(far));
+        assertEquals("ERROR", huge.getComponent(new Coordinate(0, 0)).getEncoding());
+        assertEquals(3 * 2000 * 2001 + 1, huge.getGridView().size());
+        assertEquals(2, huge.getPlacedView().size());
+        assertEquals(far, new ArrayList<>(huge.getPlacedView().keySet()).get(1));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void setOutsideRangeTest() {
+        emptyGame.setCoordinate(new Coordinate(3, 1), new Belt(1));
+    }
 }
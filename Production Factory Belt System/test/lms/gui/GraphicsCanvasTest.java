@@ -0,0 +1,157 @@
+package lms.gui;
+
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.grid.Orientation;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GraphicsCanvasTest {
+
+    private static final int SIZE = 60;
+
+    private static GraphicsCanvas draw(GameGrid grid) {
+        GraphicsCanvas canvas = new GraphicsCanvas(800, 600);
+        canvas.drawMap(grid);
+        return canvas;
+    }
+
+    /**
+     * Returns the pixel offset from a hexagon to its neighbour, as drawMap used to step
+     * from hexagon to hexagon
+     */
+    private static int[] offset(Orientation orientation) {
+        int half = SIZE / 2;
+        int threeQuart = SIZE * 3 / 4;
+        return switch (orientation) {
+            case TOP_LEFT -> new int[]{-half, -threeQuart};
+            case TOP_RIGHT -> new int[]{half, -threeQuart};
+            case RIGHT -> new int[]{SIZE, 0};
+            case BOTTOM_RIGHT -> new int[]{half, threeQuart};
+            case BOTTOM_LEFT -> new int[]{-half, threeQuart};
+            case LEFT -> new int[]{-SIZE, 0};
+        };
+    }
+
+    @Test
+    public void originIsCentred() {
+        GraphicsCanvas canvas = draw(new GameGrid(3));
+        assertEquals(400, canvas.centreX(0, 0));
+        assertEquals(300, canvas.centreY(0));
+    }
+
+    @Test
+    public void neighboursKeepTheOldOffsets() {
+        GameGrid grid = new GameGrid(3);
+        GraphicsCanvas canvas = draw(grid);
+        for (Coordinate coordinate : grid.getGridView().keySet()) {
+            for (Orientation orientation : Orientation.values()) {
+                Coordinate neighbour = coordinate.getNeighbour(orientation);
+                int[] offset = offset(orientation);
+                String message = coordinate + " " + orientation;
+                assertEquals(message, offset[0],
+                        canvas.centreX(neighbour.getQ(), neighbour.getR())
+                                - canvas.centreX(coordinate.getQ(), coordinate.getR()));
+                assertEquals(message, offset[1],
+                        canvas.centreY(neighbour.getR()) - canvas.centreY(coordinate.getR()));
+            }
+        }
+    }
+
+    @Test
+    public void elementAtFindsEachHexagon() {
+        GameGrid grid = new GameGrid(3);
+        GraphicsCanvas canvas = draw(grid);
+        int half = SIZE / 2;
+        int quart = SIZE / 4;
+        // the corners of a hexagon and the middles of its sides, from its centre
+        int[][] edges = {
+                {half, -quart}, {half, quart}, {0, half},
+                {-half, quart}, {-half, -quart}, {0, -half},
+                {half, 0}, {quart, 3 * quart / 2}, {-quart, 3 * quart / 2},
+                {-half, 0}, {-quart, -3 * quart / 2}, {quart, -3 * quart / 2}
+        };
+        for (Coordinate coordinate : grid.getGridView().keySet()) {
+            int x = canvas.centreX(coordinate.getQ(), coordinate.getR());
+            int y = canvas.centreY(coordinate.getR());
+            assertEquals(coordinate, canvas.elementAt(x, y).getCoordinate());
+            for (int[] edge : edges) {
+                // just inside the edge
+                int edgeX = x + edge[0] * 9 / 10;
+                int edgeY = y + edge[1] * 9 / 10;
+                assertEquals(coordinate + " near " + edge[0] + "," + edge[1], coordinate,
+                        canvas.elementAt(edgeX, edgeY).getCoordinate());
+            }
+        }
+    }
+
+    @Test
+    public void elementAtCrossesIntoNeighbours() {
+        GameGrid grid = new GameGrid(3);
+        GraphicsCanvas canvas = draw(grid);
+        Set<Coordinate> drawn = grid.getGridView().keySet();
+        for (Coordinate coordinate : drawn) {
+            int x = canvas.centreX(coordinate.getQ(), coordinate.getR());
+            int y = canvas.centreY(coordinate.getR());
+            for (Orientation orientation : Orientation.values()) {
+                Coordinate neighbour = coordinate.getNeighbour(orientation);
+                int[] offset = offset(orientation);
+                // just past the shared side, on the neighbour's half of the line between
+                GraphicsCanvas.DrawnElement element = canvas.elementAt(
+                        x + offset[0] * 6 / 10, y + offset[1] * 6 / 10);
+                if (drawn.contains(neighbour)) {
+                    assertEquals(coordinate + " " + orientation, neighbour,
+                            element.getCoordinate());
+                } else {
+                    assertNull(coordinate + " " + orientation, element);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void visitElementsFindsTheHexagonsInAnArea() {
+        GameGrid grid = new GameGrid(5);
+        GraphicsCanvas canvas = draw(grid);
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Rectangle area = new Rectangle(random.nextInt(900) - 50, random.nextInt(700) - 50,
+                    random.nextInt(200) + 1, random.nextInt(200) + 1);
+            Set<Coordinate> visited = new HashSet<>();
+            canvas.visitElements(area, element -> assertTrue(
+                    visited.add(element.getCoordinate())));
+            for (Coordinate coordinate : grid.getGridView().keySet()) {
+                // the area a hexagon repaints, including its outline
+                Rectangle bounds = hexagonBounds(canvas, coordinate);
+                bounds.grow(1, 1);
+                if (bounds.intersects(area)) {
+                    assertTrue(area + " " + coordinate, visited.contains(coordinate));
+                }
+                bounds.grow(1, 1);
+                if (visited.contains(coordinate)) {
+                    assertTrue(area + " " + coordinate, bounds.intersects(area));
+                }
+            }
+        }
+    }
+
+    private static Rectangle hexagonBounds(GraphicsCanvas canvas, Coordinate coordinate) {
+        int x = canvas.centreX(coordinate.getQ(), coordinate.getR());
+        int y = canvas.centreY(coordinate.getR());
+        return new Rectangle(x - SIZE / 2, y - SIZE / 2, SIZE, SIZE);
+    }
+
+    @Test
+    public void elementAtIsNullOffTheGrid() {
+        GraphicsCanvas canvas = draw(new GameGrid(3));
+        assertNull(canvas.elementAt(0, 0));
+        assertNull(canvas.elementAt(799, 599));
+        assertNull(canvas.elementAt(Integer.MAX_VALUE, Integer.MIN_VALUE));
+    }
+}
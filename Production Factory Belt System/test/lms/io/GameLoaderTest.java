@@ -0,0 +1,172 @@
+package lms.io;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class GameLoaderTest {
+
+    private static final String HEADER = "1\n_____\n1\n1\n_____\nab\n_____\nab\n_____\n";
+
+    private static GameGrid load(String text) throws IOException, FileFormatException {
+        return GameLoader.load(new StringReader(text));
+    }
+
+    private static Transport find(GameGrid grid, int id) {
+        for (GridComponent component : grid.getGridView().values()) {
+            if (component instanceof Transport transport && transport.getId() == id) {
+                return transport;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void loadSimpleLine() throws IOException, FileFormatException {
+        GameGrid grid = load(HEADER + " w o\np b r\n w w\n_____\n1-2\n2-,3\n");
+        assertEquals(find(grid, 2).getPath(), find(grid, 1).getOutput());
+        assertEquals(find(grid, 3).getPath(), find(grid, 2).getOutput());
+    }
+
+    @Test
+    public void multiDigitProducerIds() throws IOException, FileFormatException {
+        String text = "2\n_____\n4\n4\n_____\nab\nab\nab\nab\n_____\nab\nab\nab\nab\n_____\n"
+                + "p b r\np b r w\np b r w w\np b r w\nw w w\n_____\n"
+                + "1-2\n2-,3\n4-5\n5-,6\n7-8\n8-,9\n10-11\n12-11\n";
+        GameGrid grid = load(text);
+        assertEquals(find(grid, 11).getPath(), find(grid, 10).getOutput());
+        assertEquals(find(grid, 12).getPath(), find(grid, 11).getOutput());
+    }
+
+    @Test
+    public void beltCapacity() throws IOException, FileFormatException {
+        GameGrid grid = load(HEADER + " w o\np b12 r\n w w\n_____\n1-2\n2-,3\n");
+        assertEquals(12, ((Belt) find(grid, 2)).getCapacity());
+        try {
+            load(HEADER + " w o\np b0 r\n w w\n_____\n1-2\n2-,3\n");
+            fail();
+        } catch (FileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line: 11"));
+        }
+    }
+
+    @Test
+    public void blankLinesAreSkipped() throws IOException, FileFormatException {
+        GameGrid grid = load(HEADER + " w o\np b r\n w w\n_____\n1-2\n\n2-,3\n\n");
+        assertTrue(find(grid, 1) instanceof Producer);
+        assertTrue(find(grid, 3) instanceof Receiver);
+    }
+
+    @Test
+    public void unknownIdReportsColumn() throws IOException {
+        try {
+            load(HEADER + " w o\np b r\n w w\n_____\n1-2\n2-,33\n");
+            fail();
+        } catch (FileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line: 15, column: 4"));
+        }
+    }
+
+    @Test
+    public void unexpectedCharacterReportsColumn() throws IOException {
+        try {
+            load(HEADER + " w o\np b r\n w w\n_____\n1-2x\n2-,3\n");
+            fail();
+        } catch (FileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line: 14, column: 4"));
+        }
+    }
+
+    @Test
+    public void unknownCellReportsLine() throws IOException {
+        try {
+            load(HEADER + " w o\np q r\n w w\n_____\n1-2\n2-,3\n");
+            fail();
+        } catch (FileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line: 11"));
+        }
+    }
+
+    @Test
+    public void cycleIsRejected() throws IOException {
+        try {
+            load(HEADER + " b b\np b r\n w w\n_____\n1-2,2\n3-4\n4-,5\n");
+            fail();
+        } catch (FileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cycle"));
+        }
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void mismatchedKeyIsRejected() throws IOException, FileFormatException {
+        load("1\n_____\n1\n1\n_____\nab\n_____\ncd\n_____\n"
+                + " w o\np b r\n w w\n_____\n1-2\n2-,3\n");
+    }
+
+    @Test
+    public void receiversAreKeyMatched() throws IOException, FileFormatException {
+        GameGrid grid = load(HEADER + " w o\np b r\n w w\n_____\n1-2\n2-,3\n");
+        assertTrue(((Receiver) find(grid, 3)).isKeyMatched());
+    }
+
+    @Test
+    public void relinkingClearsKeyMatch() throws IOException, FileFormatException {
+        GameGrid grid = load(HEADER + " w o\np b r\n w w\n_____\n1-2\n2-,3\n");
+        Receiver receiver = (Receiver) find(grid, 3);
+        Producer other = new Producer(4, new Item("cd"));
+        receiver.setInput(other.getPath());
+        assertFalse(receiver.isKeyMatched());
+        other.tick();
+        other.tick();
+        assertTrue(receiver.isBlocked());
+    }
+
+    @Test
+    public void largeGridIdsInReadingOrder() throws IOException, FileFormatException {
+        SaveGenerator generator = new SaveGenerator(60, 5);
+        generator.setItemKinds(7);
+        StringWriter text = new StringWriter();
+        generator.writeText(text);
+        GameGrid grid = load(text.toString());
+        int id = 0;
+        for (GridComponent component : grid.getPlacedView().values()) {
+            if (component instanceof Transport transport) {
+                assertEquals(++id, transport.getId());
+            }
+        }
+        assertTrue(id > 1000);
+    }
+
+    @Test
+    public void firstErrorInFileIsReported() throws IOException {
+        try {
+            load(HEADER + " w o\np q r\n w\n");
+            fail();
+        } catch (FileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unknown cell q (line: 11)"));
+        }
+        try {
+            load(HEADER + " w r\np b r\n w w\n_____\n");
+            fail();
+        } catch (FileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("receiver items (line: 11)"));
+        }
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void truncatedFile() throws IOException, FileFormatException {
+        load(HEADER + " w o\np b r\n");
+    }
+}
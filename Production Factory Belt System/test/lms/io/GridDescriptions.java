@@ -0,0 +1,48 @@
+package lms.io;
+
+import lms.grid.GameGrid;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Container;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes grids cell by cell, so that grids loaded in different ways can be compared
+ */
+final class GridDescriptions {
+
+    private GridDescriptions() {
+    }
+
+    /**
+     * Describes every cell of a grid, with the links, key and capacity of what it holds
+     *
+     * @param grid the grid to describe
+     * @return one line per cell, in the order of the grid's view
+     */
+    static List<String> describe(GameGrid grid) {
+        List<String> cells = new ArrayList<>();
+        grid.getGridView().forEach((coordinate, component) -> {
+            String cell = coordinate + " " + component.getEncoding();
+            if (component instanceof Transport transport) {
+                cell += " " + transport + " prev=" + id(transport.getPath().getPrevious())
+                        + " next=" + id(transport.getPath().getNext());
+            }
+            if (component instanceof Container container) {
+                cell += " key=" + container.getKey();
+            }
+            if (component instanceof Belt belt) {
+                cell += " capacity=" + belt.getCapacity();
+            }
+            cells.add(cell);
+        });
+        return cells;
+    }
+
+    private static String id(Path path) {
+        return path == null ? "-" : String.valueOf(path.getNode().getId());
+    }
+}
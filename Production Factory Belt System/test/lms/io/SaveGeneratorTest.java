@@ -0,0 +1,82 @@
+package lms.io;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.container.Producer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+
+import static lms.io.GridDescriptions.describe;
+import static org.junit.Assert.*;
+
+public class SaveGeneratorTest {
+
+    private static String text(SaveGenerator generator) throws IOException {
+        StringWriter text = new StringWriter();
+        generator.writeText(text);
+        return text.toString();
+    }
+
+    @Test
+    public void generatedTextLoads() throws IOException, FileFormatException {
+        for (SaveGenerator.LengthDistribution distribution
+                : SaveGenerator.LengthDistribution.values()) {
+            for (int range = 1; range <= 20; range += 3) {
+                SaveGenerator generator = new SaveGenerator(range, range * 31L);
+                generator.setDistribution(distribution);
+                generator.setPathLengths(2, 3 * range);
+                GameGrid grid = GameLoader.load(new StringReader(text(generator)));
+                assertEquals(range, grid.getRange());
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedSameText() throws IOException {
+        assertEquals(text(new SaveGenerator(15, 7)), text(new SaveGenerator(15, 7)));
+        assertNotEquals(text(new SaveGenerator(15, 7)), text(new SaveGenerator(15, 8)));
+    }
+
+    @Test
+    public void pairsAndDensity() throws IOException, FileFormatException {
+        SaveGenerator generator = new SaveGenerator(30, 1);
+        generator.setPairs(12);
+        generator.setDensity(1);
+        generator.setWallRatio(1);
+        GameGrid grid = GameLoader.load(new StringReader(text(generator)));
+        int producers = 0;
+        int empty = 0;
+        for (GridComponent component : grid.getGridView().values()) {
+            if (component instanceof Producer) {
+                producers++;
+            } else if (component.getEncoding().equals("o")) {
+                empty++;
+            }
+        }
+        assertEquals(12, producers);
+        assertEquals(0, empty);
+    }
+
+    @Test
+    public void snapshotMatchesText() throws IOException, FileFormatException {
+        SaveGenerator generator = new SaveGenerator(25, 3);
+        generator.setPathLengths(2, 200);
+        generator.setDensity(0.95);
+        GameGrid text = GameLoader.load(new StringReader(text(generator)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        generator.writeSnapshot(bytes);
+        GameGrid snapshot = SnapshotLoader.load(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(describe(text), describe(snapshot));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badLengths() {
+        new SaveGenerator(5, 0).setPathLengths(1, 4);
+    }
+}
@@ -0,0 +1,189 @@
+package lms.io;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Transport;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static lms.io.GridDescriptions.describe;
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+
+    private static GameGrid loadText(String file) throws IOException, FileFormatException {
+        try (Reader reader = new FileReader(file)) {
+            return GameLoader.load(reader);
+        }
+    }
+
+    @Test
+    public void roundTripThroughFile() throws IOException, FileFormatException {
+        GameGrid text = loadText("saves/gridNumberedExample.txt");
+        java.nio.file.Path file = Files.createTempFile("grid", ".lmsb");
+        try {
+            SnapshotWriter.convert(new FileReader("saves/gridNumberedExample.txt"), file);
+            GameGrid snapshot = SnapshotLoader.load(file);
+            assertEquals(describe(text), describe(snapshot));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void roundTripKeepsMerges() throws IOException, FileFormatException {
+        GameGrid text = loadText("saves/grid2.txt");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotWriter.write(text, bytes);
+        GameGrid snapshot = SnapshotLoader.load(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(describe(text), describe(snapshot));
+        for (GridComponent component : snapshot.getGridView().values()) {
+            if (component instanceof Transport transport) {
+                transport.getPath().head();
+            }
+        }
+    }
+
+    @Test
+    public void roundTripKeepsCapacity() throws IOException, FileFormatException {
+        GameGrid text = GameLoader.load(new StringReader("1\n_____\n1\n1\n_____\nab\n_____\n"
+                + "ab\n_____\n b3 b\np b7 r\n w w\n_____\n3-1\n1-,2\n2-,4\n4-,5\n"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotWriter.write(text, bytes);
+        GameGrid snapshot = SnapshotLoader.load(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(describe(text), describe(snapshot));
+    }
+
+    /**
+     * How many int arrays from the end of a snapshot the ids start
+     */
+    private static final int IDS = 5;
+
+    /**
+     * How many int arrays from the end of a snapshot the keys start
+     */
+    private static final int KEYS = 4;
+
+    /**
+     * How many int arrays from the end of a snapshot the next links start
+     */
+    private static final int NEXT = 3;
+
+    /**
+     * How many int arrays from the end of a snapshot the previous links start
+     */
+    private static final int PREVIOUS = 2;
+
+    private static byte[] snapshot(GameGrid grid) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotWriter.write(grid, bytes);
+        return bytes.toByteArray();
+    }
+
+    private static int offset(byte[] data, int section, int index) {
+        int count = ByteBuffer.wrap(data).getInt(12);
+        return data.length - section * count * Integer.BYTES + index * Integer.BYTES;
+    }
+
+    private static int getInt(byte[] data, int section, int index) {
+        return ByteBuffer.wrap(data).getInt(offset(data, section, index));
+    }
+
+    private static void setInt(byte[] data, int section, int index, int value) {
+        ByteBuffer.wrap(data).putInt(offset(data, section, index), value);
+    }
+
+    private static String loadError(byte[] data) {
+        try {
+            SnapshotLoader.load(ByteBuffer.wrap(data));
+        } catch (FileFormatException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("Snapshot loaded");
+    }
+
+    @Test
+    public void loadedReceiversAreKeyMatched() throws IOException, FileFormatException {
+        GameGrid snapshot = SnapshotLoader.load(
+                ByteBuffer.wrap(snapshot(loadText("saves/gridNumberedExample.txt"))));
+        int receivers = 0;
+        for (GridComponent component : snapshot.getGridView().values()) {
+            if (component instanceof Receiver receiver) {
+                assertTrue(receiver.isKeyMatched());
+                receivers++;
+            }
+        }
+        assertEquals(2, receivers);
+    }
+
+    @Test
+    public void repeatedIdsAreRejected() throws IOException, FileFormatException {
+        // grid2 holds Producer 1, Belts 2 and 3 and Receiver 4, in that order
+        byte[] data = snapshot(loadText("saves/grid2.txt"));
+        setInt(data, IDS, 2, 2);
+        assertTrue(loadError(data).contains("repeated"));
+    }
+
+    @Test
+    public void unansweredLinksAreRejected() throws IOException, FileFormatException {
+        byte[] data = snapshot(loadText("saves/grid2.txt"));
+        // the first belt takes from the producer, which has lost its output
+        setInt(data, NEXT, 0, -1);
+        assertTrue(loadError(data).contains("which has no output"));
+        data = snapshot(loadText("saves/grid2.txt"));
+        // the producer outputs to the first belt, which has lost its input
+        setInt(data, PREVIOUS, 1, -1);
+        assertTrue(loadError(data).contains("which has no input"));
+    }
+
+    @Test
+    public void cyclesAreRejected() throws IOException, FileFormatException {
+        byte[] data = snapshot(loadText("saves/grid2.txt"));
+        // the second belt outputs back into the first, and the receiver is cut off
+        setInt(data, NEXT, 2, 1);
+        setInt(data, PREVIOUS, 3, -1);
+        assertTrue(loadError(data).contains("cycle"));
+    }
+
+    @Test
+    public void mismatchedKeysAreRejected() throws IOException, FileFormatException {
+        GameGrid text = loadText("saves/gridNumberedExample.txt");
+        byte[] data = snapshot(text);
+        int producerId = -1;
+        for (GridComponent component : text.getGridView().values()) {
+            if (component instanceof Producer producer) {
+                producerId = producer.getId();
+            }
+        }
+        int index = 0;
+        while (getInt(data, IDS, index) != producerId) {
+            index++;
+        }
+        // the save has two items, and this gives the producer the other one
+        setInt(data, KEYS, index, 1 - getInt(data, KEYS, index));
+        assertTrue(loadError(data).contains("takes"));
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void badMagic() throws FileFormatException {
+        SnapshotLoader.load(ByteBuffer.wrap(new byte[64]));
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void truncated() throws IOException, FileFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotWriter.write(loadText("saves/grid2.txt"), bytes);
+        byte[] data = bytes.toByteArray();
+        SnapshotLoader.load(ByteBuffer.wrap(data, 0, data.length - 3).slice());
+    }
+}
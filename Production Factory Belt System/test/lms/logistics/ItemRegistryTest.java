@@ -0,0 +1,55 @@
+package lms.logistics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ItemRegistryTest {
+
+    @Test
+    public void internSameName() {
+        Item first = ItemRegistry.intern("registry-test-a");
+        Item second = ItemRegistry.intern("registry-test-a");
+        assertSame(first, second);
+    }
+
+    @Test
+    public void internDifferentNames() {
+        Item first = ItemRegistry.intern("registry-test-b");
+        Item second = ItemRegistry.intern("registry-test-c");
+        assertNotEquals(first, second);
+        assertNotEquals(first.getId(), second.getId());
+    }
+
+    @Test
+    public void getById() {
+        Item item = ItemRegistry.intern("registry-test-d");
+        assertSame(item, ItemRegistry.get(item.getId()));
+        assertTrue(item.getId() < ItemRegistry.size());
+    }
+
+    @Test
+    public void equalToUninterned() {
+        Item item = ItemRegistry.intern("registry-test-e");
+        Item plain = new Item("registry-test-e");
+        assertEquals(Item.NO_ID, plain.getId());
+        assertEquals(item, plain);
+        assertEquals(plain, item);
+        assertEquals(item.hashCode(), plain.hashCode());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void internEmpty() {
+        ItemRegistry.intern("");
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void internNull() {
+        ItemRegistry.intern(null);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void getUnknown() {
+        ItemRegistry.get(-1);
+    }
+}
@@ -1,5 +1,6 @@
 package lms.logistics;
 
+import lms.exceptions.BadStateException;
 import lms.logistics.belts.Belt;
 import lms.logistics.container.Producer;
 import lms.logistics.container.Receiver;
@@ -198,4 +199,61 @@ public class PathTest {
     public void getNextTestIncorrect() {
         assertNotEquals(path2.getNext(), path4);
     }
+
+    @Test
+    public void lengthTest() {
+        assertEquals(6, path1.length());
+        assertEquals(6, path4.length());
+        assertEquals(6, path6.length());
+        assertEquals(1, new Path(new Belt(7)).length());
+    }
+
+    @Test
+    public void headAfterRelinkTest() {
+        assertEquals(path1, path5.head());
+        Path newHead = new Path(new Producer(7, item1));
+        path3.setPrevious(newHead);
+        assertEquals(newHead, path5.head());
+        assertEquals(newHead, path3.head());
+        assertEquals(5, path5.length());
+    }
+
+    @Test
+    public void tailAfterRelinkTest() {
+        assertEquals(path6, path2.tail());
+        Path newTail = new Path(new Receiver(7, item1));
+        path3.setNext(newTail);
+        assertEquals(newTail, path2.tail());
+        assertEquals(newTail, path1.tail());
+    }
+
+    @Test
+    public void longPathTest() {
+        int length = 1_000_000;
+        Path first = new Path(new Belt(1));
+        Path last = first;
+        for (int i = 2; i <= length; i++) {
+            Path path = new Path(new Belt(i));
+            last.setNext(path);
+            last = path;
+        }
+        assertEquals(first, last.head());
+        assertEquals(last, first.tail());
+        assertEquals(length, first.length());
+        int[] count = {0};
+        first.applyAll(transport -> count[0]++);
+        assertEquals(length, count[0]);
+    }
+
+    @Test (expected = BadStateException.class)
+    public void cyclicHeadTest() {
+        path6.setNext(path1);
+        path3.head();
+    }
+
+    @Test (expected = BadStateException.class)
+    public void cyclicTailTest() {
+        path6.setNext(path1);
+        path3.tail();
+    }
 }
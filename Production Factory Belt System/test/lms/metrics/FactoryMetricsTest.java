@@ -0,0 +1,78 @@
+package lms.metrics;
+
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import lms.simulation.Simulation;
+import lms.simulation.TickMode;
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+public class FactoryMetricsTest {
+
+    /**
+     * Builds a line from a producer to a receiver on row 0, and a line on row 1 that
+     * ends in a belt with no output, so it jams.
+     */
+    private static GameGrid buildGrid() {
+        GameGrid grid = new GameGrid(10);
+        Item item = new Item("ab");
+        for (int r = 0; r < 2; r++) {
+            Transport previous = new Producer(r * 10 + 1, item);
+            grid.setCoordinate(new Coordinate(0, r), previous);
+            for (int i = 1; i < 6; i++) {
+                Transport next = i == 5 && r == 0
+                        ? new Receiver(r * 10 + i + 1, item) : new Belt(r * 10 + i + 1);
+                grid.setCoordinate(new Coordinate(i, r), next);
+                next.setInput(previous.getPath());
+                previous = next;
+            }
+        }
+        return grid;
+    }
+
+    private static long attribute(MBeanServer server, String name, String attribute)
+            throws JMException {
+        return ((Number) server.getAttribute(new ObjectName(name), attribute)).longValue();
+    }
+
+    @Test
+    public void countsMovesAndStalls() throws JMException {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        Simulation simulation = new Simulation(buildGrid());
+        simulation.setMode(TickMode.ACTIVE);
+        FactoryMetrics metrics = FactoryMetrics.register(simulation, server);
+        for (int tick = 0; tick < 100; tick++) {
+            simulation.tick();
+        }
+        String factory = ",factory=" + metrics.getNames().get(0).getKeyProperty("factory");
+
+        assertEquals(100, attribute(server, "lms:type=Factory" + factory, "TickCount"));
+        assertEquals(2, attribute(server, "lms:type=Factory" + factory, "PathCount"));
+
+        String flowing = "lms:type=Path,tail=6" + factory;
+        assertTrue(attribute(server, flowing, "ItemsReceived") > 40);
+        assertEquals(0, attribute(server, flowing, "TicksStalled"));
+        assertEquals(attribute(server, "lms:type=Receiver,id=6" + factory, "ItemsReceived"),
+                attribute(server, flowing, "ItemsReceived"));
+
+        String jammed = "lms:type=Path,tail=16" + factory;
+        assertEquals(0, attribute(server, jammed, "ItemsReceived"));
+        assertTrue(attribute(server, jammed, "TicksStalled") > 0);
+        // the belt behind the end of the line fills first and stalls the longest
+        assertEquals(15, attribute(server, jammed, "MostStalledId"));
+
+        metrics.unregister();
+        assertTrue(server.queryNames(new ObjectName("lms:*"), null).isEmpty());
+    }
+}
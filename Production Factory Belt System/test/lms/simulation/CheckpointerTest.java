@@ -0,0 +1,212 @@
+package lms.simulation;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.io.GameLoader;
+import lms.io.SaveGenerator;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class CheckpointerTest {
+
+    /**
+     * A generated save whose belts hold up to three items each
+     */
+    private static final String SAVE = buildSave();
+
+    private static String buildSave() {
+        SaveGenerator generator = new SaveGenerator(12, 1234);
+        generator.setPathLengths(3, 40);
+        StringWriter text = new StringWriter();
+        try {
+            generator.writeText(text);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        String[] sections = text.toString().split("_____", -1);
+        sections[4] = sections[4].replaceAll("\\bb\\b", "b3");
+        return String.join("_____", sections);
+    }
+
+    private static Simulation load() throws IOException, FileFormatException {
+        return new Simulation(GameLoader.load(new StringReader(SAVE)));
+    }
+
+    private static Map<Integer, String> state(Simulation simulation) {
+        Map<Integer, String> state = new TreeMap<>();
+        for (GridComponent component : simulation.getGrid().getGrid().values()) {
+            if (component instanceof Receiver receiver) {
+                state.put(receiver.getId(), receiver.getHeldItem()
+                        + " received " + receiver.getReceivedCount());
+            } else if (component instanceof Producer producer) {
+                state.put(producer.getId(), producer.getInventory()
+                        + " counter " + producer.getCounter());
+            } else if (component instanceof Belt belt) {
+                List<String> items = new ArrayList<>();
+                for (int i = 0; i < belt.getItemCount(); i++) {
+                    items.add(String.valueOf(belt.getItem(i)));
+                }
+                state.put(belt.getId(), items.toString());
+            } else if (component instanceof Transport transport) {
+                state.put(transport.getId(), String.valueOf(transport.getInventory()));
+            }
+        }
+        return state;
+    }
+
+    private interface GridSource {
+        GameGrid build() throws IOException, FileFormatException;
+    }
+
+    @Test
+    public void resumeMatchesUninterruptedRun() throws IOException, FileFormatException {
+        Path file = Files.createTempFile("checkpoint", ".lmsc");
+        try {
+            // the buffered lines merge, so their belts fill up with several items
+            for (GridSource source : List.<GridSource>of(
+                    () -> load().getGrid(), SimulationTest::buildBufferedLines)) {
+                for (TickMode mode : TickMode.values()) {
+                    resume(source, mode, 1, file);
+                    resume(source, mode, 7, file);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void resume(GridSource source, TickMode mode, int interval, Path file)
+            throws IOException, FileFormatException {
+        Simulation original = new Simulation(source.build());
+        original.setMode(mode);
+        Checkpointer checkpointer = new Checkpointer(original, file, interval);
+        try {
+            for (int tick = 0; tick < 100; tick++) {
+                original.tick();
+            }
+        } finally {
+            checkpointer.close();
+        }
+        Simulation resumed = new Simulation(source.build());
+        resumed.setMode(mode);
+        assertEquals(100, Checkpointer.restore(resumed, file));
+        assertEquals(100, resumed.getTickCount());
+        assertEquals(mode + " every " + interval, state(original), state(resumed));
+        for (int tick = 0; tick < 60; tick++) {
+            original.tick();
+            resumed.tick();
+        }
+        assertEquals(mode + " every " + interval, state(original), state(resumed));
+    }
+
+    /**
+     * Builds a path whose receiver does not match its producer, so the path stops
+     * ticking, producer included, once the first item reaches the receiver.
+     */
+    private static GameGrid buildBlockedPath() {
+        GameGrid grid = new GameGrid(2);
+        Transport previous = new Producer(1, new Item("a"));
+        grid.setCoordinate(new Coordinate(-2, 0), previous);
+        for (int i = 1; i < 4; i++) {
+            Transport next = i == 3 ? new Receiver(i + 1, new Item("b")) : new Belt(i + 1);
+            grid.setCoordinate(new Coordinate(i - 2, 0), next);
+            next.setInput(previous.getPath());
+            previous = next;
+        }
+        return grid;
+    }
+
+    @Test
+    public void blockedPathIsRestored() throws IOException, FileFormatException {
+        Path file = Files.createTempFile("checkpoint", ".lmsc");
+        try {
+            // the producer's counter stops following the ticks, and only a checkpoint
+            // of the counter itself restores it
+            resume(CheckpointerTest::buildBlockedPath, TickMode.SEQUENTIAL, 3, file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void unfinishedCheckpointIsIgnored() throws IOException, FileFormatException {
+        Path file = Files.createTempFile("checkpoint", ".lmsc");
+        try {
+            Simulation original = load();
+            Checkpointer checkpointer = new Checkpointer(original, file, 10);
+            try {
+                for (int tick = 0; tick < 30; tick++) {
+                    original.tick();
+                }
+            } finally {
+                checkpointer.close();
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+            Simulation expected = load();
+            for (int tick = 0; tick < 20; tick++) {
+                expected.tick();
+            }
+            Simulation resumed = load();
+            assertEquals(20, Checkpointer.restore(resumed, file));
+            assertEquals(state(expected), state(resumed));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void skippedTicksWriteABase() throws IOException, FileFormatException {
+        Path file = Files.createTempFile("checkpoint", ".lmsc");
+        try {
+            Simulation original = load();
+            Checkpointer checkpointer = new Checkpointer(original, file, 4);
+            try {
+                for (int tick = 0; tick < 5; tick++) {
+                    original.tick();
+                }
+                original.advance(100_001);
+                for (int tick = 0; tick < 3; tick++) {
+                    original.tick();
+                }
+            } finally {
+                checkpointer.close();
+            }
+            Simulation resumed = load();
+            assertEquals(100_009, Checkpointer.restore(resumed, file));
+            assertEquals(state(original), state(resumed));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void otherFilesAreRejected() throws IOException, FileFormatException {
+        Path file = Files.createTempFile("checkpoint", ".lmsc");
+        try {
+            Files.writeString(file, SAVE);
+            Checkpointer.restore(load(), file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package lms.simulation;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.io.GameLoader;
+import lms.logistics.container.Receiver;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class HeadlessRunnerTest {
+
+    private static final String SAVE = "saves/gridNumberedExample.txt";
+
+    private static GameGrid loadGrid() throws IOException, FileFormatException {
+        try (Reader reader = new FileReader(SAVE)) {
+            return GameLoader.load(reader);
+        }
+    }
+
+    private static HeadlessRunner loadRunner() throws IOException, FileFormatException {
+        try (Reader reader = new FileReader(SAVE)) {
+            return HeadlessRunner.load(reader);
+        }
+    }
+
+    /**
+     * Ticks a fresh copy of the save, one tick at a time, and returns the number of
+     * items each receiver got by id
+     */
+    private static Map<Integer, Long> expectedCounts(long ticks)
+            throws IOException, FileFormatException {
+        Simulation simulation = new Simulation(loadGrid());
+        for (long tick = 0; tick < ticks; tick++) {
+            simulation.tick();
+        }
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (GridComponent component : simulation.getGrid().getGridView().values()) {
+            if (component instanceof Receiver receiver) {
+                counts.put(receiver.getId(), receiver.getReceivedCount());
+            }
+        }
+        return counts;
+    }
+
+    private static Map<Integer, Long> counts(HeadlessRunner runner) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (Receiver receiver : runner.getReceivers()) {
+            counts.put(receiver.getId(), receiver.getReceivedCount());
+        }
+        return counts;
+    }
+
+    @Test
+    public void runsForATickLimit() throws IOException, FileFormatException {
+        HeadlessRunner runner = loadRunner();
+        runner.run(200, -1);
+        assertEquals(200, runner.getTicksRun());
+        assertEquals(200, runner.getSimulation().getTickCount());
+        Map<Integer, Long> expected = expectedCounts(200);
+        assertEquals(2, expected.size());
+        assertTrue(expected.values().stream().mapToLong(Long::longValue).sum() > 0);
+        assertEquals(expected, counts(runner));
+    }
+
+    @Test
+    public void tickLimitStopsBeforeTheBudget() throws IOException, FileFormatException {
+        HeadlessRunner runner = loadRunner();
+        runner.run(100, 60_000);
+        assertEquals(100, runner.getTicksRun());
+        assertEquals(expectedCounts(100), counts(runner));
+    }
+
+    @Test
+    public void runsForATimeBudget() throws IOException, FileFormatException {
+        HeadlessRunner runner = loadRunner();
+        runner.run(-1, 20);
+        long ticks = runner.getTicksRun();
+        assertTrue(ticks > 0);
+        assertEquals(ticks, runner.getSimulation().getTickCount());
+        assertTrue(runner.getTicksPerSecond() > 0);
+        assertEquals(expectedCounts(ticks), counts(runner));
+    }
+
+    @Test
+    public void slowTicksKeepToTheBudget() throws IOException, FileFormatException {
+        HeadlessRunner runner = loadRunner();
+        runner.getSimulation().addTickListener((tick, changed) -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long start = System.nanoTime();
+        runner.run(-1, 20);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // the clock is checked after every tick once ticks take longer than a millisecond
+        assertTrue("ran " + runner.getTicksRun(), runner.getTicksRun() <= 6);
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 500);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aLimitIsRequired() throws IOException, FileFormatException {
+        loadRunner().run(-1, -1);
+    }
+
+    @Test
+    public void reportListsEveryReceiver() throws IOException, FileFormatException {
+        HeadlessRunner runner = loadRunner();
+        runner.run(200, -1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        runner.report(new PrintStream(bytes, true));
+        String[] lines = bytes.toString().split("\\R");
+        assertEquals(runner.getReceivers().size() + 2, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("Ran 200 ticks in "));
+        long total = 0;
+        for (int i = 0; i < runner.getReceivers().size(); i++) {
+            Receiver receiver = runner.getReceivers().get(i);
+            assertEquals(receiver + " " + receiver.getKey() + ": "
+                    + receiver.getReceivedCount() + " received", lines[i + 1]);
+            total += receiver.getReceivedCount();
+        }
+        assertEquals("Total: " + total + " received", lines[lines.length - 1]);
+    }
+}
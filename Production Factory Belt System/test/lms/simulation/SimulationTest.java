@@ -0,0 +1,774 @@
+package lms.simulation;
+
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class SimulationTest {
+
+    private static final int RANGE = 40;
+
+    /**
+     * Builds a grid with one producer-to-receiver line on each row, where every third
+     * line also feeds the receiver of the line below it.
+     */
+    private static GameGrid buildLines() {
+        GameGrid grid = new GameGrid(RANGE);
+        int id = 1;
+        Transport previousLineBelt = null;
+        for (int r = -RANGE + 1; r < RANGE; r++) {
+            int start = Math.max(-RANGE, -RANGE - r);
+            int length = 5 + Math.floorMod(r * 7, 23);
+            Item item = new Item("ab");
+            Transport previous = new Producer(id++, item);
+            grid.setCoordinate(new Coordinate(start, r), previous);
+            for (int i = 1; i < length; i++) {
+                Transport next = i == length - 1 ? new Receiver(id++, item) : new Belt(id++);
+                grid.setCoordinate(new Coordinate(start + i, r), next);
+                next.setInput(previous.getPath());
+                previous = next;
+            }
+            if (previousLineBelt != null) {
+                Transport last = previous.getInput().getNode();
+                Transport beforeLast = last.getInput().getNode();
+                // link into this line, then give the last belt its own input back
+                previousLineBelt.setOutput(last.getPath());
+                last.setInput(beforeLast.getPath());
+            }
+            previousLineBelt = Math.floorMod(r, 3) == 0 ? previous.getInput().getNode() : null;
+        }
+        return grid;
+    }
+
+    /**
+     * Builds lines of buffered belts that feed into each other, so the belts fill up.
+     */
+    static GameGrid buildBufferedLines() {
+        GameGrid grid = new GameGrid(RANGE);
+        int id = 1;
+        Transport merge = null;
+        for (int r = 0; r < 10; r++) {
+            Item item = new Item("ab");
+            Transport previous = new Producer(id++, item);
+            grid.setCoordinate(new Coordinate(0, r), previous);
+            for (int i = 1; i < 8; i++) {
+                Transport next = i == 7 ? new Receiver(id++, item) : new Belt(id++, 1 + (i + r) % 4);
+                grid.setCoordinate(new Coordinate(i, r), next);
+                next.setInput(previous.getPath());
+                previous = next;
+            }
+            if (merge != null) {
+                // feed the previous line into the middle of this one as well
+                Transport into = previous.getInput().getNode().getInput().getNode();
+                Transport beforeInto = into.getInput().getNode();
+                merge.setOutput(into.getPath());
+                into.setInput(beforeInto.getPath());
+            }
+            merge = previous.getInput().getNode();
+        }
+        return grid;
+    }
+
+    private static Map<Integer, String> state(GameGrid grid) {
+        Map<Integer, String> state = new TreeMap<>();
+        for (GridComponent component : grid.getGrid().values()) {
+            if (component instanceof Receiver receiver) {
+                state.put(receiver.getId(), "received " + receiver.getReceivedCount());
+            } else if (component instanceof Belt belt && belt.getCapacity() > 1) {
+                List<Item> items = new ArrayList<>();
+                for (int i = 0; i < belt.getItemCount(); i++) {
+                    items.add(belt.getItem(i));
+                }
+                state.put(belt.getId(), items.toString());
+            } else if (component instanceof Transport transport) {
+                state.put(transport.getId(), String.valueOf(transport.getInventory()));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Returns the item moved, stall and produced counts of every transport, by id
+     */
+    private static Map<Integer, String> counts(GameGrid grid) {
+        Map<Integer, String> counts = new TreeMap<>();
+        for (GridComponent component : grid.getGrid().values()) {
+            if (component instanceof Transport transport) {
+                String count = "moved " + transport.getItemsMoved()
+                        + " stalled " + transport.getTicksStalled();
+                if (transport instanceof Producer producer) {
+                    count += " produced " + producer.getItemsProduced();
+                }
+                counts.put(transport.getId(), count);
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    public void planHasGroups() {
+        TickPlan plan = TickPlan.compile(buildLines());
+        assertTrue(plan.getGroupCount() > 1);
+        assertTrue(plan.getGroupCount() < plan.getPathCount());
+        assertEquals(plan.size(), plan.getGroupWeight(plan.getGroupCount()));
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        // the results must not depend on how many threads share the groups
+        for (int threads : List.of(1, 4, Runtime.getRuntime().availableProcessors())) {
+            Simulation sequential = new Simulation(buildLines());
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                Simulation parallel = new Simulation(buildLines(), pool);
+                parallel.setMode(TickMode.PARALLEL);
+                for (int tick = 0; tick < 200; tick++) {
+                    sequential.tick();
+                    parallel.tick();
+                    assertEquals(threads + " threads, tick " + tick,
+                            state(sequential.getGrid()), state(parallel.getGrid()));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Builds two paths that snake back and forth over every row of a grid, one of them
+     * ending in a Receiver that does not take its item.
+     */
+    private static GameGrid buildSnakes() {
+        int range = 12;
+        GameGrid grid = new GameGrid(range);
+        int id = 1;
+        for (int half = 0; half < 2; half++) {
+            List<Coordinate> cells = new ArrayList<>();
+            for (int r = half == 0 ? -range : 0; r < (half == 0 ? 0 : range + 1); r++) {
+                int from = Math.max(-range, -range - r);
+                int to = Math.min(range, range - r);
+                for (int i = 0; i <= to - from; i++) {
+                    cells.add(new Coordinate(r % 2 == 0 ? from + i : to - i, r));
+                }
+            }
+            Transport previous = new Producer(id++, new Item("ab"));
+            grid.setCoordinate(cells.get(0), previous);
+            for (int i = 1; i < cells.size(); i++) {
+                Transport next = i == cells.size() - 1
+                        ? new Receiver(id++, new Item(half == 0 ? "ab" : "cd"))
+                        : new Belt(id, 1 + id++ % 3);
+                grid.setCoordinate(cells.get(i), next);
+                next.setInput(previous.getPath());
+                previous = next;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Builds one path down each column of the grid, so every transport is on its own
+     * row and the producers start on different rows.
+     */
+    private static GameGrid buildColumns() {
+        int range = 12;
+        GameGrid grid = new GameGrid(range);
+        int id = 1;
+        for (int q = -range; q <= range; q++) {
+            int from = Math.max(-range, -range - q);
+            int to = Math.min(range, range - q);
+            Transport previous = new Producer(id++, new Item("ab"));
+            grid.setCoordinate(new Coordinate(q, from), previous);
+            for (int r = from + 1; r <= to; r++) {
+                Transport next = r == to ? new Receiver(id++, new Item("ab"))
+                        : new Belt(id, 1 + id++ % 2);
+                grid.setCoordinate(new Coordinate(q, r), next);
+                next.setInput(previous.getPath());
+                previous = next;
+            }
+        }
+        return grid;
+    }
+
+    @Test
+    public void partitionedMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Supplier<GameGrid>> builders = List.of(SimulationTest::buildSnakes,
+                    SimulationTest::buildLines, SimulationTest::buildColumns);
+            for (Supplier<GameGrid> builder : builders) {
+                Simulation sequential = new Simulation(builder.get());
+                Simulation partitioned = new Simulation(builder.get(), pool);
+                partitioned.setMode(TickMode.PARTITIONED);
+                for (int tick = 0; tick < 400; tick++) {
+                    sequential.tick();
+                    partitioned.tick();
+                    assertEquals("tick " + tick, state(sequential.getGrid()),
+                            state(partitioned.getGrid()));
+                }
+            }
+            Simulation simulation = new Simulation(buildSnakes(), pool);
+            PartitionedTick regions = new PartitionedTick(simulation, simulation.getPlan(),
+                    simulation.getGrid(), pool, 4);
+            // both snakes cross between regions
+            assertTrue(regions.getSegmentCount() >= 5);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void activeMatchesSequential() {
+        Simulation sequential = new Simulation(buildLines());
+        Simulation active = new Simulation(buildLines());
+        active.setMode(TickMode.ACTIVE);
+        for (int tick = 0; tick < 200; tick++) {
+            sequential.tick();
+            active.tick();
+            assertEquals(state(sequential.getGrid()), state(active.getGrid()));
+        }
+        assertEquals(counts(sequential.getGrid()), counts(active.getGrid()));
+    }
+
+    /**
+     * Builds a line of twenty transports from a producer to a belt with no output
+     */
+    private static GameGrid buildJammedLine() {
+        GameGrid grid = new GameGrid(RANGE);
+        Transport previous = new Producer(1, new Item("ab"));
+        grid.setCoordinate(new Coordinate(0, 0), previous);
+        for (int i = 1; i < 20; i++) {
+            Transport belt = new Belt(i + 1);
+            grid.setCoordinate(new Coordinate(i, 0), belt);
+            belt.setInput(previous.getPath());
+            previous = belt;
+        }
+        return grid;
+    }
+
+    @Test
+    public void jammedLineGoesIdle() {
+        GameGrid grid = buildJammedLine();
+        ActiveSet active = new ActiveSet(TickPlan.compile(grid));
+        Simulation sequential = new Simulation(buildJammedLine());
+        for (int tick = 0; tick < 100; tick++) {
+            active.tick(null);
+            sequential.tick();
+        }
+        // every belt is full and the producer can't move, so nothing is woken
+        assertEquals(0, active.getActiveCount());
+        assertFalse(find(grid, 20).isEmpty());
+        // the belts left asleep still stall on every tick
+        assertTrue(find(grid, 19).getTicksStalled() < find(sequential.getGrid(), 19)
+                .getTicksStalled());
+        active.flushStalls();
+        assertEquals(counts(sequential.getGrid()), counts(grid));
+    }
+
+    @Test
+    public void activeCountsStallsOfSleepingTransports() {
+        GameGrid sequentialGrid = buildJammedLine();
+        GameGrid activeGrid = buildJammedLine();
+        Simulation sequential = new Simulation(sequentialGrid);
+        Simulation active = new Simulation(activeGrid);
+        active.setMode(TickMode.ACTIVE);
+        for (Simulation simulation : List.of(sequential, active)) {
+            for (int tick = 0; tick < 100; tick++) {
+                simulation.tick();
+            }
+            // clear the end of the line, so that the sleeping belts move again
+            GameGrid grid = simulation == active ? activeGrid : sequentialGrid;
+            find(grid, 20).setInventory(null);
+            simulation.wakeAll();
+            for (int tick = 0; tick < 30; tick++) {
+                simulation.tick();
+            }
+        }
+        assertEquals(counts(sequential.getGrid()), counts(active.getGrid()));
+    }
+
+    @Test
+    public void bufferedBeltQueuesItems() {
+        GameGrid grid = new GameGrid(RANGE);
+        Item item = new Item("ab");
+        Producer producer = new Producer(1, item);
+        Belt belt = new Belt(2, 3);
+        Belt last = new Belt(3);
+        grid.setCoordinate(new Coordinate(0, 0), producer);
+        grid.setCoordinate(new Coordinate(1, 0), belt);
+        grid.setCoordinate(new Coordinate(2, 0), last);
+        belt.setInput(producer.getPath());
+        last.setInput(belt.getPath());
+        Simulation simulation = new Simulation(grid);
+        for (int tick = 0; tick < 20; tick++) {
+            simulation.tick();
+        }
+        // the end of the line is jammed, so the buffered belt fills up behind it
+        assertEquals(3, belt.getItemCount());
+        assertFalse(belt.canAccept());
+        assertEquals(item, belt.getItem(2));
+        assertFalse(producer.isEmpty());
+        assertFalse(last.isEmpty());
+    }
+
+    @Test
+    public void activeMatchesSequentialWithBufferedBelts() {
+        Simulation sequential = new Simulation(buildBufferedLines());
+        Simulation active = new Simulation(buildBufferedLines());
+        active.setMode(TickMode.ACTIVE);
+        for (int tick = 0; tick < 200; tick++) {
+            sequential.tick();
+            active.tick();
+            assertEquals(state(sequential.getGrid()), state(active.getGrid()));
+        }
+        assertEquals(counts(sequential.getGrid()), counts(active.getGrid()));
+    }
+
+    /**
+     * Builds straight lines of different lengths, some of them jammed at the end or
+     * without a producer, with belts filled at random.
+     */
+    private static GameGrid buildStraightLines() {
+        return buildStraightLines(1, 2, 5, 63, 64, 65, 66, 127, 128, 129, 180);
+    }
+
+    /**
+     * Builds straight lines of the given lengths, each length once with a producer and
+     * receiver, once without a producer and once without a receiver. The lines fill the
+     * grid row by row.
+     */
+    private static GameGrid buildStraightLines(int... lengths) {
+        GameGrid grid = new GameGrid(100);
+        Random random = new Random(17);
+        List<Coordinate> cells = new ArrayList<>();
+        for (int r = -100; r <= 100; r++) {
+            for (int q = Math.max(-100, -100 - r); q <= Math.min(100, 100 - r); q++) {
+                cells.add(new Coordinate(q, r));
+            }
+        }
+        int cell = 0;
+        int id = 1;
+        for (int line = 0; line < lengths.length * 3; line++) {
+            int length = lengths[line % lengths.length];
+            int kind = line / lengths.length;
+            Item item = new Item("ab");
+            Transport previous = null;
+            for (int i = 0; i < length; i++) {
+                Transport next;
+                if (i == 0 && kind != 1) {
+                    next = new Producer(id++, item);
+                } else if (i == length - 1 && kind != 2 && length > 1) {
+                    next = new Receiver(id++, item);
+                } else {
+                    next = new Belt(id++);
+                    next.setInventory(random.nextInt(3) == 0 ? null : item);
+                }
+                grid.setCoordinate(cells.get(cell++), next);
+                if (previous != null) {
+                    next.setInput(previous.getPath());
+                }
+                previous = next;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Ticks every transport of a plan with Transport.tick(), path by path from tail to
+     * head, without any of the lines a Simulation would use
+     */
+    private static void tickTransports(TickPlan plan) {
+        for (int i = 0; i < plan.size(); i++) {
+            plan.getTransport(i).tick();
+        }
+    }
+
+    @Test
+    public void bitsetLinesMatchTicking() {
+        GameGrid ticked = buildStraightLines();
+        GameGrid grid = buildStraightLines();
+        TickPlan plan = TickPlan.compile(grid);
+        List<BitsetLine> lines = new ArrayList<>();
+        for (int path = 0; path < plan.getPathCount(); path++) {
+            assertTrue(BitsetLine.supports(plan, path));
+            lines.add(new BitsetLine(plan, path));
+        }
+        TickPlan tickedPlan = TickPlan.compile(ticked);
+        for (int tick = 0; tick < 300; tick++) {
+            tickTransports(tickedPlan);
+            for (int path = 0; path < lines.size(); path++) {
+                BitsetLine line = lines.get(path);
+                line.tick();
+                int start = tickedPlan.getPathStart(path);
+                for (int slot = 0; slot < line.length(); slot++) {
+                    assertEquals("tick " + tick + " path " + path + " slot " + slot,
+                            !tickedPlan.getTransport(start + slot).isEmpty(),
+                            line.isOccupied(slot));
+                }
+            }
+            if (tick % 7 == 0) {
+                for (BitsetLine line : lines) {
+                    line.writeBack();
+                }
+                assertEquals("tick " + tick, state(ticked), state(grid));
+                assertEquals("tick " + tick, counts(ticked), counts(grid));
+            }
+        }
+    }
+
+    @Test
+    public void midLengthLinesUseBitsets() {
+        Simulation sequential = new Simulation(buildStraightLines(64, 100, 200, 255, 256));
+        Simulation reference = new Simulation(buildStraightLines(64, 100, 200, 255, 256));
+        TickPlan plan = sequential.getPlan();
+        TickPlan referencePlan = reference.getPlan();
+        Transport belt = find(sequential.getGrid(), 2);
+        for (int tick = 0; tick < 1000; tick++) {
+            sequential.tick();
+            tickTransports(referencePlan);
+        }
+        // the bitset line keeps the counts of its belts until it is written back
+        assertEquals(0, belt.getItemsMoved());
+        for (int i = 0; i < plan.size(); i++) {
+            if (plan.getTransport(i) instanceof Receiver receiver) {
+                assertEquals(((Receiver) referencePlan.getTransport(i)).getReceivedCount(),
+                        receiver.getReceivedCount());
+            }
+        }
+        assertEquals(state(reference.getGrid()), state(sequential.getGrid()));
+        assertEquals(counts(reference.getGrid()), counts(sequential.getGrid()));
+        assertTrue(belt.getItemsMoved() > 0);
+    }
+
+    @Test
+    public void runLengthLinesMatchTicking() {
+        Simulation ticked = new Simulation(buildStraightLines());
+        GameGrid grid = buildStraightLines();
+        TickPlan plan = TickPlan.compile(grid);
+        List<RunLengthLine> lines = new ArrayList<>();
+        for (int path = 0; path < plan.getPathCount(); path++) {
+            lines.add(new RunLengthLine(plan, path));
+        }
+        for (int tick = 0; tick < 300; tick++) {
+            ticked.tick();
+            for (RunLengthLine line : lines) {
+                line.tick(null);
+            }
+            if (tick % 7 == 0) {
+                for (RunLengthLine line : lines) {
+                    line.writeBack();
+                }
+                assertEquals("tick " + tick, state(ticked.getGrid()), state(grid));
+                assertEquals("tick " + tick, counts(ticked.getGrid()), counts(grid));
+            }
+        }
+    }
+
+    @Test
+    public void longLinesUseRunLength() {
+        Simulation sequential = new Simulation(buildStraightLines(256, 300, 701, 1500));
+        Simulation active = new Simulation(buildStraightLines(256, 300, 701, 1500));
+        active.setMode(TickMode.ACTIVE);
+        List<Receiver> sequentialReceivers = new ArrayList<>();
+        List<Receiver> activeReceivers = new ArrayList<>();
+        for (int id = 1; id < 10_000; id++) {
+            if (find(sequential.getGrid(), id) instanceof Receiver receiver) {
+                sequentialReceivers.add(receiver);
+                activeReceivers.add((Receiver) find(active.getGrid(), id));
+            }
+        }
+        for (int tick = 0; tick < 3000; tick++) {
+            sequential.tick();
+            active.tick();
+            for (int i = 0; i < sequentialReceivers.size(); i++) {
+                assertEquals(activeReceivers.get(i).getReceivedCount(),
+                        sequentialReceivers.get(i).getReceivedCount());
+            }
+            if (tick % 500 == 0) {
+                assertEquals(state(active.getGrid()), state(sequential.getGrid()));
+            }
+        }
+        // parallel ticks never use run-length lines
+        Simulation parallel = new Simulation(buildStraightLines(256, 300, 701, 1500));
+        parallel.setMode(TickMode.PARALLEL);
+        for (int tick = 0; tick < 3000; tick++) {
+            parallel.tick();
+        }
+        assertTrue(find(sequential.getGrid(), 2).getItemsMoved() > 0);
+        assertEquals(counts(parallel.getGrid()), counts(sequential.getGrid()));
+    }
+
+    @Test
+    public void liveCountersArePublishedWithRunLengthLines() {
+        Simulation live = new Simulation(buildStraightLines(256, 300));
+        live.setLiveCounters(true);
+        Simulation parallel = new Simulation(buildStraightLines(256, 300));
+        parallel.setMode(TickMode.PARALLEL);
+        TickPlan plan = live.getPlan();
+        TickPlan parallelPlan = parallel.getPlan();
+        boolean lagged = false;
+        for (int tick = 1; tick <= 10 * Simulation.LIVE_COUNT_TICKS; tick++) {
+            live.tick();
+            parallel.tick();
+            // read straight from the transports, without getGrid() writing anything back
+            boolean published = tick % Simulation.LIVE_COUNT_TICKS == 0;
+            assertEquals(tick - tick % Simulation.LIVE_COUNT_TICKS, live.getPublishedTick());
+            for (int i = 0; i < plan.size(); i++) {
+                long moved = parallelPlan.getTransport(i).getItemsMoved();
+                long stalled = parallelPlan.getTransport(i).getTicksStalled();
+                if (published) {
+                    assertEquals("tick " + tick, moved, plan.getTransport(i).getItemsMoved());
+                    assertEquals("tick " + tick, stalled,
+                            plan.getTransport(i).getTicksStalled());
+                } else if (moved != plan.getTransport(i).getItemsMoved()) {
+                    lagged = true;
+                }
+            }
+        }
+        // the run-length lines are still in use, and only write their counts back
+        assertTrue(lagged);
+    }
+
+    private static Transport find(GameGrid grid, int id) {
+        for (GridComponent component : grid.getGridView().values()) {
+            if (component instanceof Transport transport && transport.getId() == id) {
+                return transport;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void bitsetLineNeedsAStraightPath() {
+        TickPlan plan = TickPlan.compile(buildLines());
+        int straight = 0;
+        for (int path = 0; path < plan.getPathCount(); path++) {
+            if (BitsetLine.supports(plan, path)) {
+                straight++;
+            }
+        }
+        // the lines fed from the line above them have a merge
+        assertTrue(straight > 0);
+        assertTrue(straight < plan.getPathCount());
+    }
+
+    @Test
+    public void advanceMatchesTicking() {
+        for (TickMode mode : List.of(TickMode.SEQUENTIAL, TickMode.ACTIVE)) {
+            Simulation ticked = new Simulation(buildLines());
+            Simulation advanced = new Simulation(buildLines());
+            advanced.setMode(mode);
+            for (int tick = 0; tick < 10_001; tick++) {
+                ticked.tick();
+            }
+            advanced.advance(10_001);
+            assertEquals(10_001, advanced.getTickCount());
+            assertEquals(mode.toString(), state(ticked.getGrid()), state(advanced.getGrid()));
+            assertEquals(mode.toString(), counts(ticked.getGrid()),
+                    counts(advanced.getGrid()));
+        }
+    }
+
+    @Test
+    public void receiverItemIsPartOfTheState() {
+        GameGrid grid = new GameGrid(2);
+        Producer producer = new Producer(1, new Item("a"));
+        Belt belt = new Belt(2);
+        Receiver receiver = new Receiver(3, new Item("a"));
+        grid.setCoordinate(new Coordinate(-1, 0), producer);
+        grid.setCoordinate(new Coordinate(0, 0), belt);
+        grid.setCoordinate(new Coordinate(1, 0), receiver);
+        belt.setInput(producer.getPath());
+        receiver.setInput(belt.getPath());
+        receiver.restoreInventory(new Item("a"));
+        CycleDetector detector = new CycleDetector(TickPlan.compile(grid));
+        // only the receiver's item differs, and it now blocks instead of being consumed
+        receiver.restoreInventory(new Item("b"));
+        assertFalse(detector.observe());
+        assertEquals(0, detector.getPeriod());
+    }
+
+    @Test
+    public void advanceSkipsCycles() {
+        Simulation simulation = new Simulation(buildLines());
+        simulation.advance(1_000_000_000L);
+        assertEquals(1_000_000_000L, simulation.getTickCount());
+        long received = 0;
+        for (GridComponent component : simulation.getGrid().getGrid().values()) {
+            if (component instanceof Receiver receiver) {
+                received += receiver.getReceivedCount();
+            }
+        }
+        // each line delivers an item every other tick, less the items still on the belts
+        assertTrue(received > (2 * RANGE - 1) * (500_000_000L - 30));
+    }
+
+    @Test
+    public void listenersGetChangedTransports() {
+        // parallel modes need more than one thread to split the grid up
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (TickMode mode : TickMode.values()) {
+                for (GameGrid grid
+                        : List.of(buildLines(), buildBufferedLines(), buildColumns())) {
+                    listenersGetChangedTransports(new Simulation(grid, pool), mode);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void listenersGetChangedTransports(Simulation simulation, TickMode mode) {
+        simulation.setMode(mode);
+        Map<Integer, String> before = state(simulation.getGrid());
+        List<Set<Integer>> reported = new ArrayList<>();
+        simulation.addTickListener((tick, changed) -> {
+            Set<Integer> ids = new TreeSet<>();
+            for (Transport transport : changed) {
+                if (!(transport instanceof Receiver)) {
+                    ids.add(transport.getId());
+                }
+            }
+            reported.add(ids);
+        });
+        for (int tick = 0; tick < 50; tick++) {
+            reported.clear();
+            simulation.tick();
+            Map<Integer, String> after = state(simulation.getGrid());
+            Set<Integer> expected = new TreeSet<>();
+            for (Map.Entry<Integer, String> entry : after.entrySet()) {
+                if (!entry.getValue().startsWith("received")
+                        && !entry.getValue().equals(before.get(entry.getKey()))) {
+                    expected.add(entry.getKey());
+                }
+            }
+            assertEquals(1, reported.size());
+            // every visible change is reported, a producer that moved and refilled as well
+            assertTrue(mode.toString(), reported.get(0).containsAll(expected));
+            before = after;
+        }
+    }
+
+    @Test
+    public void listenersSeeRunLengthLines() {
+        GameGrid grid = buildStraightLines(100, 256, 300, 701);
+        Simulation simulation = new Simulation(grid);
+        Simulation parallel = new Simulation(buildStraightLines(100, 256, 300, 701));
+        parallel.setMode(TickMode.PARALLEL);
+        Set<Integer> reported = new TreeSet<>();
+        simulation.addTickListener((tick, changed) -> {
+            for (Transport transport : changed) {
+                reported.add(transport.getId());
+            }
+        });
+        Map<Integer, String> before = state(grid);
+        for (int tick = 0; tick < 1000; tick++) {
+            reported.clear();
+            simulation.tick();
+            parallel.tick();
+            // the lines write their changes through, without getGrid()
+            Map<Integer, String> after = state(grid);
+            assertEquals(state(parallel.getGrid()), after);
+            for (Map.Entry<Integer, String> entry : after.entrySet()) {
+                if (!entry.getValue().equals(before.get(entry.getKey()))
+                        && !entry.getValue().startsWith("received")) {
+                    assertTrue("tick " + tick, reported.contains(entry.getKey()));
+                }
+            }
+            before = after;
+        }
+        // the belts of a bitset line only get their counts when it is written back
+        assertEquals(0, find(grid, 2).getItemsMoved());
+        assertEquals(counts(parallel.getGrid()), counts(simulation.getGrid()));
+    }
+
+    @Test
+    public void runnerPublishesSnapshots() throws InterruptedException {
+        Simulation simulation = new Simulation(buildLines());
+        TickPlan plan = simulation.getPlan();
+        CountDownLatch snapshots = new CountDownLatch(50);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        Map<Transport, Boolean> previous = new IdentityHashMap<>();
+        int[] withChanges = new int[1];
+        SimulationRunner[] runner = new SimulationRunner[1];
+        runner[0] = new SimulationRunner(simulation, 0, () -> false, snapshot -> {
+            // called on the ticking thread, so the transports are as the snapshot saw them
+            Set<Transport> changed = snapshot.getChanged();
+            if (changed != null && !previous.isEmpty()) {
+                withChanges[0]++;
+            }
+            for (int i = 0; i < plan.size(); i++) {
+                Transport transport = plan.getTransport(i);
+                boolean occupied = transport.getInventory() != null;
+                if (snapshot.isOccupied(transport.getId()) != occupied) {
+                    errors.add("tick " + snapshot.getTick() + ": " + transport
+                            + " occupied " + occupied);
+                }
+                Boolean was = previous.put(transport, occupied);
+                if (changed != null && was != null && was != occupied
+                        && !changed.contains(transport)) {
+                    errors.add("tick " + snapshot.getTick() + ": " + transport
+                            + " changed without being reported");
+                }
+            }
+            snapshots.countDown();
+            runner[0].requestSnapshot();
+        });
+        runner[0].start();
+        assertTrue(snapshots.await(10, TimeUnit.SECONDS));
+        runner[0].stop();
+        assertEquals(List.of(), List.copyOf(errors));
+        assertTrue(withChanges[0] > 0);
+        InventorySnapshot last = runner[0].getSnapshot();
+        assertTrue(last.getTick() > 0);
+        assertTrue(last.getTick() <= simulation.getTickCount());
+    }
+
+    @Test
+    public void pausedRunnerDoesNotTick() throws InterruptedException {
+        Simulation simulation = new Simulation(buildLines());
+        SimulationRunner runner = new SimulationRunner(simulation, 0, () -> true, s -> { });
+        runner.start();
+        Thread.sleep(50);
+        runner.stop();
+        assertEquals(0, simulation.getTickCount());
+        assertNull(runner.getSnapshot().getChanged());
+    }
+
+    @Test
+    public void receiversCountDeliveries() {
+        Simulation simulation = new Simulation(buildLines());
+        for (int tick = 0; tick < 100; tick++) {
+            simulation.tick();
+        }
+        long received = 0;
+        for (GridComponent component : simulation.getGrid().getGrid().values()) {
+            if (component instanceof Receiver receiver) {
+                received += receiver.getReceivedCount();
+            }
+        }
+        assertTrue(received > 0);
+    }
+}
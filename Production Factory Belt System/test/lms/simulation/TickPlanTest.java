@@ -0,0 +1,99 @@
+package lms.simulation;
+
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.logistics.Item;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TickPlanTest {
+
+    private GameGrid grid;
+    private Producer producer;
+    private Belt belt1, belt2;
+    private Receiver receiver;
+
+    @Before
+    public void setup() {
+        Item item = new Item("ab");
+        grid = new GameGrid(1);
+        producer = new Producer(1, item);
+        belt1 = new Belt(2);
+        belt2 = new Belt(3);
+        receiver = new Receiver(4, item);
+        grid.setCoordinate(new Coordinate(-1, 0), producer);
+        grid.setCoordinate(new Coordinate(0, 0), belt1);
+        grid.setCoordinate(new Coordinate(1, 0), belt2);
+        grid.setCoordinate(new Coordinate(1, -1), receiver);
+        belt1.setInput(producer.getPath());
+        belt2.setInput(belt1.getPath());
+        receiver.setInput(belt2.getPath());
+    }
+
+    @Test
+    public void compileTailToHead() {
+        TickPlan plan = TickPlan.compile(grid);
+        assertEquals(1, plan.getPathCount());
+        assertEquals(4, plan.size());
+        assertEquals(receiver, plan.getTransport(0));
+        assertEquals(belt2, plan.getTransport(1));
+        assertEquals(belt1, plan.getTransport(2));
+        assertEquals(producer, plan.getTransport(3));
+    }
+
+    @Test
+    public void compileSeparatePaths() {
+        Receiver other = new Receiver(5, new Item("ab"));
+        grid.setCoordinate(new Coordinate(0, 1), other);
+        belt2.setOutput(other.getPath());
+        TickPlan plan = TickPlan.compile(grid);
+        assertEquals(2, plan.getPathCount());
+        assertEquals(4, plan.getPathEnd(0));
+        assertEquals(4, plan.getPathStart(1));
+        assertEquals(5, plan.getPathEnd(1));
+        assertEquals(other, plan.getTransport(4));
+    }
+
+    @Test
+    public void currentUntilLinked() {
+        TickPlan plan = TickPlan.compile(grid);
+        assertTrue(plan.isCurrent(grid));
+        belt2.setOutput(receiver.getPath());
+        assertFalse(plan.isCurrent(grid));
+    }
+
+    @Test
+    public void currentUntilGridChanged() {
+        TickPlan plan = TickPlan.compile(grid);
+        grid.setCoordinate(new Coordinate(0, 1), () -> "w");
+        assertFalse(plan.isCurrent(grid));
+    }
+
+    @Test
+    public void simulationReusesPlan() {
+        Simulation simulation = new Simulation(grid);
+        TickPlan plan = simulation.getPlan();
+        simulation.tick();
+        assertSame(plan, simulation.getPlan());
+        assertEquals(1, simulation.getTickCount());
+    }
+
+    @Test
+    public void simulationMovesItems() {
+        Simulation simulation = new Simulation(grid);
+        simulation.tick();
+        assertNotNull(belt1.getInventory());
+        assertNull(belt2.getInventory());
+        simulation.tick();
+        assertNull(belt1.getInventory());
+        assertNotNull(belt2.getInventory());
+        simulation.tick();
+        assertNotNull(belt1.getInventory());
+        assertNull(belt2.getInventory());
+    }
+}